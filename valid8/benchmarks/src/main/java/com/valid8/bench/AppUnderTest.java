@@ -0,0 +1,135 @@
+package com.valid8.bench;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+
+/**
+ * The app jar running in its own JVM over a synthetic dataset, the way it
+ * runs in production, with a GC log so pauses can be reported for the
+ * measured window. The snapshot cache and the journal are off so every run
+ * starts from the same state; the working directory is a scratch
+ * directory, which also receives app.log and gc.log.
+ */
+final class AppUnderTest implements AutoCloseable {
+
+    // G1 and Parallel log every stop-the-world pause as "... Pause <kind> ... 1.234ms"
+    private static final Pattern PAUSE = Pattern.compile("\\bPause\\b.*?([0-9]+(?:\\.[0-9]+)?)ms\\s*$");
+
+    private final Process process;
+    private final Path gcLog;
+    private final String baseUrl;
+
+    private AppUnderTest(Process process, Path gcLog, String baseUrl) {
+        this.process = process;
+        this.gcLog = gcLog;
+        this.baseUrl = baseUrl;
+    }
+
+    static AppUnderTest start(Path jar, SyntheticDataset data, int port, String heap,
+                              List<String> jvmArgs, Path workDir) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(jar)) {
+            throw new IOException(jar + " not found; build the app first (mvn package in the app directory)");
+        }
+        Files.createDirectories(workDir);
+        Path gcLog = workDir.resolve("gc.log");
+        Files.deleteIfExists(gcLog);
+
+        List<String> cmd = new ArrayList<>();
+        cmd.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        cmd.add("-Xms" + heap);
+        cmd.add("-Xmx" + heap);
+        cmd.add("-Xlog:gc:file=" + gcLog.toAbsolutePath());
+        cmd.addAll(jvmArgs);
+        cmd.add("-jar");
+        cmd.add(jar.toAbsolutePath().toString());
+        cmd.add("--server.port=" + port);
+        cmd.add("--valid8.csv.registrations=" + data.getRegistrations().toAbsolutePath());
+        cmd.add("--valid8.csv.simulation=" + data.getSimulation().toAbsolutePath());
+        cmd.add("--valid8.cache.enabled=false");
+        cmd.add("--valid8.journal.enabled=false");
+
+        Process process = new ProcessBuilder(cmd)
+            .directory(workDir.toFile())
+            .redirectErrorStream(true)
+            .redirectOutput(workDir.resolve("app.log").toFile())
+            .start();
+        AppUnderTest app = new AppUnderTest(process, gcLog, "http://localhost:" + port);
+        try {
+            app.awaitReady(Duration.ofMinutes(10));
+        } catch (IOException | InterruptedException e) {
+            app.close();
+            throw e;
+        }
+        return app;
+    }
+
+    String baseUrl() {
+        return baseUrl;
+    }
+
+    private void awaitReady(Duration timeout) throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newHttpClient();
+        HttpRequest probe = HttpRequest.newBuilder(URI.create(baseUrl + "/api/summary"))
+            .timeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IOException("App exited with status " + process.exitValue() + "; see app.log");
+            }
+            try {
+                if (client.send(probe, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException e) {
+                // not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IOException("App did not answer within " + timeout.toSeconds() + " s");
+    }
+
+    /** @return a position in the GC log; pauses logged after it are read by pausesSince */
+    long gcMark() throws IOException {
+        return Files.isRegularFile(gcLog) ? Files.size(gcLog) : 0;
+    }
+
+    /** @return the stop-the-world pauses, in milliseconds, logged after mark */
+    List<Double> pausesSince(long mark) throws IOException {
+        List<Double> pauses = new ArrayList<>();
+        if (!Files.isRegularFile(gcLog)) return pauses;
+        try (RandomAccessFile in = new RandomAccessFile(gcLog.toFile(), "r")) {
+            in.seek(Math.min(mark, in.length()));
+            byte[] rest = new byte[(int) (in.length() - in.getFilePointer())];
+            in.readFully(rest);
+            for (String line : new String(rest, StandardCharsets.UTF_8).split("\n")) {
+                Matcher m = PAUSE.matcher(line);
+                if (m.find()) pauses.add(Double.parseDouble(m.group(1)));
+            }
+        }
+        return pauses;
+    }
+
+    @Override
+    public void close() {
+        process.destroy();
+        try {
+            if (!process.waitFor(20, TimeUnit.SECONDS)) process.destroyForcibly();
+        } catch (InterruptedException e) {
+            process.destroyForcibly();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
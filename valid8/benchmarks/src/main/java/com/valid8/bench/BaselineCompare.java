@@ -0,0 +1,96 @@
+package com.valid8.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+
+/**
+ * Compares two JMH JSON result files (-rf json) benchmark by benchmark and
+ * exits with status 1 if any score got worse by more than the threshold
+ * percentage and by more than the two runs' combined error. Allocation per
+ * operation (from -prof gc) is printed next to the score when both runs
+ * have it.
+ *
+ *   java -cp target/benchmarks.jar com.valid8.bench.BaselineCompare baseline.json current.json [threshold%]
+ */
+public final class BaselineCompare {
+
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: BaselineCompare <baseline.json> <current.json> [threshold%]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10.0;
+        Map<String, JsonNode> baseline = read(args[0]);
+        Map<String, JsonNode> current = read(args[1]);
+
+        int regressions = 0;
+        System.out.printf("%-70s %14s %14s %8s %16s%n", "Benchmark", "Baseline", "Current", "Change", "Alloc B/op");
+        for (Map.Entry<String, JsonNode> e : current.entrySet()) {
+            JsonNode base = baseline.get(e.getKey());
+            JsonNode cur = e.getValue();
+            double now = cur.at("/primaryMetric/score").asDouble();
+            String unit = cur.at("/primaryMetric/scoreUnit").asText();
+            if (base == null) {
+                System.out.printf("%-70s %14s %14s %8s%n", e.getKey(), "-", format(now, unit), "new");
+                continue;
+            }
+            double was = base.at("/primaryMetric/score").asDouble();
+            double error = errorOf(base) + errorOf(cur);
+            // Throughput modes are better when higher, time modes when lower
+            boolean higherIsBetter = "thrpt".equals(cur.path("mode").asText());
+            double change = was == 0 ? 0 : (now - was) / was * 100;
+            double worse = higherIsBetter ? -change : change;
+            boolean regressed = worse > threshold && Math.abs(now - was) > error;
+            if (regressed) regressions++;
+            System.out.printf("%-70s %14s %14s %+7.1f%% %16s%s%n", e.getKey(), format(was, unit), format(now, unit),
+                change, alloc(base, cur), regressed ? "  REGRESSION" : "");
+        }
+        for (String key : baseline.keySet()) {
+            if (!current.containsKey(key)) System.out.printf("%-70s %14s%n", key, "missing");
+        }
+        if (regressions > 0) {
+            System.out.println(regressions + " benchmark(s) regressed by more than " + threshold + "%");
+            System.exit(1);
+        }
+    }
+
+    // benchmark name with its @Param values -> result
+    private static Map<String, JsonNode> read(String path) throws IOException {
+        Map<String, JsonNode> results = new LinkedHashMap<>();
+        for (JsonNode r : new ObjectMapper().readTree(new File(path))) {
+            String name = r.path("benchmark").asText().replace("com.valid8.bench.", "");
+            StringBuilder key = new StringBuilder(name);
+            JsonNode params = r.path("params");
+            for (Iterator<String> it = params.fieldNames(); it.hasNext(); ) {
+                String p = it.next();
+                key.append(' ').append(p).append('=').append(params.path(p).asText());
+            }
+            results.put(key.toString(), r);
+        }
+        return results;
+    }
+
+    private static double errorOf(JsonNode r) {
+        double error = r.at("/primaryMetric/scoreError").asDouble(0);
+        return Double.isNaN(error) ? 0 : error;
+    }
+
+    private static String alloc(JsonNode base, JsonNode cur) {
+        JsonNode was = base.path("secondaryMetrics").path(ALLOC).path("score");
+        JsonNode now = cur.path("secondaryMetrics").path(ALLOC).path("score");
+        if (now.isMissingNode()) return "";
+        if (was.isMissingNode()) return String.format("%.0f", now.asDouble());
+        return String.format("%.0f -> %.0f", was.asDouble(), now.asDouble());
+    }
+
+    private static String format(double score, String unit) {
+        return String.format(score >= 100 ? "%.0f %s" : "%.3f %s", score, unit);
+    }
+}
@@ -0,0 +1,49 @@
+package com.valid8.bench;
+
+import com.valid8.service.CsvDataLoader;
+import com.valid8.service.EventJournal;
+import com.valid8.service.SnapshotCache;
+import com.valid8.service.Valid8Metrics;
+import com.valid8.service.Valid8Service;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * The data-side beans of the app (loader, service and what they depend on)
+ * wired by Spring over a synthetic dataset, without the web layer. The
+ * snapshot cache and the journal are off, so every load parses the CSVs,
+ * and overstays are judged against the feed clock so results do not
+ * depend on when the benchmark runs.
+ */
+final class BenchContext implements AutoCloseable {
+
+    private final AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+    BenchContext(SyntheticDataset data) {
+        Map<String, Object> props = new HashMap<>();
+        props.put("valid8.csv.registrations", data.getRegistrations().toString());
+        props.put("valid8.csv.simulation", data.getSimulation().toString());
+        props.put("valid8.cache.enabled", "false");
+        props.put("valid8.journal.enabled", "false");
+        props.put("valid8.overstay.clock", "feed");
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", props));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(CsvDataLoader.class, SnapshotCache.class, EventJournal.class, Valid8Metrics.class,
+            Valid8Service.class);
+        context.refresh();
+    }
+
+    CsvDataLoader loader()   { return context.getBean(CsvDataLoader.class); }
+    Valid8Service service()  { return context.getBean(Valid8Service.class); }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
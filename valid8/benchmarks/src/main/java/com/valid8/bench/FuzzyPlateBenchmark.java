@@ -0,0 +1,85 @@
+package com.valid8.bench;
+
+import com.valid8.model.Registration;
+import com.valid8.service.FuzzyPlateIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Misread suggestions against a registry of random ABC1234-style plates,
+ * up to a statewide size. Half of the queries are registered plates with
+ * one confusable character swapped and one other character changed, the
+ * other half random plates that are mostly unmatched. Answers are not
+ * remembered (FuzzyPlateIndex.match), so every query does the full probe.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class FuzzyPlateBenchmark {
+
+    static final int BATCH = 1024;
+
+    private static final String LETTERS = "ABCDEFGHJKLMNPRSTUVWXYZ";
+    private static final String DIGITS = "0123456789";
+    private static final String[][] MISREADS = {{"0", "O"}, {"1", "I"}, {"8", "B"}, {"5", "S"}, {"2", "Z"}};
+
+    @Param({"100000", "2000000"})
+    public int registrations;
+
+    private FuzzyPlateIndex index;
+    private String[] queries;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(SyntheticDataset.SEED);
+        Map<String, Registration> regs = new LinkedHashMap<>();
+        while (regs.size() < registrations) {
+            String plate = plate(random);
+            regs.put(plate, new Registration(plate, "Lot 33", 4));
+        }
+        index = FuzzyPlateIndex.build(regs, 1, 3);
+
+        String[] plates = regs.keySet().toArray(new String[0]);
+        queries = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            queries[i] = i % 2 == 0 ? misread(plates[random.nextInt(plates.length)], random) : plate(random);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void match(Blackhole bh) {
+        for (String q : queries) bh.consume(index.match(q));
+    }
+
+    private static String plate(SplittableRandom random) {
+        StringBuilder sb = new StringBuilder(7);
+        for (int i = 0; i < 3; i++) sb.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        for (int i = 0; i < 4; i++) sb.append(DIGITS.charAt(random.nextInt(DIGITS.length())));
+        return sb.toString();
+    }
+
+    // One confusable swap where the plate has such a character, and one random substitution
+    private static String misread(String plate, SplittableRandom random) {
+        StringBuilder sb = new StringBuilder(plate);
+        for (String[] pair : MISREADS) {
+            int at = sb.indexOf(pair[0]);
+            if (at >= 0) {
+                sb.replace(at, at + 1, pair[1]);
+                break;
+            }
+        }
+        int at = random.nextInt(sb.length());
+        sb.setCharAt(at, at < 3 ? LETTERS.charAt(random.nextInt(LETTERS.length())) : DIGITS.charAt(random.nextInt(10)));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.valid8.bench;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valid8.model.ItemPage;
+import com.valid8.model.LotSummary;
+import com.valid8.model.PlateStatus;
+import com.valid8.model.ViolationItem;
+import com.valid8.service.DatasetSnapshot;
+import com.valid8.service.ListQuery;
+import com.valid8.service.Valid8Service;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Serializing the API DTOs with a mapper configured the way Spring Boot
+ * configures the app's. The DTOs are built once in setup, so only the
+ * JSON writing is measured, except by the violationsBuiltAndWritten /
+ * violationsStreamed pair, which compare the two ways of producing the
+ * whole list from the snapshot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+
+    @Param({"10000", "100000"})
+    public int sessions;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+
+    private List<LotSummary> summaries;
+    private ItemPage<ViolationItem> page;
+    private List<ViolationItem> violations;
+    private PlateStatus plate;
+    private Valid8Service service;
+    private DatasetSnapshot snap;
+
+    @Setup
+    public void setup() throws IOException {
+        try (BenchContext context = new BenchContext(SyntheticDataset.get(sessions))) {
+            service = context.service();
+            snap = service.getSnapshot();
+            summaries = service.getLotSummaries();
+            page = service.getViolations(snap, new ListQuery(null, null, null, null, null, false, null, 200));
+            violations = service.getViolations(snap);
+            plate = service.getPlateStatus(snap, snap.getRecords().get(snap.getRecords().size() / 2).getPlate());
+        }
+    }
+
+    @Benchmark
+    public byte[] lotSummaries() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(summaries);
+    }
+
+    @Benchmark
+    public byte[] violationsPage() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] violationsAll() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(violations);
+    }
+
+    @Benchmark
+    public void violationsBuiltAndWritten() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), service.getViolations(snap));
+    }
+
+    @Benchmark
+    public int violationsStreamed() throws IOException {
+        try (JsonGenerator gen = mapper.createGenerator(OutputStream.nullOutputStream())) {
+            return service.writeViolations(snap, null, gen, false);
+        }
+    }
+
+    @Benchmark
+    public byte[] plateStatus() throws JsonProcessingException {
+        return mapper.writeValueAsBytes(plate);
+    }
+}
@@ -0,0 +1,70 @@
+package com.valid8.bench;
+
+import com.valid8.model.AutoGate;
+import com.valid8.model.LotAggregate;
+import com.valid8.model.RecordStore;
+import com.valid8.model.Registration;
+import com.valid8.service.CsvDataLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Full-load path: parsing the simulation CSV, joining the rows to the
+ * registrations (what AutoGate.applyRegistrations did before rows were
+ * stored in a RecordStore), and aggregating them by lot.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class LoadBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int sessions;
+
+    private BenchContext context;
+    private CsvDataLoader loader;
+    private Map<String, Registration> registrations;
+    private RecordStore.Builder parsed;
+    private RecordStore records;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new BenchContext(SyntheticDataset.get(sessions));
+        loader = context.loader();
+        registrations = loader.loadRegistrations();
+        parsed = loader.loadParkingRecords();
+        records = parsed.build(registrations);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public RecordStore.Builder loadParkingRecords() {
+        return loader.loadParkingRecords();
+    }
+
+    @Benchmark
+    public Map<String, Registration> loadRegistrations() {
+        return loader.loadRegistrations();
+    }
+
+    @Benchmark
+    public RecordStore applyRegistrations() {
+        return parsed.build(registrations);
+    }
+
+    @Benchmark
+    public Map<String, LotAggregate> aggregateByLot() {
+        return AutoGate.aggregateByLot(records, AutoGate.LOT_CONFIGS);
+    }
+}
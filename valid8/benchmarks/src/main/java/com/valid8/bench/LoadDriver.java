@@ -0,0 +1,511 @@
+package com.valid8.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.valid8.model.AutoGate;
+import com.valid8.model.LotConfig;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+
+/**
+ * HTTP load driver for capacity planning. Starts the app jar on a
+ * synthetic dataset (or targets a running instance with --url), then runs
+ * simulated browsers, each on its own virtual thread, that make the
+ * requests the pages make:
+ *
+ *   dashboard, map  open the page, then fetch /api/summary every interval
+ *   officer         open /rupd, fetch /api/unregistered every interval, and
+ *                   look up a plate the way the search box does (suggestions
+ *                   for a 3 and a 5 character prefix, then /api/plates/{plate})
+ *   violations      open the page, fetch the first two pages of /api/violations
+ *                   every interval
+ *
+ * The interval is the pages' polling fallback (5 s). Like a browser, each
+ * client revalidates with If-None-Match and asks for gzip. With --sse the
+ * clients hold /api/stream open instead of polling and refetch only when
+ * told to resync, as pages do when EventSource is available. --gate-rate
+ * pushes entries and exits to /api/events at that many events per second,
+ * so caches are invalidated the way they are under live traffic.
+ * --reload-every starts a full reload at that period, after which every
+ * client misses the cache at once.
+ *
+ * Latency is measured from when a request was due, not when it was sent,
+ * so a client that falls behind a slow server still counts the wait
+ * (no coordinated omission). After the warmup, per-endpoint HdrHistograms
+ * give p50/p99/p99.9, alongside throughput, bytes and the app's GC pauses.
+ *
+ *   java -cp target/benchmarks.jar com.valid8.bench.LoadDriver --sessions=1000000 \
+ *        --dashboards=500 --maps=200 --officers=50 --duration=2m --out=run.json
+ */
+public final class LoadDriver {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(5);
+    private static final DateTimeFormatter EVENT_TIME = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final ObjectMapper JSON = new ObjectMapper();
+    private static final String PLATE_LOOKUP = "/api/plates/{plate}";
+
+    private final Map<String, String> opts;
+    private final HttpClient http;
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder lateCycles = new LongAdder();
+    private final LongAdder sseEvents = new LongAdder();
+    private final List<InputStream> streams = Collections.synchronizedList(new ArrayList<>());
+    private volatile boolean measuring;
+    private volatile long measureStartNanos = Long.MAX_VALUE;
+    private String baseUrl;
+    private List<String> plates;
+    private long intervalNanos;
+    private long endNanos;
+
+    private LoadDriver(Map<String, String> opts) {
+        this.opts = opts;
+        this.http = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    }
+
+    /** Latency, status counts and bytes for one endpoint. */
+    private static final class Endpoint {
+        final Histogram latency = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+        final LongAdder notModified = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        for (String a : args) {
+            if (!a.startsWith("--")) {
+                System.err.println("Unexpected argument " + a + "; options are --name=value");
+                System.exit(2);
+            }
+            int eq = a.indexOf('=');
+            opts.put(eq < 0 ? a.substring(2) : a.substring(2, eq), eq < 0 ? "true" : a.substring(eq + 1));
+        }
+        new LoadDriver(opts).run();
+    }
+
+    private void run() throws Exception {
+        int sessions = intOpt("sessions", 100_000);
+        SyntheticDataset data = SyntheticDataset.get(sessions);
+        plates = samplePlates(data.getSimulation(), 50_000);
+
+        AppUnderTest app = null;
+        if (opts.containsKey("url")) {
+            baseUrl = opts.get("url").replaceAll("/+$", "");
+        } else {
+            Path jar = Paths.get(opts.getOrDefault("jar", "../target/valid8-1.0.0.jar"));
+            Path work = Paths.get(opts.getOrDefault("work", "target/load-run"));
+            List<String> jvmArgs = opts.containsKey("jvm-args")
+                ? Arrays.asList(opts.get("jvm-args").trim().split("\\s+")) : List.of();
+            System.out.println("[LoadDriver] Starting " + jar + " on " + sessions + " sessions");
+            long t0 = System.nanoTime();
+            app = AppUnderTest.start(jar, data, intOpt("port", 18090), opts.getOrDefault("heap", "2g"), jvmArgs, work);
+            baseUrl = app.baseUrl();
+            System.out.println("[LoadDriver] App ready in " + (System.nanoTime() - t0) / 1_000_000 + " ms");
+        }
+
+        try {
+            drive(app);
+        } finally {
+            for (InputStream s : new ArrayList<>(streams)) closeQuietly(s);
+            if (app != null) app.close();
+        }
+    }
+
+    private void drive(AppUnderTest app) throws Exception {
+        int dashboards = intOpt("dashboards", 100);
+        int maps = intOpt("maps", 50);
+        int officers = intOpt("officers", 20);
+        int violations = intOpt("violations", 0);
+        boolean sse = Boolean.parseBoolean(opts.getOrDefault("sse", "false"));
+        int gateRate = intOpt("gate-rate", 0);
+        Duration reloadEvery = durationOpt("reload-every", null);
+        intervalNanos = durationOpt("interval", Duration.ofSeconds(5)).toNanos();
+        Duration warmup = durationOpt("warmup", Duration.ofSeconds(15));
+        Duration duration = durationOpt("duration", Duration.ofSeconds(60));
+
+        long start = System.nanoTime();
+        endNanos = start + warmup.toNanos() + duration.toNanos();
+        System.out.println("[LoadDriver] " + dashboards + " dashboard, " + maps + " map, " + officers + " officer, "
+            + violations + " violations clients" + (sse ? " on SSE" : ", polling every "
+            + TimeUnit.NANOSECONDS.toMillis(intervalNanos) + " ms") + (gateRate > 0 ? ", " + gateRate + " gate events/s" : "")
+            + (reloadEvery != null ? ", reloading every " + reloadEvery.toSeconds() + " s" : "")
+            + "; warmup " + warmup.toSeconds() + " s, measuring " + duration.toSeconds() + " s");
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < dashboards; i++) clients.submit(() -> client("/dashboard", sse, this::summary));
+            for (int i = 0; i < maps; i++)       clients.submit(() -> client("/map", sse, this::summary));
+            for (int i = 0; i < officers; i++)   clients.submit(() -> client("/rupd", sse, this::officer));
+            for (int i = 0; i < violations; i++) clients.submit(() -> client("/violations", sse, this::violationPages));
+            if (gateRate > 0) clients.submit(() -> gate(gateRate));
+            if (reloadEvery != null) clients.submit(() -> reloads(reloadEvery));
+
+            Thread.sleep(warmup.toMillis());
+            long gcMark = app != null ? app.gcMark() : 0;
+            endpoints.clear();
+            lateCycles.reset();
+            sseEvents.reset();
+            measureStartNanos = System.nanoTime();
+            measuring = true;
+            Thread.sleep(Math.max(0, TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime())));
+            measuring = false;
+            double seconds = (System.nanoTime() - measureStartNanos) / 1e9;
+            List<Double> pauses = app != null ? app.pausesSince(gcMark) : null;
+            // Release clients blocked on their streams
+            for (InputStream s : new ArrayList<>(streams)) closeQuietly(s);
+            report(seconds, pauses);
+            clients.shutdownNow();
+        }
+    }
+
+    // ---- clients ----
+
+    private interface Cycle {
+        void run(long due, Map<String, String> etags) throws IOException, InterruptedException;
+    }
+
+    private void client(String page, boolean sse, Cycle cycle) {
+        Map<String, String> etags = new HashMap<>();
+        // Spread the clients over one interval so they do not poll in lockstep
+        long next = System.nanoTime() + ThreadLocalRandom.current().nextLong(intervalNanos);
+        try {
+            sleepUntil(next);
+            get("GET " + page, page, next, etags);
+            if (sse) {
+                stream(page, next, etags, cycle);
+                return;
+            }
+            while (System.nanoTime() < endNanos) {
+                cycle.run(next, etags);
+                next += intervalNanos;
+                if (System.nanoTime() > next) lateCycles.increment();
+                sleepUntil(next);
+            }
+        } catch (InterruptedException e) {
+            // run over
+        } catch (Exception e) {
+            if (System.nanoTime() < endNanos) System.err.println("[LoadDriver] Client " + page + " stopped: " + e);
+        }
+    }
+
+    private void summary(long due, Map<String, String> etags) throws IOException, InterruptedException {
+        get("/api/summary", "/api/summary", due, etags);
+    }
+
+    private void officer(long due, Map<String, String> etags) throws IOException, InterruptedException {
+        get("/api/unregistered", "/api/unregistered", due, etags);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String plate = random.nextInt(10) == 0 ? "ZZ" + random.nextInt(100_000)   // not on file
+            : plates.get(random.nextInt(plates.size()));
+        for (int len : new int[]{3, 5}) {
+            if (plate.length() <= len) break;
+            get("/api/plates?prefix", "/api/plates?limit=10&prefix="
+                + URLEncoder.encode(plate.substring(0, len), StandardCharsets.UTF_8), System.nanoTime(), null);
+        }
+        get(PLATE_LOOKUP, "/api/plates/" + URLEncoder.encode(plate, StandardCharsets.UTF_8),
+            System.nanoTime(), null);
+    }
+
+    private void violationPages(long due, Map<String, String> etags) throws IOException, InterruptedException {
+        byte[] first = get("/api/violations?limit", "/api/violations?limit=200", due, null);
+        if (first == null) return;
+        JsonNode cursor = JSON.readTree(first).path("nextCursor");
+        if (cursor.isTextual()) {
+            get("/api/violations?cursor", "/api/violations?limit=200&cursor="
+                + URLEncoder.encode(cursor.asText(), StandardCharsets.UTF_8), System.nanoTime(), null);
+        }
+    }
+
+    /**
+     * Holds the page's event stream and refetches on (re)connect and on
+     * every resync event, as subscribeUpdates does.
+     */
+    private void stream(String page, long due, Map<String, String> etags, Cycle cycle) throws IOException, InterruptedException {
+        String topics = switch (page) {
+            case "/rupd"       -> "unregistered";
+            case "/violations" -> "violations";
+            default            -> "summary";
+        };
+        HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/api/stream?topics=" + topics))
+            .header("Accept", "text/event-stream").build();
+        HttpResponse<InputStream> res = http.send(req, HttpResponse.BodyHandlers.ofInputStream());
+        record("/api/stream (connect)", due, res.statusCode(), 0);
+        streams.add(res.body());
+        cycle.run(System.nanoTime(), etags);
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(res.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null && System.nanoTime() < endNanos) {
+                if (!line.startsWith("event:")) continue;
+                if (measuring) sseEvents.increment();
+                if (line.substring(6).trim().equals("resync")) cycle.run(System.nanoTime(), etags);
+            }
+        } catch (IOException e) {
+            if (System.nanoTime() < endNanos) throw e;
+        }
+    }
+
+    /** Pushes entries for random plates, and exits for plates it entered earlier, at rate events per second. */
+    private void gate(int rate) {
+        Deque<String[]> parked = new ArrayDeque<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> lots = AutoGate.LOT_CONFIGS.stream().map(LotConfig::getName).toList();
+        long next = System.nanoTime();
+        try {
+            while (System.nanoTime() < endNanos) {
+                StringBuilder body = new StringBuilder();
+                String now = LocalDateTime.now().format(EVENT_TIME);
+                for (int i = 0; i < rate; i++) {
+                    if (parked.size() > rate * 30 || (!parked.isEmpty() && random.nextBoolean())) {
+                        String[] car = parked.poll();
+                        body.append("{\"plate\":\"").append(car[0]).append("\",\"lot\":\"").append(car[1])
+                            .append("\",\"type\":\"exit\",\"time\":\"").append(now).append("\"}\n");
+                    } else {
+                        String[] car = {plates.get(random.nextInt(plates.size())), lots.get(random.nextInt(lots.size()))};
+                        parked.add(car);
+                        body.append("{\"plate\":\"").append(car[0]).append("\",\"lot\":\"").append(car[1])
+                            .append("\",\"type\":\"entry\",\"time\":\"").append(now).append("\"}\n");
+                    }
+                }
+                HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/api/events"))
+                    .timeout(Duration.ofSeconds(30))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString())).build();
+                try {
+                    HttpResponse<byte[]> res = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+                    record("POST /api/events", next, res.statusCode(), res.body().length);
+                } catch (IOException e) {
+                    record("POST /api/events", next, -1, 0);
+                }
+                next += TimeUnit.SECONDS.toNanos(1);
+                sleepUntil(next);
+            }
+        } catch (InterruptedException e) {
+            // run over
+        }
+    }
+
+    private void reloads(Duration period) {
+        long next = System.nanoTime() + period.toNanos();
+        try {
+            while (true) {
+                sleepUntil(next);
+                if (System.nanoTime() >= endNanos) return;
+                HttpRequest req = HttpRequest.newBuilder(URI.create(baseUrl + "/api/reload"))
+                    .timeout(Duration.ofSeconds(30))
+                    .POST(HttpRequest.BodyPublishers.noBody()).build();
+                try {
+                    HttpResponse<byte[]> res = http.send(req, HttpResponse.BodyHandlers.ofByteArray());
+                    record("POST /api/reload", next, res.statusCode(), res.body().length);
+                } catch (IOException e) {
+                    record("POST /api/reload", next, -1, 0);
+                }
+                next += period.toNanos();
+            }
+        } catch (InterruptedException e) {
+            // run over
+        }
+    }
+
+    // ---- requests ----
+
+    /**
+     * GETs path, revalidating with the ETag kept in etags if given.
+     *
+     * @return the (decompressed) body, or null on 304 or an error
+     */
+    private byte[] get(String label, String path, long due, Map<String, String> etags)
+            throws IOException, InterruptedException {
+        HttpRequest.Builder b = HttpRequest.newBuilder(URI.create(baseUrl + path))
+            .timeout(Duration.ofSeconds(60))
+            .header("Accept-Encoding", "gzip");
+        String etag = etags != null ? etags.get(path) : null;
+        if (etag != null) b.header("If-None-Match", etag);
+        HttpResponse<byte[]> res;
+        try {
+            res = http.send(b.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            record(label, due, -1, 0);
+            if (System.nanoTime() >= endNanos) throw new InterruptedException("run over");
+            return null;
+        }
+        record(label, due, res.statusCode(), res.body().length);
+        if (res.statusCode() != 200) return null;
+        if (etags != null) res.headers().firstValue("ETag").ifPresent(v -> etags.put(path, v));
+        byte[] body = res.body();
+        if ("gzip".equals(res.headers().firstValue("Content-Encoding").orElse(null))) {
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+                body = in.readAllBytes();
+            }
+        }
+        return body;
+    }
+
+    private void record(String label, long due, int status, long bytes) {
+        if (!measuring || due < measureStartNanos) return;
+        Endpoint e = endpoints.computeIfAbsent(label, k -> new Endpoint());
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due);
+        e.latency.recordValue(Math.min(Math.max(1, micros), MAX_LATENCY_MICROS));
+        e.bytes.add(bytes);
+        if (status == 304) e.notModified.increment();
+        // A lookup of a plate that is not on file answers 404, as it should
+        else if ((status < 200 || status >= 300) && !(status == 404 && label.equals(PLATE_LOOKUP))) e.errors.increment();
+    }
+
+    // ---- report ----
+
+    private void report(double seconds, List<Double> pauses) throws IOException {
+        ObjectNode json = JSON.createObjectNode();
+        json.put("url", baseUrl);
+        json.put("seconds", seconds);
+        json.set("options", JSON.valueToTree(opts));
+        ArrayNode rows = json.putArray("endpoints");
+
+        System.out.printf("%n%-24s %9s %9s %6s %7s %9s %9s %9s %9s %10s%n", "Endpoint", "Requests", "Req/s",
+            "304%", "Errors", "p50 ms", "p99 ms", "p99.9 ms", "max ms", "MB/s");
+        Histogram all = new Histogram(MAX_LATENCY_MICROS, 3);
+        long requests = 0, errors = 0;
+        for (Map.Entry<String, Endpoint> entry : new TreeMap<>(endpoints).entrySet()) {
+            Endpoint e = entry.getValue();
+            Histogram h = e.latency.copy();
+            all.add(h);
+            long n = h.getTotalCount();
+            requests += n;
+            errors += e.errors.sum();
+            printRow(entry.getKey(), h, n / seconds, e.notModified.sum(), e.errors.sum(), e.bytes.sum() / seconds / 1e6);
+            ObjectNode row = rows.addObject();
+            row.put("endpoint", entry.getKey());
+            row.put("requests", n);
+            row.put("perSecond", n / seconds);
+            row.put("notModified", e.notModified.sum());
+            row.put("errors", e.errors.sum());
+            row.put("bytesPerSecond", e.bytes.sum() / seconds);
+            putPercentiles(row, h);
+        }
+        printRow("all", all, requests / seconds, -1, errors, Double.NaN);
+        putPercentiles(json.putObject("all"), all);
+        json.put("requestsPerSecond", requests / seconds);
+        json.put("lateCycles", lateCycles.sum());
+        if (sseEvents.sum() > 0) json.put("sseEvents", sseEvents.sum());
+
+        System.out.println();
+        System.out.printf("Throughput %.1f req/s over %.1f s; %d polling cycles started late%n",
+            requests / seconds, seconds, lateCycles.sum());
+        if (sseEvents.sum() > 0) System.out.printf("SSE events received: %d (%.1f/s)%n", sseEvents.sum(), sseEvents.sum() / seconds);
+        if (pauses != null) {
+            Histogram gc = new Histogram(MAX_LATENCY_MICROS, 3);
+            double total = 0;
+            for (double p : pauses) {
+                gc.recordValue(Math.max(1, Math.round(p * 1000)));
+                total += p;
+            }
+            System.out.printf("GC: %d pauses, %.1f ms total (%.2f%% of wall time), p99 %.2f ms, max %.2f ms%n",
+                pauses.size(), total, total / (seconds * 10), gc.getValueAtPercentile(99) / 1000.0,
+                gc.getMaxValue() / 1000.0);
+            ObjectNode g = json.putObject("gc");
+            g.put("pauses", pauses.size());
+            g.put("totalMs", total);
+            g.put("p99Ms", gc.getValueAtPercentile(99) / 1000.0);
+            g.put("maxMs", gc.getMaxValue() / 1000.0);
+        } else {
+            System.out.println("GC: not measured (--url targets an app this driver did not start)");
+        }
+        if (opts.containsKey("out")) {
+            Path out = Paths.get(opts.get("out"));
+            JSON.writerWithDefaultPrettyPrinter().writeValue(out.toFile(), json);
+            System.out.println("Report written to " + out);
+        }
+    }
+
+    private static void printRow(String name, Histogram h, double perSecond, long notModified, long errors, double mbps) {
+        long n = h.getTotalCount();
+        System.out.printf("%-24s %9d %9.1f %6s %7d %9.2f %9.2f %9.2f %9.2f %10s%n", name, n, perSecond,
+            notModified < 0 || n == 0 ? "" : String.format("%.0f", 100.0 * notModified / n), errors,
+            h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(99) / 1000.0,
+            h.getValueAtPercentile(99.9) / 1000.0, h.getMaxValue() / 1000.0,
+            Double.isNaN(mbps) ? "" : String.format("%.2f", mbps));
+    }
+
+    private static void putPercentiles(ObjectNode node, Histogram h) {
+        node.put("p50Ms", h.getValueAtPercentile(50) / 1000.0);
+        node.put("p99Ms", h.getValueAtPercentile(99) / 1000.0);
+        node.put("p999Ms", h.getValueAtPercentile(99.9) / 1000.0);
+        node.put("maxMs", h.getMaxValue() / 1000.0);
+    }
+
+    // ---- helpers ----
+
+    private static List<String> samplePlates(Path simulation, int max) throws IOException {
+        Set<String> seen = new LinkedHashSet<>();
+        try (BufferedReader in = Files.newBufferedReader(simulation, StandardCharsets.UTF_8)) {
+            in.readLine();
+            String line;
+            while ((line = in.readLine()) != null && seen.size() < max) {
+                int comma = line.indexOf(',');
+                if (comma > 0) seen.add(line.substring(0, comma));
+            }
+        }
+        return new ArrayList<>(seen);
+    }
+
+    private static void sleepUntil(long nanos) throws InterruptedException {
+        long wait = nanos - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private static void closeQuietly(InputStream s) {
+        try {
+            s.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    private int intOpt(String name, int def) {
+        String v = opts.get(name);
+        return v == null ? def : Integer.parseInt(v.replace("_", ""));
+    }
+
+    /** 90, 90s, 5m, 1h or 500ms. */
+    private Duration durationOpt(String name, Duration def) {
+        String v = opts.get(name);
+        if (v == null) return def;
+        v = v.trim().toLowerCase();
+        if (v.endsWith("ms")) return Duration.ofMillis(Long.parseLong(v.substring(0, v.length() - 2)));
+        long n = Long.parseLong(v.replaceAll("[smh]$", ""));
+        return switch (v.charAt(v.length() - 1)) {
+            case 'm' -> Duration.ofMinutes(n);
+            case 'h' -> Duration.ofHours(n);
+            default  -> Duration.ofSeconds(n);
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package com.valid8.bench;
+
+import com.valid8.model.LotConfig;
+import com.valid8.service.LotIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Five nearest lots with free space, among lots spread at random over New
+ * Jersey, a third of them full. nearest uses the k-d tree of LotIndex;
+ * scan is the linear pass over every lot it replaces, computing the
+ * haversine distance of each and keeping the five closest.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NearestLotBenchmark {
+
+    static final int BATCH = 1024;
+    static final int K = 5;
+
+    @Param({"1000", "10000"})
+    public int lots;
+
+    private LotIndex index;
+    private List<LotConfig> configs;
+    private int[] available;
+    private double[] queries;
+
+    @Setup
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(SyntheticDataset.SEED);
+        configs = new ArrayList<>(lots);
+        available = new int[lots];
+        for (int i = 0; i < lots; i++) {
+            configs.add(new LotConfig("Lot " + i, 50 + random.nextInt(200),
+                38.9 + random.nextDouble() * 2.5, -75.6 + random.nextDouble() * 1.7));
+            available[i] = random.nextInt(3) == 0 ? 0 : 1 + random.nextInt(50);
+        }
+        index = LotIndex.build(configs);
+        queries = new double[2 * BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            queries[2 * i]     = 38.9 + random.nextDouble() * 2.5;
+            queries[2 * i + 1] = -75.6 + random.nextDouble() * 1.7;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void nearest(Blackhole bh) {
+        for (int i = 0; i < BATCH; i++) {
+            bh.consume(index.nearest(queries[2 * i], queries[2 * i + 1], K, slot -> available[slot] > 0));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void scan(Blackhole bh) {
+        int[] best = new int[K];
+        double[] dist = new double[K];
+        for (int q = 0; q < BATCH; q++) {
+            int size = 0;
+            for (int slot = 0; slot < configs.size(); slot++) {
+                if (available[slot] <= 0) continue;
+                LotConfig lc = configs.get(slot);
+                double d = haversine(queries[2 * q], queries[2 * q + 1], lc.getLatitude(), lc.getLongitude());
+                if (size == K && d >= dist[K - 1]) continue;
+                int i = size < K ? size++ : K - 1;
+                while (i > 0 && dist[i - 1] > d) {
+                    dist[i] = dist[i - 1];
+                    best[i] = best[i - 1];
+                    i--;
+                }
+                dist[i] = d;
+                best[i] = slot;
+            }
+            bh.consume(best);
+        }
+    }
+
+    private static double haversine(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1), dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+            + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * LotIndex.EARTH_RADIUS_METERS * Math.asin(Math.sqrt(a));
+    }
+}
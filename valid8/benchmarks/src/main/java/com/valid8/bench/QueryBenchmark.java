@@ -0,0 +1,108 @@
+package com.valid8.bench;
+
+import com.valid8.model.ItemPage;
+import com.valid8.model.LotSummary;
+import com.valid8.model.PlateStatus;
+import com.valid8.model.StatsSeries;
+import com.valid8.model.UnregisteredItem;
+import com.valid8.model.ViolationItem;
+import com.valid8.service.DatasetSnapshot;
+import com.valid8.service.ListQuery;
+import com.valid8.service.Valid8Service;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Read paths behind the API on a loaded snapshot: the dashboard summary,
+ * the full and paged violation lists (with a lot or a plate prefix
+ * filter), the unregistered list, a plate lookup and the month of daily
+ * and hourly trends behind /api/stats.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class QueryBenchmark {
+
+    private static final LocalDateTime MONTH_START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final LocalDateTime MONTH_END = LocalDateTime.of(2024, 3, 31, 23, 0);
+
+    @Param({"10000", "100000", "1000000"})
+    public int sessions;
+
+    private BenchContext context;
+    private Valid8Service service;
+    private DatasetSnapshot snap;
+    private ListQuery firstPage;
+    private ListQuery lotPage;
+    private ListQuery prefixPage;
+    private String plate;
+
+    @Setup
+    public void setup() throws IOException {
+        context = new BenchContext(SyntheticDataset.get(sessions));
+        service = context.service();
+        snap = service.getSnapshot();
+        firstPage = new ListQuery(null, null, null, null, null, false, null, 200);
+        lotPage = new ListQuery("Busch Lot 51", null, null, ListQuery.Status.IN_LOT, null, true, null, 200);
+        plate = snap.getRecords().get(snap.getRecords().size() / 2).getPlate();
+        prefixPage = new ListQuery(null, null, null, null, plate.substring(0, plate.length() - 1), false, null, 200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<LotSummary> lotSummaries() {
+        return service.getLotSummaries();
+    }
+
+    @Benchmark
+    public List<ViolationItem> violations() {
+        return service.getViolations(snap);
+    }
+
+    @Benchmark
+    public ItemPage<ViolationItem> violationsFirstPage() {
+        return service.getViolations(snap, firstPage);
+    }
+
+    @Benchmark
+    public ItemPage<ViolationItem> violationsLotPage() {
+        return service.getViolations(snap, lotPage);
+    }
+
+    @Benchmark
+    public ItemPage<ViolationItem> violationsPrefixPage() {
+        return service.getViolations(snap, prefixPage);
+    }
+
+    @Benchmark
+    public List<UnregisteredItem> unregistered() {
+        return service.getUnregistered(snap);
+    }
+
+    @Benchmark
+    public PlateStatus plateStatus() {
+        return service.getPlateStatus(snap, plate);
+    }
+
+    @Benchmark
+    public List<StatsSeries> statsMonthDaily() {
+        return service.getStats(snap, null, "day", MONTH_START, MONTH_END);
+    }
+
+    @Benchmark
+    public List<StatsSeries> statsMonthHourly() {
+        return service.getStats(snap, null, "hour", MONTH_START, MONTH_END);
+    }
+}
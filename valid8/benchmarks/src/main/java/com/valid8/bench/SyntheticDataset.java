@@ -0,0 +1,164 @@
+package com.valid8.bench;
+
+import com.valid8.model.AutoGate;
+import com.valid8.model.LotConfig;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.SplittableRandom;
+
+
+/**
+ * Writes a registrations file and a simulation file of the requested number
+ * of sessions, in the layout the app reads. The same size and seed always
+ * give the same files, and generated files are reused between runs and
+ * forks.
+ *
+ * About one plate per eight sessions; 70% of plates are registered, most of
+ * them with a max_hours limit. Registered cars park in their own lot 85% of
+ * the time. Entries are spread in time order over 30 days from 2024-03-01,
+ * and 4% of sessions are still open.
+ *
+ * Run directly to generate files ahead of a benchmark run:
+ *   java -cp target/benchmarks.jar com.valid8.bench.SyntheticDataset 10000000 [dir]
+ */
+public final class SyntheticDataset {
+
+    public static final long SEED = 20240301L;
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 3, 1, 0, 0);
+    private static final long SPAN_SECONDS = 30L * 24 * 3600;
+    private static final DateTimeFormatter FMT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String[] MAX_HOURS = {"2", "4", "4", "8", "12", ""};
+
+    private final Path registrations;
+    private final Path simulation;
+    private final int sessions;
+
+    private SyntheticDataset(Path registrations, Path simulation, int sessions) {
+        this.registrations = registrations;
+        this.simulation = simulation;
+        this.sessions = sessions;
+    }
+
+    public Path getRegistrations() { return registrations; }
+    public Path getSimulation()    { return simulation; }
+    public int getSessions()       { return sessions; }
+
+    /** Directory for generated files: -Dvalid8.bench.data, or target/bench-data. */
+    public static Path defaultDir() {
+        return Paths.get(System.getProperty("valid8.bench.data", "target/bench-data"));
+    }
+
+    public static SyntheticDataset get(int sessions) throws IOException {
+        return get(defaultDir(), sessions);
+    }
+
+    /** Returns the dataset of this size in dir, generating it first if it is not there. */
+    public static synchronized SyntheticDataset get(Path dir, int sessions) throws IOException {
+        Files.createDirectories(dir);
+        Path reg = dir.resolve("registered_cars-" + sessions + ".csv");
+        Path sim = dir.resolve("simulation_data-" + sessions + ".csv");
+        if (!Files.isRegularFile(reg) || !Files.isRegularFile(sim)) {
+            long start = System.nanoTime();
+            generate(reg, sim, sessions, new SplittableRandom(SEED));
+            System.out.println("[SyntheticDataset] Generated " + sessions + " sessions in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms: " + sim);
+        }
+        return new SyntheticDataset(reg, sim, sessions);
+    }
+
+    private static void generate(Path reg, Path sim, int sessions, SplittableRandom random) throws IOException {
+        List<LotConfig> lots = AutoGate.LOT_CONFIGS;
+        int plates = Math.max(1000, sessions / 8);
+        int[] homeLot = new int[plates];   // index into lots, or -1 if unregistered
+
+        // Written under temporary names and moved, so an interrupted run is not reused
+        Path regTmp = reg.resolveSibling(reg.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(regTmp, StandardCharsets.UTF_8)) {
+            out.write("plate,lot,max_hours\n");
+            for (int p = 0; p < plates; p++) {
+                if (random.nextInt(10) >= 7) {
+                    homeLot[p] = -1;
+                    continue;
+                }
+                homeLot[p] = random.nextInt(lots.size());
+                out.write(plate(p));
+                out.write(',');
+                out.write(lots.get(homeLot[p]).getName());
+                out.write(',');
+                out.write(MAX_HOURS[random.nextInt(MAX_HOURS.length)]);
+                out.write('\n');
+            }
+        }
+
+        Path simTmp = sim.resolveSibling(sim.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(simTmp, StandardCharsets.UTF_8)) {
+            out.write("plate,lot,entry_time,exit_time\n");
+            for (int i = 0; i < sessions; i++) {
+                int p = random.nextInt(plates);
+                String lot;
+                int roll = random.nextInt(100);
+                if (roll < 3) {
+                    lot = "Other";
+                } else if (homeLot[p] >= 0 && roll < 88) {
+                    lot = lots.get(homeLot[p]).getName();
+                } else {
+                    lot = lots.get(random.nextInt(lots.size())).getName();
+                }
+                long offset = i * SPAN_SECONDS / sessions + random.nextInt(600);
+                LocalDateTime entry = START.plusSeconds(offset);
+                out.write(plate(p));
+                out.write(',');
+                out.write(lot);
+                out.write(',');
+                out.write(FMT.format(entry));
+                out.write(',');
+                if (random.nextInt(100) >= 4) {
+                    // 20 minutes to about 10 hours, weighted towards short stays
+                    double u = random.nextDouble();
+                    long stay = 1200 + (long) (u * u * 34800);
+                    out.write(FMT.format(entry.plusSeconds(stay)));
+                }
+                out.write('\n');
+            }
+        }
+        Files.move(regTmp, reg, StandardCopyOption.REPLACE_EXISTING);
+        Files.move(simTmp, sim, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // Three letters and four digits, e.g. ABC0123
+    private static String plate(int p) {
+        char[] c = new char[7];
+        int letters = p / 10000;
+        c[0] = (char) ('A' + letters / 676 % 26);
+        c[1] = (char) ('A' + letters / 26 % 26);
+        c[2] = (char) ('A' + letters % 26);
+        int digits = p % 10000;
+        for (int k = 6; k >= 3; k--) {
+            c[k] = (char) ('0' + digits % 10);
+            digits /= 10;
+        }
+        return new String(c);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: SyntheticDataset <sessions> [dir]");
+            System.exit(2);
+        }
+        int sessions = Integer.parseInt(args[0].replace("_", ""));
+        Path dir = args.length > 1 ? Paths.get(args[1]) : defaultDir();
+        SyntheticDataset data = get(dir, sessions);
+        System.out.println(data.getRegistrations());
+        System.out.println(data.getSimulation());
+    }
+}
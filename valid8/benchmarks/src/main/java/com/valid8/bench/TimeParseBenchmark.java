@@ -0,0 +1,65 @@
+package com.valid8.bench;
+
+import com.valid8.util.TimeUtils;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * TimeUtils.parse and the per-column parser for each timestamp layout the
+ * loader accepts. "iso-millis" has no fast path and measures the formatter
+ * fallback. Each operation parses BATCH distinct values.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimeParseBenchmark {
+
+    static final int BATCH = 1024;
+
+    @Param({"iso-seconds", "iso-t", "iso-minutes", "us-seconds", "us-minutes", "iso-millis"})
+    public String format;
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        DateTimeFormatter fmt = DateTimeFormatter.ofPattern(switch (format) {
+            case "iso-seconds" -> "yyyy-MM-dd HH:mm:ss";
+            case "iso-t"       -> "yyyy-MM-dd'T'HH:mm:ss";
+            case "iso-minutes" -> "yyyy-MM-dd HH:mm";
+            case "us-seconds"  -> "MM/dd/yyyy HH:mm:ss";
+            case "us-minutes"  -> "MM/dd/yyyy HH:mm";
+            case "iso-millis"  -> "yyyy-MM-dd'T'HH:mm:ss.SSS";
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        });
+        SplittableRandom random = new SplittableRandom(SyntheticDataset.SEED);
+        LocalDateTime start = LocalDateTime.of(2024, 3, 1, 0, 0);
+        values = new String[BATCH];
+        for (int i = 0; i < BATCH; i++) {
+            values[i] = fmt.format(start.plusSeconds(random.nextLong(365L * 24 * 3600)).plusNanos(1_000_000));
+            if (TimeUtils.parse(values[i]) == null) throw new IllegalStateException("Unparsable " + values[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parse(Blackhole bh) {
+        for (String v : values) bh.consume(TimeUtils.parse(v));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void columnParser(Blackhole bh) {
+        TimeUtils.ColumnParser parser = TimeUtils.columnParser();
+        for (String v : values) bh.consume(parser.parse(v));
+    }
+}
@@ -1,14 +1,35 @@
 package com.valid8.controller;
 
-import com.valid8.model.*;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valid8.model.ItemPage;
+import com.valid8.model.PlateMatch;
+import com.valid8.model.PlateStatus;
+import com.valid8.model.ParkingRecord;
+import com.valid8.service.DatasetSnapshot;
+import com.valid8.service.EventJournal;
+import com.valid8.service.GateEventQueue;
+import com.valid8.service.ListQuery;
+import com.valid8.service.ReloadJob;
+import com.valid8.service.ReloadJobs;
 import com.valid8.service.Valid8Service;
+import com.valid8.util.TimeUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api")
@@ -17,34 +38,342 @@ public class ApiController {
     @Autowired
     private Valid8Service service;
 
-    private static final DateTimeFormatter DT_FMT =
-        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    @Autowired
+    private ApiPayloadCache payloads;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private GateEventQueue gateEvents;
+
+    @Autowired
+    private EventJournal journal;
+
+    @Autowired
+    private ReloadJobs reloadJobs;
+
+    @Value("${valid8.events.ack-timeout-ms:10000}")
+    private long ackTimeoutMs;
+
+    public static final String VERSION_HEADER = "X-Dataset-Version";
 
 
     @GetMapping("/summary")
-    public ResponseEntity<List<LotSummary>> summary() {
-        return ResponseEntity.ok(service.getLotSummaries());
+    public ResponseEntity<byte[]> summary(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DatasetSnapshot snap = service.getSnapshot();
+        return payloads.respond("summary", snap, snap::getLotSummaries, ifNoneMatch, acceptEncoding);
     }
 
 
+    /**
+     * Without paging or filter parameters the whole list is returned (cached
+     * per generation). With any of them, one page is returned as
+     * {version, items, nextCursor}; pass nextCursor back as cursor to
+     * continue. Rows are ordered by entry time (order=desc for newest first).
+     * With format=json or format=ndjson every matching row is streamed
+     * instead, see violationsExport.
+     */
     @GetMapping("/violations")
-    public ResponseEntity<List<ViolationItem>> violations() {
-        return ResponseEntity.ok(service.getViolations());
+    public ResponseEntity<?> violations(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DatasetSnapshot snap = service.getSnapshot();
+        if (!isListQuery(params)) {
+            return payloads.respond("violations", snap,
+                gen -> service.writeViolations(snap, null, gen, false), ifNoneMatch, acceptEncoding);
+        }
+        try {
+            return payloads.respond(ApiPayloadCache.key("violations", params, LIST_PARAMS), snap,
+                () -> service.getViolations(snap, listQuery(params)), ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
+    /** Same paging and filters as /violations. */
     @GetMapping("/unregistered")
-    public ResponseEntity<List<UnregisteredItem>> unregistered() {
-        return ResponseEntity.ok(service.getUnregistered());
+    public ResponseEntity<?> unregistered(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DatasetSnapshot snap = service.getSnapshot();
+        if (!isListQuery(params)) {
+            return payloads.respond("unregistered", snap,
+                gen -> service.writeUnregistered(snap, null, gen, false), ifNoneMatch, acceptEncoding);
+        }
+        try {
+            return payloads.respond(ApiPayloadCache.key("unregistered", params, LIST_PARAMS), snap,
+                () -> service.getUnregistered(snap, listQuery(params)), ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
     }
 
-   
-    @PostMapping("/reload")
-    public ResponseEntity<Map<String, Object>> reload() {
-        service.reload();
+    /**
+     * Every violation matching the filters, written to the response as it is
+     * read from the snapshot, so memory does not grow with the size of the
+     * list: a JSON array with format=json, one object per line with
+     * format=ndjson. Without filters the rows come in the order of the full
+     * list, with them in entry time order from cursor on; limit does not
+     * apply. Gzip-compressed when the client accepts it.
+     */
+    @GetMapping(value = "/violations", params = "format")
+    public ResponseEntity<StreamingResponseBody> violationsExport(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export(service.getSnapshot(), params, true, acceptEncoding);
+    }
+
+    /** Same as violationsExport, for the unregistered list. */
+    @GetMapping(value = "/unregistered", params = "format")
+    public ResponseEntity<StreamingResponseBody> unregisteredExport(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return export(service.getSnapshot(), params, false, acceptEncoding);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(DatasetSnapshot snap, Map<String, String> params,
+                                                         boolean violations, String acceptEncoding) {
+        String format = params.get("format");
+        boolean lines = "ndjson".equalsIgnoreCase(format);
+        ListQuery query;
+        try {
+            if (!lines && !"json".equalsIgnoreCase(format)) {
+                throw new IllegalArgumentException("format must be json or ndjson");
+            }
+            query = isListQuery(params) ? listQuery(params) : null;
+        } catch (IllegalArgumentException e) {
+            // The handler is declared to stream, so the error is streamed as well
+            Map<String, String> error = Map.of("error", e.getMessage());
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON)
+                .body(out -> mapper.writeValue(out, error));
+        }
+        boolean gzip = ApiPayloadCache.acceptsGzip(acceptEncoding);
+        StreamingResponseBody body = out -> {
+            OutputStream target = gzip ? new GZIPOutputStream(out, 8192) : out;
+            try (JsonGenerator gen = mapper.createGenerator(target)) {
+                if (violations) service.writeViolations(snap, query, gen, lines);
+                else service.writeUnregistered(snap, query, gen, lines);
+            }
+        };
+        ResponseEntity.BodyBuilder response = versioned(snap)
+            .contentType(lines ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(body);
+    }
+
+    @GetMapping("/plates/{plate}")
+    public ResponseEntity<?> plate(@PathVariable String plate) {
+        DatasetSnapshot snap = service.getSnapshot();
+        PlateStatus status = service.getPlateStatus(snap, plate);
+        if (status == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Unknown plate: " + plate));
+        }
+        return versioned(snap).body(status);
+    }
+
+    /** Plates starting with prefix; pass nextCursor back as cursor for more. */
+    @GetMapping("/plates")
+    public ResponseEntity<ItemPage<PlateMatch>> plates(
+            @RequestParam String prefix,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit) {
+        DatasetSnapshot snap = service.getSnapshot();
+        return versioned(snap).body(service.searchPlates(snap, prefix, cursor, limit));
+    }
+
+    /**
+     * The k lots nearest to lat, lon with at least minAvailable free spaces
+     * now, nearest first, each with its distance in meters.
+     */
+    @GetMapping("/lots/nearest")
+    public ResponseEntity<?> nearestLots(
+            @RequestParam double lat,
+            @RequestParam double lon,
+            @RequestParam(defaultValue = "1") int minAvailable,
+            @RequestParam(defaultValue = "5") int k) {
+        DatasetSnapshot snap = service.getSnapshot();
+        try {
+            return versioned(snap).body(service.getNearestLots(snap, lat, lon, minAvailable, k));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Occupancy curves from the gate events: one series for lot, or one per
+     * configured lot. step is in minutes, or with an m, h or d suffix.
+     */
+    @GetMapping("/occupancy")
+    public ResponseEntity<?> occupancy(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DatasetSnapshot snap = service.getSnapshot();
+        try {
+            return payloads.respond(ApiPayloadCache.key("occupancy", params, OCCUPANCY_PARAMS), snap,
+                () -> service.getOccupancy(snap, params.get("lot"),
+                    time(params, "from"), time(params, "to"), stepMinutes(params.get("step"))),
+                ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    /**
+     * Session counts, violations, unregistered share and dwell time
+     * percentiles per hour or day, from the rollups kept with each
+     * generation: one series for lot, or one per configured lot.
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<?> stats(
+            @RequestParam Map<String, String> params,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        DatasetSnapshot snap = service.getSnapshot();
+        try {
+            return payloads.respond(ApiPayloadCache.key("stats", params, STATS_PARAMS), snap,
+                () -> service.getStats(snap, params.get("lot"), params.get("granularity"),
+                    time(params, "from"), time(params, "to")),
+                ifNoneMatch, acceptEncoding);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    private static Long stepMinutes(String raw) {
+        if (raw == null || raw.isBlank()) return null;
+        String s = raw.trim().toLowerCase();
+        long unit = 1;
+        char last = s.charAt(s.length() - 1);
+        if (last == 'm' || last == 'h' || last == 'd') {
+            unit = last == 'h' ? 60 : last == 'd' ? 1440 : 1;
+            s = s.substring(0, s.length() - 1);
+        }
+        try {
+            return Math.multiplyExact(Long.parseLong(s), unit);
+        } catch (NumberFormatException | ArithmeticException e) {
+            throw new IllegalArgumentException("step must be minutes, e.g. 15, 15m, 2h or 1d");
+        }
+    }
+
+    private static final Set<String> LIST_PARAMS =
+        Set.of("limit", "cursor", "lot", "from", "to", "status", "plate", "order");
+    private static final Set<String> OCCUPANCY_PARAMS = Set.of("lot", "from", "to", "step");
+    private static final Set<String> STATS_PARAMS = Set.of("lot", "granularity", "from", "to");
+
+    private static boolean isListQuery(Map<String, String> params) {
+        for (String p : params.keySet()) {
+            if (LIST_PARAMS.contains(p)) return true;
+        }
+        return false;
+    }
+
+    private static ListQuery listQuery(Map<String, String> params) {
+        String limit  = params.get("limit");
+        String status = params.get("status");
+        String order  = params.get("order");
+        ListQuery.Status st;
+        if (status == null || status.isBlank() || status.equalsIgnoreCase("all")) {
+            st = ListQuery.Status.ALL;
+        } else if (status.equalsIgnoreCase("in") || status.equalsIgnoreCase("inlot")) {
+            st = ListQuery.Status.IN_LOT;
+        } else if (status.equalsIgnoreCase("left")) {
+            st = ListQuery.Status.LEFT;
+        } else {
+            throw new IllegalArgumentException("status must be all, in or left");
+        }
+        if (order != null && !order.equalsIgnoreCase("asc") && !order.equalsIgnoreCase("desc")) {
+            throw new IllegalArgumentException("order must be asc or desc");
+        }
+        Integer n;
+        try {
+            n = limit == null || limit.isBlank() ? null : Integer.valueOf(limit.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("limit must be a number");
+        }
+        return new ListQuery(params.get("lot"),
+            time(params, "from"), time(params, "to"), st, params.get("plate"),
+            "desc".equalsIgnoreCase(order), params.get("cursor"), n);
+    }
+
+    private static LocalDateTime time(Map<String, String> params, String name) {
+        String raw = params.get(name);
+        if (raw == null || raw.isBlank()) return null;
+        LocalDateTime t = TimeUtils.parse(raw);
+        if (t == null) throw new IllegalArgumentException("Cannot parse " + name + ": " + raw);
+        return t;
+    }
+
+    /**
+     * Batch of gate events as a JSON array or NDJSON, queued for the event
+     * writer. 202 when queued, 429 with Retry-After when the queue is full
+     * (nothing from the batch is queued then), 400 for an invalid event.
+     * With the journal on, the response waits until the batch is on disk
+     * and says so with durable: true, or answers 500 with the number of
+     * events dropped if the writer could not apply them.
+     */
+    @PostMapping("/events")
+    public ResponseEntity<Map<String, Object>> events(InputStream body) throws IOException, InterruptedException {
+        List<ParkingRecord> events;
+        try {
+            events = GateEventQueue.parse(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+        if (events.size() > gateEvents.getCapacity()) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of("error",
+                "Batch of " + events.size() + " events exceeds the queue capacity of " + gateEvents.getCapacity()));
+        }
+        long ticket = gateEvents.offer(events);
+        if (ticket < 0) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Map.of("error", "Event queue is full", "retryAfterSeconds", 1));
+        }
+        boolean handled = journal.isEnabled() && gateEvents.awaitApplied(ticket, ackTimeoutMs);
+        int dropped = handled ? gateEvents.dropped(ticket, events.size()) : 0;
         Map<String, Object> response = new LinkedHashMap<>();
-        response.put("success", true);
-        response.put("reloadTimestamp", LocalDateTime.now().format(DT_FMT));
-        response.put("error", service.getLoadError());
-        return ResponseEntity.ok(response);
+        if (dropped > 0) {
+            response.put("error", "Events could not be applied");
+            response.put("accepted", events.size());
+            response.put("dropped", dropped);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(response);
+        }
+        response.put("accepted", events.size());
+        response.put("durable", handled);
+        response.put("queued", gateEvents.size());
+        return ResponseEntity.accepted().body(response);
+    }
+
+    /**
+     * Starts a reload and answers 202 right away with the job; poll the
+     * Location for its progress. While a reload is running, further requests
+     * share one job queued to run after it.
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<ReloadJob> reload() {
+        ReloadJob job = reloadJobs.submit();
+        return ResponseEntity.accepted()
+            .location(URI.create("/api/reload/" + job.getId()))
+            .body(job);
+    }
+
+    @GetMapping("/reload/{id}")
+    public ResponseEntity<?> reloadStatus(@PathVariable long id) {
+        ReloadJob job = reloadJobs.get(id);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "No reload job " + id));
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    private static ResponseEntity.BodyBuilder versioned(DatasetSnapshot snap) {
+        return ResponseEntity.ok().header(VERSION_HEADER, String.valueOf(snap.getVersion()));
     }
 }
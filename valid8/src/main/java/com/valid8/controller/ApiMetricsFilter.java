@@ -0,0 +1,130 @@
+package com.valid8.controller;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+
+/**
+ * Records the size of each successful /api response body as
+ * valid8.api.response.size, tagged with the endpoint's route and whether
+ * it was gzip-compressed. Latencies are recorded by Actuator as
+ * http.server.requests. Streamed responses such as the JSON and NDJSON
+ * exports are written after the handler returns, so their size is recorded
+ * when the async request completes. The event stream is left out, since it
+ * is one long response.
+ */
+@Component
+public class ApiMetricsFilter extends OncePerRequestFilter {
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return !path.startsWith("/api/") || path.startsWith("/api/stream");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingResponse counting = new CountingResponse(response);
+        chain.doFilter(request, counting);
+        if (!request.isAsyncStarted()) {
+            record(request, response, counting.bytes);
+            return;
+        }
+        // The async dispatch that follows skips this filter, so the counting wrapper stays the one written to
+        request.getAsyncContext().addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+                record(request, response, counting.bytes);
+            }
+
+            @Override public void onTimeout(AsyncEvent event) {}
+            @Override public void onError(AsyncEvent event) {}
+            @Override public void onStartAsync(AsyncEvent event) {}
+        });
+    }
+
+    private void record(HttpServletRequest request, HttpServletResponse response, long bytes) {
+        if (response.getStatus() < 200 || response.getStatus() >= 300) return;
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String encoding = response.getHeader(HttpHeaders.CONTENT_ENCODING);
+        DistributionSummary.builder("valid8.api.response.size")
+            .baseUnit("bytes")
+            .tag("uri", route != null ? route.toString() : "UNKNOWN")
+            .tag("encoding", encoding != null ? encoding : "identity")
+            .register(registry)
+            .record(bytes);
+    }
+
+
+    /** Counts the bytes written through getOutputStream, which the JSON and byte[] converters use. */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+
+        long bytes;
+        private ServletOutputStream stream;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (stream == null) {
+                ServletOutputStream out = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        out.write(b);
+                        bytes++;
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        out.write(b, off, len);
+                        bytes += len;
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        out.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        out.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return out.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        out.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
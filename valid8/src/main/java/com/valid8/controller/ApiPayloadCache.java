@@ -0,0 +1,254 @@
+package com.valid8.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.valid8.service.DatasetSnapshot;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.*;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * Serialized JSON bodies for the read-only API endpoints, built at most once
+ * per dataset generation and query. Responses carry a strong ETag derived
+ * from the generation, so conditional requests are answered with 304 and
+ * cache hits write the stored bytes directly. Bodies above gzip-min-bytes
+ * are also kept gzip-compressed for clients that accept it. Large lists are
+ * written row by row with a JsonBody instead of being built as objects first.
+ *
+ * Entries are keyed by endpoint, normalized query and generation. When a
+ * new generation is published every poller misses at once; the first
+ * request builds the body and the others wait for it rather than building
+ * it again. Once a generation's first body is built, entries two or more
+ * generations older are dropped (the previous one still sizes the new
+ * bodies and serves readers that have not moved on). The rest are bounded
+ * by cache-max-bytes and cache-ttl-ms.
+ */
+@Component
+public class ApiPayloadCache {
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Autowired
+    private MeterRegistry registry;
+
+    @Value("${valid8.api.gzip-min-bytes:2048}")
+    private int gzipMinBytes;
+
+    @Value("${valid8.api.cache-max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${valid8.api.cache-ttl-ms:60000}")
+    private long ttlMs;
+
+    // Distinguishes ETags across restarts, when versions start over at 1.
+    private final String instanceTag = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong newestVersion = new AtomicLong();
+    private AsyncCache<Key, Payload> cache;
+    private Counter coalesced;
+
+    @PostConstruct
+    public void init() {
+        cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((Key k, Payload p) -> p.weight())
+            .expireAfterWrite(Duration.ofMillis(ttlMs))
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(registry, cache, "api");
+        coalesced = Counter.builder("valid8.api.cache.coalesced")
+            .description("Requests that waited for a body another request was building")
+            .register(registry);
+    }
+
+    /** Writes a body straight to the generator. */
+    @FunctionalInterface
+    public interface JsonBody {
+        void write(JsonGenerator gen) throws IOException;
+    }
+
+    /**
+     * @return the cache key of endpoint with the params named in used, sorted
+     *         and without blank values, so that equivalent queries share an entry
+     */
+    public static String key(String endpoint, Map<String, String> params, Set<String> used) {
+        StringBuilder sb = new StringBuilder(endpoint);
+        char sep = '?';
+        for (String name : new TreeSet<>(params.keySet())) {
+            String value = params.get(name);
+            if (!used.contains(name) || value == null || value.isBlank()) continue;
+            sb.append(sep).append(name).append('=').append(value.trim());
+            sep = '&';
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Answers from the body cached for key and snap's generation, building
+     * it with body on a miss. Exceptions from body (such as an
+     * IllegalArgumentException for a bad parameter) are thrown to every
+     * request waiting on it, and nothing is cached.
+     */
+    public ResponseEntity<byte[]> respond(String key, DatasetSnapshot snap, Supplier<?> body,
+                                          String ifNoneMatch, String acceptEncoding) {
+        return respond(key, snap, gen -> mapper.writeValue(gen, body.get()), ifNoneMatch, acceptEncoding);
+    }
+
+    public ResponseEntity<byte[]> respond(String key, DatasetSnapshot snap, JsonBody body,
+                                          String ifNoneMatch, String acceptEncoding) {
+        Payload p = payload(new Key(key, snap.getVersion()), body);
+        boolean gzip = p.json.length >= gzipMinBytes && acceptsGzip(acceptEncoding);
+        String etag = gzip ? p.gzipEtag : p.etag;
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag(etag);
+        headers.setCacheControl(CacheControl.noCache());
+        headers.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        headers.set(ApiController.VERSION_HEADER, String.valueOf(p.version));
+
+        if (matches(ifNoneMatch, p)) {
+            return new ResponseEntity<>(headers, HttpStatus.NOT_MODIFIED);
+        }
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return new ResponseEntity<>(gzip ? p.gzip() : p.json, headers, HttpStatus.OK);
+    }
+
+    private Payload payload(Key key, JsonBody body) {
+        CompletableFuture<Payload> mine = new CompletableFuture<>();
+        CompletableFuture<Payload> f = cache.get(key, (k, executor) -> mine);
+        if (f != mine) {
+            if (!f.isDone()) coalesced.increment();
+            try {
+                return f.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+        Payload p;
+        try {
+            p = serialize(key, body);
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e); // the cache drops failed entries
+            throw e;
+        }
+        mine.complete(p);
+        if (newestVersion.getAndAccumulate(key.version, Math::max) < key.version) {
+            cache.asMap().keySet().removeIf(k -> k.version < key.version - 1);
+        }
+        return p;
+    }
+
+    private Payload serialize(Key key, JsonBody body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(sizeHint(key));
+        try (JsonGenerator gen = mapper.createGenerator(out)) {
+            body.write(gen);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String name = key.query.indexOf('?') < 0 ? key.query
+            : key.query.substring(0, key.query.indexOf('?')) + "-" + Integer.toHexString(key.query.hashCode());
+        String etag = "\"" + name + "-" + instanceTag + "-" + key.version + "\"";
+        return new Payload(key.version, etag, out.toByteArray());
+    }
+
+    // The previous generation's body is usually about as long.
+    private int sizeHint(Key key) {
+        CompletableFuture<Payload> previous = cache.asMap().get(new Key(key.query, key.version - 1));
+        if (previous == null || !previous.isDone() || previous.isCompletedExceptionally()) return 8192;
+        int length = previous.join().json.length;
+        return length + length / 16 + 64;
+    }
+
+    static boolean acceptsGzip(String acceptEncoding) {
+        return acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip");
+    }
+
+    private static boolean matches(String ifNoneMatch, Payload p) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.startsWith("W/")) t = t.substring(2);
+            if (t.equals("*") || t.equals(p.etag) || t.equals(p.gzipEtag)) return true;
+        }
+        return false;
+    }
+
+
+    private static final class Key {
+
+        final String query;     // endpoint, with its normalized parameters
+        final long version;
+
+        Key(String query, long version) {
+            this.query = query;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.version == version && k.query.equals(query);
+        }
+
+        @Override
+        public int hashCode() {
+            return query.hashCode() * 31 + Long.hashCode(version);
+        }
+    }
+
+    private static final class Payload {
+
+        final long version;
+        final String etag;
+        final String gzipEtag;
+        final byte[] json;
+        private volatile byte[] gzip;
+
+        Payload(long version, String etag, byte[] json) {
+            this.version = version;
+            this.etag = etag;
+            this.gzipEtag = etag.substring(0, etag.length() - 1) + "-gz\"";
+            this.json = json;
+        }
+
+        // The gzip copy is made later and is usually a fraction of the size, so a quarter is allowed for it.
+        int weight() {
+            return (int) Math.min(Integer.MAX_VALUE, 256 + json.length + json.length / 4L);
+        }
+
+        byte[] gzip() {
+            byte[] g = gzip;
+            if (g == null) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+                try (GZIPOutputStream gz = new GZIPOutputStream(out)) {
+                    gz.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                gzip = g = out.toByteArray();
+            }
+            return g;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.valid8.controller;
+
+import com.valid8.service.LiveUpdateBroadcaster;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+
+
+@RestController
+@RequestMapping("/api")
+public class StreamController {
+
+    @Autowired
+    private LiveUpdateBroadcaster broadcaster;
+
+
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestParam(defaultValue = LiveUpdateBroadcaster.SUMMARY) String topics) {
+        Set<String> selected = new LinkedHashSet<>();
+        for (String t : topics.split(",")) {
+            String topic = t.trim().toLowerCase();
+            if (LiveUpdateBroadcaster.TOPICS.contains(topic)) selected.add(topic);
+        }
+        if (selected.isEmpty()) selected.add(LiveUpdateBroadcaster.SUMMARY);
+        return broadcaster.subscribe(Collections.unmodifiableSet(selected));
+    }
+}
@@ -5,7 +5,7 @@ import java.util.*;
 
 public class AutoGate {
 
-    
+    /** Lots used when no lots file is found. */
     public static final List<LotConfig> LOT_CONFIGS = List.of(
             new LotConfig("Busch Lot 51", 90, 40.5221, -74.4597),
             new LotConfig("Livingston Yellow", 85, 40.5239, -74.4495),
@@ -13,25 +13,49 @@ public class AutoGate {
             new LotConfig("Cook Lot 98", 60, 40.4844, -74.4357),
             new LotConfig("Lot 33", 75, 40.5058, -74.4530));
 
-    
-    public static Map<String, LotConfig> buildConfigMap() {
-        Map<String, LotConfig> map = new LinkedHashMap<>();
-        for (LotConfig lc : LOT_CONFIGS) {
-            map.put(lc.getName(), lc);
+    /**
+     * Counts sessions, violations and open sessions per configured lot
+     * (case-insensitive) in a single pass over the store's columns. Rows for
+     * lots that are not configured are ignored. The map is in the order of
+     * lots.
+     */
+    public static Map<String, LotAggregate> aggregateByLot(RecordStore records, List<LotConfig> lots) {
+        int n = lots.size();
+        int[] slotOfLot = configSlots(records, lots);
+        int[] sessions = new int[n];
+        int[] violations = new int[n];
+        int[] inLot = new int[n];
+
+        for (int i = 0; i < records.size(); i++) {
+            int slot = slotOfLot[records.lotId(i)];
+            if (slot < 0) continue;
+            sessions[slot]++;
+            if (records.isViolation(i))   violations[slot]++;
+            if (records.isStillInLot(i)) inLot[slot]++;
+        }
+
+        Map<String, LotAggregate> map = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            LotConfig lc = lots.get(i);
+            map.put(lc.getName(), new LotAggregate(lc, sessions[i], violations[i], inLot[i]));
         }
-        return map;
+        return Collections.unmodifiableMap(map);
     }
 
     /**
-     * @param records       
-     * @param registrations 
+     * @return for each lot id of the store, the index in lots of its
+     *         LotConfig (case-insensitive, first match), or -1
      */
-    public static void applyRegistrations(List<ParkingRecord> records,
-            Map<String, Registration> registrations) {
-        for (ParkingRecord pr : records) {
-            Registration reg = registrations.get(pr.getPlate());
-            pr.setRegistration(reg); 
+    public static int[] configSlots(RecordStore records, List<LotConfig> lots) {
+        Map<String, Integer> byName = new HashMap<>(lots.size() * 2);
+        for (int i = 0; i < lots.size(); i++) byName.putIfAbsent(lots.get(i).getName().toLowerCase(), i);
+        int[] slots = new int[records.lotIdCount()];
+        for (int id = 0; id < slots.length; id++) {
+            String name = records.lotName(id);
+            Integer slot = name == null ? null : byName.get(name.toLowerCase());
+            slots[id] = slot == null ? -1 : slot;
         }
+        return slots;
     }
 
     public static int computeAvailable(int capacity, int currentInLot) {
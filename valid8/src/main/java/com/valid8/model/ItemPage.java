@@ -0,0 +1,28 @@
+package com.valid8.model;
+
+import java.util.List;
+
+
+public class ItemPage<T> {
+
+    private long version;
+    private List<T> items;
+    private String nextCursor;   // null on the last page
+
+    public ItemPage() {}
+
+    public ItemPage(long version, List<T> items, String nextCursor) {
+        this.version    = version;
+        this.items      = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public long getVersion()                  { return version; }
+    public void setVersion(long v)            { this.version = v; }
+
+    public List<T> getItems()                 { return items; }
+    public void setItems(List<T> v)           { this.items = v; }
+
+    public String getNextCursor()             { return nextCursor; }
+    public void setNextCursor(String v)       { this.nextCursor = v; }
+}
@@ -0,0 +1,29 @@
+package com.valid8.model;
+
+
+public class LotAggregate {
+
+    private final LotConfig config;
+    private final int totalSessions;
+    private final int violationsCount;
+    private final int inLotCount;
+
+    public LotAggregate(LotConfig config, int totalSessions,
+                        int violationsCount, int inLotCount) {
+        this.config = config;
+        this.totalSessions = totalSessions;
+        this.violationsCount = violationsCount;
+        this.inLotCount = inLotCount;
+    }
+
+    /** @return this aggregate with the given deltas applied */
+    public LotAggregate adjust(int sessions, int violations, int inLot) {
+        return new LotAggregate(config, totalSessions + sessions,
+                violationsCount + violations, inLotCount + inLot);
+    }
+
+    public LotConfig getConfig()            { return config; }
+    public int getTotalSessions()           { return totalSessions; }
+    public int getViolationsCount()         { return violationsCount; }
+    public int getInLotCount()              { return inLotCount; }
+}
@@ -0,0 +1,102 @@
+package com.valid8.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Little-endian reader over a file of any size, mapped a window of at most
+ * 2 GiB at a time. Values that straddle the end of a window are read from
+ * the next one, which starts at the first unread byte.
+ */
+public final class MappedInput {
+
+    private static final long MAX_WINDOW_BYTES = Integer.MAX_VALUE;
+
+    private final FileChannel ch;
+    private final long size;
+    private final long windowBytes;
+    private long base;                  // file position of window's first byte
+    private MappedByteBuffer window;
+
+    public MappedInput(FileChannel ch) throws IOException {
+        this(ch, MAX_WINDOW_BYTES);
+    }
+
+    MappedInput(FileChannel ch, long windowBytes) throws IOException {
+        this.ch = ch;
+        this.size = ch.size();
+        this.windowBytes = Math.max(8, Math.min(windowBytes, MAX_WINDOW_BYTES));
+        map(0);
+    }
+
+    /** @return the bytes left in the file */
+    public long remaining() {
+        return size - base - window.position();
+    }
+
+    public int getInt() {
+        need(4);
+        return window.getInt();
+    }
+
+    public long getLong() {
+        need(8);
+        return window.getLong();
+    }
+
+    public double getDouble() {
+        need(8);
+        return window.getDouble();
+    }
+
+    public void get(byte[] dst) {
+        for (int done = 0; done < dst.length; ) {
+            need(1);
+            int k = Math.min(dst.length - done, window.remaining());
+            window.get(dst, done, k);
+            done += k;
+        }
+    }
+
+    public void getInts(int[] dst, int n) {
+        for (int done = 0; done < n; ) {
+            need(4);
+            int k = Math.min(n - done, window.remaining() / 4);
+            window.asIntBuffer().get(dst, done, k);
+            window.position(window.position() + k * 4);
+            done += k;
+        }
+    }
+
+    public void getLongs(long[] dst, int n) {
+        for (int done = 0; done < n; ) {
+            need(8);
+            int k = Math.min(n - done, window.remaining() / 8);
+            window.asLongBuffer().get(dst, done, k);
+            window.position(window.position() + k * 8);
+            done += k;
+        }
+    }
+
+    // Moves the window up to the first unread byte if fewer than bytes are left in it.
+    private void need(int bytes) {
+        if (window.remaining() >= bytes) return;
+        if (remaining() < bytes) throw new BufferUnderflowException();
+        try {
+            map(base + window.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void map(long position) throws IOException {
+        base = position;
+        window = ch.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowBytes, size - position));
+        window.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
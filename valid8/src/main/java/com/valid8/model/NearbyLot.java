@@ -0,0 +1,51 @@
+package com.valid8.model;
+
+
+public class NearbyLot {
+
+    private String lotName;
+    private int capacity;
+    private int availableNow;
+    private double occupancyPercent;
+    private String availabilityColor;
+    private double latitude;
+    private double longitude;
+    private int distanceMeters;     // great-circle distance from the query point
+
+    public NearbyLot() {}
+
+    public NearbyLot(LotSummary lot, int distanceMeters) {
+        this.lotName           = lot.getLotName();
+        this.capacity          = lot.getCapacity();
+        this.availableNow      = lot.getAvailableNow();
+        this.occupancyPercent  = lot.getOccupancyPercent();
+        this.availabilityColor = lot.getAvailabilityColor();
+        this.latitude          = lot.getLatitude();
+        this.longitude         = lot.getLongitude();
+        this.distanceMeters    = distanceMeters;
+    }
+
+    public String getLotName()                 { return lotName; }
+    public void setLotName(String v)           { this.lotName = v; }
+
+    public int getCapacity()                   { return capacity; }
+    public void setCapacity(int v)             { this.capacity = v; }
+
+    public int getAvailableNow()               { return availableNow; }
+    public void setAvailableNow(int v)         { this.availableNow = v; }
+
+    public double getOccupancyPercent()        { return occupancyPercent; }
+    public void setOccupancyPercent(double v)  { this.occupancyPercent = v; }
+
+    public String getAvailabilityColor()       { return availabilityColor; }
+    public void setAvailabilityColor(String v) { this.availabilityColor = v; }
+
+    public double getLatitude()                { return latitude; }
+    public void setLatitude(double v)          { this.latitude = v; }
+
+    public double getLongitude()               { return longitude; }
+    public void setLongitude(double v)         { this.longitude = v; }
+
+    public int getDistanceMeters()             { return distanceMeters; }
+    public void setDistanceMeters(int v)       { this.distanceMeters = v; }
+}
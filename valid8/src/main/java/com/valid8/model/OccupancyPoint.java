@@ -0,0 +1,36 @@
+package com.valid8.model;
+
+
+public class OccupancyPoint {
+
+    private String time;              // start of the bucket
+    private int occupancy;            // cars in the lot at that instant
+    private double averageOccupancy;  // time-weighted mean over the bucket
+    private int entries;
+    private int exits;
+
+    public OccupancyPoint() {}
+
+    public OccupancyPoint(String time, int occupancy, double averageOccupancy, int entries, int exits) {
+        this.time             = time;
+        this.occupancy        = occupancy;
+        this.averageOccupancy = averageOccupancy;
+        this.entries          = entries;
+        this.exits            = exits;
+    }
+
+    public String getTime()                   { return time; }
+    public void setTime(String v)             { this.time = v; }
+
+    public int getOccupancy()                 { return occupancy; }
+    public void setOccupancy(int v)           { this.occupancy = v; }
+
+    public double getAverageOccupancy()       { return averageOccupancy; }
+    public void setAverageOccupancy(double v) { this.averageOccupancy = v; }
+
+    public int getEntries()                   { return entries; }
+    public void setEntries(int v)             { this.entries = v; }
+
+    public int getExits()                     { return exits; }
+    public void setExits(int v)               { this.exits = v; }
+}
@@ -0,0 +1,33 @@
+package com.valid8.model;
+
+import java.util.List;
+
+
+public class OccupancySeries {
+
+    private String lotName;
+    private int capacity;            // 0 for lots that are not configured
+    private long stepMinutes;
+    private List<OccupancyPoint> points;
+
+    public OccupancySeries() {}
+
+    public OccupancySeries(String lotName, int capacity, long stepMinutes, List<OccupancyPoint> points) {
+        this.lotName     = lotName;
+        this.capacity    = capacity;
+        this.stepMinutes = stepMinutes;
+        this.points      = points;
+    }
+
+    public String getLotName()                   { return lotName; }
+    public void setLotName(String v)             { this.lotName = v; }
+
+    public int getCapacity()                     { return capacity; }
+    public void setCapacity(int v)               { this.capacity = v; }
+
+    public long getStepMinutes()                 { return stepMinutes; }
+    public void setStepMinutes(long v)           { this.stepMinutes = v; }
+
+    public List<OccupancyPoint> getPoints()      { return points; }
+    public void setPoints(List<OccupancyPoint> v){ this.points = v; }
+}
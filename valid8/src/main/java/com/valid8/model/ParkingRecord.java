@@ -6,6 +6,10 @@ import java.time.Duration;
 
 public class ParkingRecord {
 
+    public static final String UNREGISTERED = "Unregistered";
+    public static final String WRONG_LOT    = "Wrong Lot";
+    public static final String OVERSTAY     = "Overstay";
+
     private final String plate;
     private final String lot;
     private final LocalDateTime entryTime;
@@ -21,6 +25,14 @@ public class ParkingRecord {
         this.exitTime = exitTime;
     }
 
+    /** For views that supply their values through the getters. */
+    protected ParkingRecord() {
+        this.plate = null;
+        this.lot = null;
+        this.entryTime = null;
+        this.exitTime = null;
+    }
+
     public String getPlate()          { return plate; }
     public String getLot()            { return lot; }
     public LocalDateTime getEntryTime(){ return entryTime; }
@@ -30,34 +42,40 @@ public class ParkingRecord {
 
   
     public boolean isStillInLot() {
-        return exitTime == null;
+        return getExitTime() == null;
     }
 
   
     public long getDurationMinutes() {
-        LocalDateTime end = (exitTime != null) ? exitTime : LocalDateTime.now();
-        return Duration.between(entryTime, end).toMinutes();
+        LocalDateTime end = (getExitTime() != null) ? getExitTime() : LocalDateTime.now();
+        return Duration.between(getEntryTime(), end).toMinutes();
     }
 
   
     public boolean legal() {
-        if (registration == null) {
-            return false; 
-        }
-        if (!registration.getLot().equalsIgnoreCase(lot)) {
-            return false; 
-        }
-        return true;
+        return violationReason() == null;
     }
 
-   
+    /** Why the session is a violation, or null if it is legal. Open sessions are checked against now. */
     public String violationReason() {
-        return "Unregistered";
+        Registration registration = getRegistration();
+        if (registration == null) {
+            return UNREGISTERED;
+        }
+        if (!registration.getLot().equalsIgnoreCase(getLot())) {
+            return WRONG_LOT;
+        }
+        long limit = registration.maxStaySeconds();
+        if (limit >= 0 && getEntryTime() != null) {
+            LocalDateTime end = (getExitTime() != null) ? getExitTime() : LocalDateTime.now();
+            if (Duration.between(getEntryTime(), end).getSeconds() > limit) return OVERSTAY;
+        }
+        return null;
     }
 
     @Override
     public String toString() {
-        return "ParkingRecord{plate='" + plate + "', lot='" + lot
-                + "', entry=" + entryTime + ", exit=" + exitTime + "}";
+        return "ParkingRecord{plate='" + getPlate() + "', lot='" + getLot()
+                + "', entry=" + getEntryTime() + ", exit=" + getExitTime() + "}";
     }
 }
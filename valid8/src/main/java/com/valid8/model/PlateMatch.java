@@ -0,0 +1,37 @@
+package com.valid8.model;
+
+
+public class PlateMatch {
+
+    private String licensePlate;
+    private boolean registered;
+    private String registeredLot;   // null when unregistered
+    private String currentLot;      // lot of an open session, null if not parked
+    private int totalSessions;
+
+    public PlateMatch() {}
+
+    public PlateMatch(String licensePlate, boolean registered, String registeredLot,
+                      String currentLot, int totalSessions) {
+        this.licensePlate  = licensePlate;
+        this.registered    = registered;
+        this.registeredLot = registeredLot;
+        this.currentLot    = currentLot;
+        this.totalSessions = totalSessions;
+    }
+
+    public String getLicensePlate()           { return licensePlate; }
+    public void setLicensePlate(String v)     { this.licensePlate = v; }
+
+    public boolean isRegistered()             { return registered; }
+    public void setRegistered(boolean v)      { this.registered = v; }
+
+    public String getRegisteredLot()          { return registeredLot; }
+    public void setRegisteredLot(String v)    { this.registeredLot = v; }
+
+    public String getCurrentLot()             { return currentLot; }
+    public void setCurrentLot(String v)       { this.currentLot = v; }
+
+    public int getTotalSessions()             { return totalSessions; }
+    public void setTotalSessions(int v)       { this.totalSessions = v; }
+}
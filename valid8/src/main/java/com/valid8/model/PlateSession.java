@@ -0,0 +1,37 @@
+package com.valid8.model;
+
+
+public class PlateSession {
+
+    private String lotName;
+    private String timeIn;
+    private String timeOut;
+    private String status;
+    private String violation;   // null when the session is legal
+
+    public PlateSession() {}
+
+    public PlateSession(String lotName, String timeIn, String timeOut,
+                        String status, String violation) {
+        this.lotName   = lotName;
+        this.timeIn    = timeIn;
+        this.timeOut   = timeOut;
+        this.status    = status;
+        this.violation = violation;
+    }
+
+    public String getLotName()            { return lotName; }
+    public void setLotName(String v)      { this.lotName = v; }
+
+    public String getTimeIn()             { return timeIn; }
+    public void setTimeIn(String v)       { this.timeIn = v; }
+
+    public String getTimeOut()            { return timeOut; }
+    public void setTimeOut(String v)      { this.timeOut = v; }
+
+    public String getStatus()             { return status; }
+    public void setStatus(String v)       { this.status = v; }
+
+    public String getViolation()          { return violation; }
+    public void setViolation(String v)    { this.violation = v; }
+}
@@ -0,0 +1,27 @@
+package com.valid8.model;
+
+import java.util.List;
+
+
+/** A plate's registration and all of its sessions, oldest first. */
+public class PlateStatus extends PlateMatch {
+
+    private Double maxHours;        // null when unregistered
+    private List<PlateSession> sessions;
+
+    public PlateStatus() {}
+
+    public PlateStatus(String licensePlate, Registration registration, String currentLot,
+                       List<PlateSession> sessions) {
+        super(licensePlate, registration != null,
+              registration != null ? registration.getLot() : null, currentLot, sessions.size());
+        this.maxHours = registration != null ? registration.getMaxHours() : null;
+        this.sessions = sessions;
+    }
+
+    public Double getMaxHours()                   { return maxHours; }
+    public void setMaxHours(Double v)             { this.maxHours = v; }
+
+    public List<PlateSession> getSessions()       { return sessions; }
+    public void setSessions(List<PlateSession> v) { this.sessions = v; }
+}
@@ -0,0 +1,26 @@
+package com.valid8.model;
+
+
+public class PlateSuggestion {
+
+    private String licensePlate;
+    private String lotName;
+    private double distance;        // edits, with a misread character counted as 0.5
+
+    public PlateSuggestion() {}
+
+    public PlateSuggestion(String licensePlate, String lotName, double distance) {
+        this.licensePlate = licensePlate;
+        this.lotName      = lotName;
+        this.distance     = distance;
+    }
+
+    public String getLicensePlate()       { return licensePlate; }
+    public void setLicensePlate(String v) { this.licensePlate = v; }
+
+    public String getLotName()            { return lotName; }
+    public void setLotName(String v)      { this.lotName = v; }
+
+    public double getDistance()           { return distance; }
+    public void setDistance(double v)     { this.distance = v; }
+}
@@ -0,0 +1,569 @@
+package com.valid8.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+
+
+/**
+ * Columnar storage for parking sessions. Plates and lots are dictionary
+ * encoded to int ids, entry and exit times are stored as epoch seconds and
+ * the registration of each row as an index into a registration table, so a
+ * session costs 28 bytes instead of a graph of objects.
+ *
+ * Columns are split into fixed-size chunks. A new generation is derived
+ * with mutate(): it shares every chunk with its parent, appends past the
+ * parent's size and copies only the exit column of a chunk when a session
+ * in it is closed. Scans use the primitive accessors; get() returns a
+ * read-only ParkingRecord view for callers that want objects.
+ *
+ * Each generation also carries the clock it was evaluated at: an open
+ * session counts as an overstay once that clock is past its deadline
+ * (entry time plus the registration's maxHours), so violation status is
+ * fixed within a generation and only changes when a new one is published.
+ */
+public final class RecordStore extends AbstractList<ParkingRecord> implements RandomAccess {
+
+    /** Key of a missing time (an open session's exit). */
+    public static final long NO_TIME = Long.MIN_VALUE;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    private static final int MIN_CAPACITY = 256;
+
+    public static final RecordStore EMPTY = new Builder().build(Collections.emptyMap());
+
+    // Shared by all generations derived from the same load
+    private final StringDictionary plates;
+    private final StringDictionary lots;
+    private final Registration[] regs;
+    private final int[] regFolds;                 // lot fold id of each registration
+    private final long[] regLimits;               // allowed stay in seconds, NO_TIME for none
+    private final Map<String, Integer> regIds;    // by plate
+
+    private final Chunk[] chunks;
+    private final int size;
+    private final long clock;
+    private boolean superseded;                   // a generation published from this one is in use
+
+    private RecordStore(StringDictionary plates, StringDictionary lots, Registration[] regs,
+                        int[] regFolds, Map<String, Integer> regIds, Chunk[] chunks, int size, long clock) {
+        this.plates = plates;
+        this.lots = lots;
+        this.regs = regs;
+        this.regFolds = regFolds;
+        this.regLimits = limits(regs);
+        this.regIds = regIds;
+        this.chunks = chunks;
+        this.size = size;
+        this.clock = clock;
+    }
+
+    private static long[] limits(Registration[] regs) {
+        long[] limits = new long[regs.length];
+        for (int r = 0; r < regs.length; r++) {
+            long seconds = regs[r].maxStaySeconds();
+            limits[r] = seconds < 0 ? NO_TIME : seconds;
+        }
+        return limits;
+    }
+
+    public static long toKey(LocalDateTime t) {
+        return t == null ? NO_TIME : t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    public static LocalDateTime fromKey(long key) {
+        return key == NO_TIME ? null : LocalDateTime.ofEpochSecond(key, 0, ZoneOffset.UTC);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public ParkingRecord get(int i) {
+        Objects.checkIndex(i, size);
+        return new View(i);
+    }
+
+    public String plate(int i)           { return plates.value(chunks[i >>> CHUNK_BITS].plate[i & CHUNK_MASK]); }
+    public int plateId(int i)            { return chunks[i >>> CHUNK_BITS].plate[i & CHUNK_MASK]; }
+    public String lot(int i)             { return lots.value(lotId(i)); }
+    public int lotId(int i)              { return chunks[i >>> CHUNK_BITS].lot[i & CHUNK_MASK]; }
+    public long entryKey(int i)          { return chunks[i >>> CHUNK_BITS].entry[i & CHUNK_MASK]; }
+    public long exitKey(int i)           { return chunks[i >>> CHUNK_BITS].exit[i & CHUNK_MASK]; }
+    public boolean isStillInLot(int i)   { return exitKey(i) == NO_TIME; }
+    public boolean isUnregistered(int i) { return regId(i) < 0; }
+
+    /** Same rule as ParkingRecord.legal(): unregistered, registered to another lot, or overstayed. */
+    public boolean isViolation(int i) {
+        int r = regId(i);
+        return r < 0 || regFolds[r] != lots.fold(lotId(i)) || isOverstay(i);
+    }
+
+    /**
+     * @return the time after which the session at i is an overstay, or NO_TIME
+     *         if it cannot overstay (unregistered, wrong lot, no entry time or
+     *         no time limit)
+     */
+    public long deadline(int i) {
+        int r = regId(i);
+        long entry = entryKey(i);
+        if (r < 0 || regLimits[r] == NO_TIME || entry == NO_TIME || regFolds[r] != lots.fold(lotId(i))) {
+            return NO_TIME;
+        }
+        return entry + regLimits[r];
+    }
+
+    /** Stayed past the deadline: by its exit time, or by this generation's clock while still in the lot. */
+    public boolean isOverstay(int i) {
+        long deadline = deadline(i);
+        if (deadline == NO_TIME) return false;
+        long exit = exitKey(i);
+        return (exit == NO_TIME ? clock : exit) > deadline;
+    }
+
+    /** Same reasons as ParkingRecord.violationReason(), null for a legal session. */
+    public String violationReason(int i) {
+        int r = regId(i);
+        if (r < 0) return ParkingRecord.UNREGISTERED;
+        if (regFolds[r] != lots.fold(lotId(i))) return ParkingRecord.WRONG_LOT;
+        return isOverstay(i) ? ParkingRecord.OVERSTAY : null;
+    }
+
+    /** The time open sessions were checked against, NO_TIME if never. */
+    public long clock() {
+        return clock;
+    }
+
+    public Registration registration(int i) {
+        int r = regId(i);
+        return r < 0 ? null : regs[r];
+    }
+
+    /** The registration table, keyed by plate in table order. */
+    public Map<String, Registration> registrations() {
+        Map<String, Registration> map = new LinkedHashMap<>();
+        for (Registration r : regs) map.put(r.getPlate(), r);
+        return map;
+    }
+
+    /** Number of distinct plate ids; plate ids of this generation are below it. */
+    public int plateIdCount()            { return plates.size(); }
+    public String plateName(int plateId) { return plates.value(plateId); }
+
+    /** Number of distinct lot ids; lot ids of this generation are below it. */
+    public int lotIdCount()              { return lots.size(); }
+    public String lotName(int lotId)     { return lots.value(lotId); }
+
+    /**
+     * Rough heap size of this generation: its column chunks, both
+     * dictionaries and the registration table. Chunks shared with other
+     * generations are counted here too.
+     */
+    public long estimatedBytes() {
+        // Registration object, its regIds entry, and a slot in regFolds and regLimits
+        long bytes = plates.estimatedBytes() + lots.estimatedBytes() + regs.length * 116L;
+        for (Chunk c : chunks) bytes += 28L * c.capacity();
+        return bytes;
+    }
+
+    /** Identifies an open session by plate and lot (case-insensitive). */
+    public long sessionKey(int i) {
+        return ((long) plateId(i) << 32) | lots.fold(lotId(i));
+    }
+
+    /**
+     * @return the session key for plate and lot, or -1 if neither has been
+     *         seen together yet. Only for the thread that mutates the store.
+     */
+    public long sessionKey(String plate, String lot) {
+        int p = plates.find(plate);
+        int f = lots.findFold(lot);
+        return p < 0 || f < 0 ? -1 : ((long) p << 32) | f;
+    }
+
+    private int regId(int i) {
+        return chunks[i >>> CHUNK_BITS].reg[i & CHUNK_MASK];
+    }
+
+    /**
+     * Starts the next generation. Only the latest generation of a store may
+     * be mutated, since appends write into chunks it shares with its parent.
+     */
+    public Mutation mutate() {
+        if (this == EMPTY) return new Builder().build(Collections.emptyMap()).mutate();
+        synchronized (this) {
+            if (superseded) throw new IllegalStateException("Record store generation is not the latest");
+        }
+        return new Mutation();
+    }
+
+    /**
+     * Marks this generation as replaced by one published from it. Call it
+     * once the new generation is in use: until then this one may be
+     * mutated again, and a published generation that was never used is
+     * simply dropped.
+     */
+    public synchronized void supersede() {
+        superseded = true;
+    }
+
+
+    /**
+     * Writes the store in the little-endian layout read by read(): both
+     * dictionaries, the registration table, then each column contiguously.
+     * Must not run concurrently with a mutation.
+     */
+    public void write(WritableByteChannel ch) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+        writeStrings(ch, buf, plates);
+        writeStrings(ch, buf, lots);
+        ensure(ch, buf, 4);
+        buf.putInt(regs.length);
+        for (Registration r : regs) {
+            writeString(ch, buf, r.getPlate());
+            writeString(ch, buf, r.getLot());
+            ensure(ch, buf, 8);
+            buf.putDouble(r.getMaxHours());
+        }
+        ensure(ch, buf, 4);
+        buf.putInt(size);
+        for (int col = 0; col < 5; col++) {
+            for (int ci = 0; ci < chunks.length; ci++) {
+                int n = Math.min(CHUNK_SIZE, size - (ci << CHUNK_BITS));
+                Chunk c = chunks[ci];
+                switch (col) {
+                    case 0:  writeInts(ch, buf, c.plate, n); break;
+                    case 1:  writeInts(ch, buf, c.lot, n); break;
+                    case 2:  writeInts(ch, buf, c.reg, n); break;
+                    case 3:  writeLongs(ch, buf, c.entry, n); break;
+                    default: writeLongs(ch, buf, c.exit, n); break;
+                }
+            }
+        }
+        flush(ch, buf);
+    }
+
+    /**
+     * Reads a store written by write(), advancing in past it. Every count
+     * is checked against the bytes left before anything is allocated, and
+     * every id against its table, so a corrupt or truncated file throws
+     * IllegalArgumentException rather than exhausting the heap.
+     */
+    public static RecordStore read(MappedInput in) {
+        StringDictionary plates = readStrings(in, false);
+        StringDictionary lots = readStrings(in, true);
+        Registration[] regs = new Registration[count(in, 16)];
+        int[] regFolds = new int[regs.length];
+        Map<String, Integer> regIds = new HashMap<>(regs.length * 2);
+        for (int r = 0; r < regs.length; r++) {
+            regs[r] = new Registration(readString(in), readString(in), in.getDouble());
+            regFolds[r] = lots.fold(lots.id(regs[r].getLot()));
+            regIds.put(regs[r].getPlate(), r);
+        }
+        int size = count(in, 28);
+        Chunk[] chunks = new Chunk[(size + CHUNK_MASK) >>> CHUNK_BITS];
+        for (int ci = 0; ci < chunks.length; ci++) {
+            chunks[ci] = new Chunk(Math.min(CHUNK_SIZE, size - (ci << CHUNK_BITS)));
+        }
+        for (int col = 0; col < 5; col++) {
+            for (Chunk c : chunks) {
+                int n = c.capacity();
+                switch (col) {
+                    case 0:  in.getInts(c.plate, n); break;
+                    case 1:  in.getInts(c.lot, n); break;
+                    case 2:  in.getInts(c.reg, n); break;
+                    case 3:  in.getLongs(c.entry, n); break;
+                    default: in.getLongs(c.exit, n); break;
+                }
+            }
+        }
+        for (Chunk c : chunks) {
+            for (int i = 0, n = c.capacity(); i < n; i++) {
+                if (c.plate[i] < 0 || c.plate[i] >= plates.size() || c.lot[i] < 0 || c.lot[i] >= lots.size()
+                        || c.reg[i] < -1 || c.reg[i] >= regs.length) {
+                    throw new IllegalArgumentException("Record refers to an unknown plate, lot or registration");
+                }
+            }
+        }
+        return new RecordStore(plates, lots, regs, regFolds, regIds, chunks, size, NO_TIME);
+    }
+
+    private static void writeStrings(WritableByteChannel ch, ByteBuffer buf, StringDictionary dict)
+            throws IOException {
+        int n = dict.size();
+        ensure(ch, buf, 4);
+        buf.putInt(n);
+        for (int id = 0; id < n; id++) writeString(ch, buf, dict.value(id));
+    }
+
+    private static StringDictionary readStrings(MappedInput in, boolean folding) {
+        StringDictionary dict = new StringDictionary(folding);
+        int n = count(in, 4);
+        for (int id = 0; id < n; id++) dict.id(readString(in));
+        return dict;
+    }
+
+    private static void writeString(WritableByteChannel ch, ByteBuffer buf, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        ensure(ch, buf, 4 + b.length);
+        buf.putInt(b.length);
+        buf.put(b);
+    }
+
+    private static String readString(MappedInput in) {
+        byte[] b = new byte[count(in, 1)];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    // Reads a count of items of at least itemBytes each, rejecting one the rest of in cannot hold.
+    private static int count(MappedInput in, int itemBytes) {
+        int n = in.getInt();
+        if (n < 0 || (long) n * itemBytes > in.remaining()) {
+            throw new IllegalArgumentException("Count " + n + " exceeds the " + in.remaining() + " bytes left");
+        }
+        return n;
+    }
+
+    private static void writeInts(WritableByteChannel ch, ByteBuffer buf, int[] a, int n) throws IOException {
+        for (int done = 0; done < n; ) {
+            ensure(ch, buf, 4);
+            int k = Math.min(n - done, buf.remaining() / 4);
+            buf.asIntBuffer().put(a, done, k);
+            buf.position(buf.position() + k * 4);
+            done += k;
+        }
+    }
+
+    private static void writeLongs(WritableByteChannel ch, ByteBuffer buf, long[] a, int n) throws IOException {
+        for (int done = 0; done < n; ) {
+            ensure(ch, buf, 8);
+            int k = Math.min(n - done, buf.remaining() / 8);
+            buf.asLongBuffer().put(a, done, k);
+            buf.position(buf.position() + k * 8);
+            done += k;
+        }
+    }
+
+    private static void ensure(WritableByteChannel ch, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() < bytes) flush(ch, buf);
+        if (buf.remaining() < bytes) throw new IOException("Value of " + bytes + " bytes does not fit the write buffer");
+    }
+
+    private static void flush(WritableByteChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+
+    public final class Mutation {
+
+        private Chunk[] next = chunks.clone();
+        private final boolean[] owned = new boolean[next.length];
+        private int count = size;
+        private long at = clock;
+
+        /** Appends a session and returns its position. */
+        public int append(ParkingRecord r) {
+            int ci = count >>> CHUNK_BITS;
+            int off = count & CHUNK_MASK;
+            if (ci == next.length) {
+                next = Arrays.copyOf(next, ci + 1);
+                next[ci] = new Chunk(MIN_CAPACITY);
+            } else if (off == next[ci].capacity()) {
+                next[ci] = next[ci].grow(Math.min(CHUNK_SIZE, off * 2));
+                if (ci < owned.length) owned[ci] = true;
+            }
+            Chunk c = next[ci];
+            Integer reg = regIds.get(r.getPlate());
+            c.plate[off] = plates.id(r.getPlate());
+            c.lot[off]   = lots.id(r.getLot());
+            c.reg[off]   = reg != null ? reg : -1;
+            c.entry[off] = toKey(r.getEntryTime());
+            c.exit[off]  = toKey(r.getExitTime());
+            return count++;
+        }
+
+        /** Sets the exit time of the session at pos. */
+        public void close(int pos, LocalDateTime exit) {
+            Objects.checkIndex(pos, count);
+            int ci = pos >>> CHUNK_BITS;
+            if (pos < size && ci < owned.length && !owned[ci]) {
+                next[ci] = next[ci].withOwnExit();
+                owned[ci] = true;
+            }
+            next[ci].exit[pos & CHUNK_MASK] = toKey(exit);
+        }
+
+        /** Sets the clock the published generation checks open sessions against. */
+        public void setClock(long clock) {
+            at = clock;
+        }
+
+        public RecordStore publish() {
+            synchronized (RecordStore.this) {
+                if (superseded) throw new IllegalStateException("Record store generation is not the latest");
+            }
+            return new RecordStore(plates, lots, regs, regFolds, regIds, next, count, at);
+        }
+    }
+
+
+    /** Collects rows while loading; builders for file ranges can be concatenated. */
+    public static final class Builder {
+
+        private final StringDictionary plates = new StringDictionary(false);
+        private final StringDictionary lots = new StringDictionary(true);
+        private int[] plate = new int[MIN_CAPACITY];
+        private int[] lot = new int[MIN_CAPACITY];
+        private long[] entry = new long[MIN_CAPACITY];
+        private long[] exit = new long[MIN_CAPACITY];
+        private int size;
+
+        public void add(String plateStr, String lotStr, LocalDateTime entryTime, LocalDateTime exitTime) {
+            append(plates.id(plateStr), lots.id(lotStr), toKey(entryTime), toKey(exitTime));
+        }
+
+        /** Appends all rows of other, re-encoding its dictionary ids. */
+        public void addAll(Builder other) {
+            int[] plateMap = new int[other.plates.size()];
+            for (int id = 0; id < plateMap.length; id++) plateMap[id] = plates.id(other.plates.value(id));
+            int[] lotMap = new int[other.lots.size()];
+            for (int id = 0; id < lotMap.length; id++) lotMap[id] = lots.id(other.lots.value(id));
+            for (int i = 0; i < other.size; i++) {
+                append(plateMap[other.plate[i]], lotMap[other.lot[i]], other.entry[i], other.exit[i]);
+            }
+        }
+
+        private void append(int p, int l, long in, long out) {
+            if (size == plate.length) {
+                int cap = size * 2;
+                plate = Arrays.copyOf(plate, cap);
+                lot   = Arrays.copyOf(lot, cap);
+                entry = Arrays.copyOf(entry, cap);
+                exit  = Arrays.copyOf(exit, cap);
+            }
+            plate[size] = p;
+            lot[size]   = l;
+            entry[size] = in;
+            exit[size]  = out;
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /** Materializes the rows as standalone records, in order. */
+        public List<ParkingRecord> toRecords() {
+            List<ParkingRecord> out = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                out.add(new ParkingRecord(plates.value(plate[i]), lots.value(lot[i]),
+                    fromKey(entry[i]), fromKey(exit[i])));
+            }
+            return out;
+        }
+
+        /** Links rows to their registrations and builds the store. The builder must not be reused. */
+        public RecordStore build(Map<String, Registration> registrations) {
+            Registration[] regs = registrations.values().toArray(new Registration[0]);
+            int[] regFolds = new int[regs.length];
+            Map<String, Integer> regIds = new HashMap<>(regs.length * 2);
+            int[] regOfPlate = new int[plates.size()];
+            Arrays.fill(regOfPlate, -1);
+            for (int r = 0; r < regs.length; r++) {
+                regFolds[r] = lots.fold(lots.id(regs[r].getLot()));
+                regIds.put(regs[r].getPlate(), r);
+                int p = plates.find(regs[r].getPlate());
+                if (p >= 0) regOfPlate[p] = r;
+            }
+
+            Chunk[] chunks = new Chunk[(size + CHUNK_MASK) >>> CHUNK_BITS];
+            for (int ci = 0; ci < chunks.length; ci++) {
+                int from = ci << CHUNK_BITS;
+                int to = Math.min(size, from + CHUNK_SIZE);
+                int[] reg = new int[to - from];
+                for (int i = from; i < to; i++) reg[i - from] = regOfPlate[plate[i]];
+                chunks[ci] = new Chunk(Arrays.copyOfRange(plate, from, to), Arrays.copyOfRange(lot, from, to),
+                    reg, Arrays.copyOfRange(entry, from, to), Arrays.copyOfRange(exit, from, to));
+            }
+            return new RecordStore(plates, lots, regs, regFolds, regIds, chunks, size, NO_TIME);
+        }
+    }
+
+
+    private static final class Chunk {
+
+        final int[] plate;
+        final int[] lot;
+        final int[] reg;
+        final long[] entry;
+        final long[] exit;
+
+        Chunk(int capacity) {
+            this(new int[capacity], new int[capacity], new int[capacity], new long[capacity], new long[capacity]);
+        }
+
+        Chunk(int[] plate, int[] lot, int[] reg, long[] entry, long[] exit) {
+            this.plate = plate;
+            this.lot = lot;
+            this.reg = reg;
+            this.entry = entry;
+            this.exit = exit;
+        }
+
+        int capacity() {
+            return plate.length;
+        }
+
+        Chunk grow(int capacity) {
+            return new Chunk(Arrays.copyOf(plate, capacity), Arrays.copyOf(lot, capacity),
+                Arrays.copyOf(reg, capacity), Arrays.copyOf(entry, capacity), Arrays.copyOf(exit, capacity));
+        }
+
+        Chunk withOwnExit() {
+            return new Chunk(plate, lot, reg, entry, exit.clone());
+        }
+    }
+
+    /** Read-only record backed by one row of the store. */
+    private final class View extends ParkingRecord {
+
+        private final int i;
+
+        View(int i) {
+            this.i = i;
+        }
+
+        @Override public String getPlate()                { return plate(i); }
+        @Override public String getLot()                  { return lot(i); }
+        @Override public LocalDateTime getEntryTime()     { return fromKey(entryKey(i)); }
+        @Override public LocalDateTime getExitTime()      { return fromKey(exitKey(i)); }
+        @Override public Registration getRegistration()   { return registration(i); }
+        @Override public boolean isStillInLot()           { return RecordStore.this.isStillInLot(i); }
+        @Override public boolean legal()                  { return !isViolation(i); }
+        @Override public String violationReason()         { return RecordStore.this.violationReason(i); }
+
+        /** Open sessions are measured up to the generation's clock rather than now. */
+        @Override
+        public long getDurationMinutes() {
+            long end = isStillInLot() && clock != NO_TIME ? clock : exitKey(i);
+            if (end == NO_TIME) return super.getDurationMinutes();
+            return (end - entryKey(i)) / 60;
+        }
+
+        @Override
+        public void setRegistration(Registration r) {
+            throw new UnsupportedOperationException("Stored records are read-only");
+        }
+    }
+}
@@ -17,6 +17,11 @@ public class Registration {
     public String getLot()      { return lot; }
     public double getMaxHours() { return maxHours; }
 
+    /** Allowed stay in seconds, or -1 when maxHours sets no limit. */
+    public long maxStaySeconds() {
+        return maxHours > 0 ? Math.round(maxHours * 3600) : -1;
+    }
+
     @Override
     public String toString() {
         return "Registration{plate='" + plate + "', lot='" + lot + "', maxHours=" + maxHours + "}";
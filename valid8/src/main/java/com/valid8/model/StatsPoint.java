@@ -0,0 +1,49 @@
+package com.valid8.model;
+
+
+/** Sessions that started in one bucket. Dwell figures cover those that have left, null if none. */
+public class StatsPoint {
+
+    private String time;                  // start of the bucket
+    private int sessions;
+    private int violations;
+    private int unregistered;
+    private double unregisteredPercent;
+    private int departed;
+    private Double averageDwellMinutes;
+    private Double p50DwellMinutes;
+    private Double p90DwellMinutes;
+    private Double p99DwellMinutes;
+
+    public StatsPoint() {}
+
+    public String getTime()                      { return time; }
+    public void setTime(String v)                { this.time = v; }
+
+    public int getSessions()                     { return sessions; }
+    public void setSessions(int v)               { this.sessions = v; }
+
+    public int getViolations()                   { return violations; }
+    public void setViolations(int v)             { this.violations = v; }
+
+    public int getUnregistered()                 { return unregistered; }
+    public void setUnregistered(int v)           { this.unregistered = v; }
+
+    public double getUnregisteredPercent()       { return unregisteredPercent; }
+    public void setUnregisteredPercent(double v) { this.unregisteredPercent = v; }
+
+    public int getDeparted()                     { return departed; }
+    public void setDeparted(int v)               { this.departed = v; }
+
+    public Double getAverageDwellMinutes()       { return averageDwellMinutes; }
+    public void setAverageDwellMinutes(Double v) { this.averageDwellMinutes = v; }
+
+    public Double getP50DwellMinutes()           { return p50DwellMinutes; }
+    public void setP50DwellMinutes(Double v)     { this.p50DwellMinutes = v; }
+
+    public Double getP90DwellMinutes()           { return p90DwellMinutes; }
+    public void setP90DwellMinutes(Double v)     { this.p90DwellMinutes = v; }
+
+    public Double getP99DwellMinutes()           { return p99DwellMinutes; }
+    public void setP99DwellMinutes(Double v)     { this.p99DwellMinutes = v; }
+}
@@ -0,0 +1,28 @@
+package com.valid8.model;
+
+import java.util.List;
+
+
+public class StatsSeries {
+
+    private String lotName;
+    private String granularity;      // hour or day
+    private List<StatsPoint> points;
+
+    public StatsSeries() {}
+
+    public StatsSeries(String lotName, String granularity, List<StatsPoint> points) {
+        this.lotName     = lotName;
+        this.granularity = granularity;
+        this.points      = points;
+    }
+
+    public String getLotName()                { return lotName; }
+    public void setLotName(String v)          { this.lotName = v; }
+
+    public String getGranularity()            { return granularity; }
+    public void setGranularity(String v)      { this.granularity = v; }
+
+    public List<StatsPoint> getPoints()       { return points; }
+    public void setPoints(List<StatsPoint> v) { this.points = v; }
+}
@@ -0,0 +1,78 @@
+package com.valid8.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Append-only mapping between strings and dense int ids. Optionally also
+ * assigns each string a case-insensitive "fold" id, so that lot names can
+ * be compared the way equalsIgnoreCase would without touching the strings.
+ *
+ * Only one thread adds entries. Readers only resolve ids they obtained from
+ * a published generation, which were written before it was published.
+ */
+final class StringDictionary {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final Map<String, Integer> foldIds;
+    private volatile String[] values = new String[16];
+    private volatile int[] folds;
+    private int size;
+
+    StringDictionary(boolean folding) {
+        this.foldIds = folding ? new HashMap<>() : null;
+        this.folds = folding ? new int[16] : null;
+    }
+
+    int id(String s) {
+        Integer id = ids.get(s);
+        if (id != null) return id;
+
+        int next = size;
+        String[] v = values;
+        int[] f = folds;
+        if (next == v.length) {
+            v = Arrays.copyOf(v, next * 2);
+            if (f != null) f = Arrays.copyOf(f, next * 2);
+        }
+        v[next] = s;
+        if (f != null) {
+            Integer fold = foldIds.putIfAbsent(s.toLowerCase(), foldIds.size());
+            f[next] = fold != null ? fold : foldIds.size() - 1;
+        }
+        values = v;
+        if (f != null) folds = f;
+        ids.put(s, next);
+        size = next + 1;
+        return next;
+    }
+
+    /** @return the id of s, or -1 if it has none. Writer thread only. */
+    int find(String s) {
+        Integer id = ids.get(s);
+        return id != null ? id : -1;
+    }
+
+    /** @return the fold id of s, or -1 if no string equal to it ignoring case was added. */
+    int findFold(String s) {
+        Integer fold = foldIds.get(s.toLowerCase());
+        return fold != null ? fold : -1;
+    }
+
+    /** Rough heap size: each string with its map entry and array slots. */
+    long estimatedBytes() {
+        String[] v = values;
+        int n = Math.min(size, v.length);
+        long bytes = 4L * v.length * (folds != null ? 2 : 1);
+        for (int i = 0; i < n; i++) {
+            if (v[i] != null) bytes += 92 + v[i].length();
+        }
+        return bytes;
+    }
+
+    String value(int id) { return values[id]; }
+    int fold(int id)     { return folds[id]; }
+    int size()           { return size; }
+}
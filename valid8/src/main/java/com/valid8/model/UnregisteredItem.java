@@ -1,19 +1,24 @@
 package com.valid8.model;
 
+import java.util.List;
+
 public class UnregisteredItem {
 
     private String licensePlate;
     private String lotName;
     private String timeIn;
     private String timeOut;
+    private List<PlateSuggestion> suggestions;   // registered plates this may be a misread of
 
     public UnregisteredItem() {}
 
-    public UnregisteredItem(String licensePlate, String lotName, String timeIn, String timeOut) {
+    public UnregisteredItem(String licensePlate, String lotName, String timeIn, String timeOut,
+                            List<PlateSuggestion> suggestions) {
         this.licensePlate = licensePlate;
         this.lotName      = lotName;
         this.timeIn       = timeIn;
         this.timeOut      = timeOut;
+        this.suggestions  = suggestions;
     }
 
     public String getLicensePlate()       { return licensePlate; }
@@ -27,4 +32,7 @@ public class UnregisteredItem {
 
     public String getTimeOut()            { return timeOut; }
     public void setTimeOut(String v)      { this.timeOut = v; }
+
+    public List<PlateSuggestion> getSuggestions()       { return suggestions; }
+    public void setSuggestions(List<PlateSuggestion> v) { this.suggestions = v; }
 }
@@ -8,16 +8,21 @@ public class ViolationItem {
     private String timeIn;   
     private String timeOut;  
     private String status;   
+    private String reason;            // Unregistered, Wrong Lot or Overstay
+    private long durationMinutes;
 
     public ViolationItem() {}
 
     public ViolationItem(String licensePlate, String lotName,
-                         String timeIn, String timeOut, String status) {
-        this.licensePlate = licensePlate;
-        this.lotName      = lotName;
-        this.timeIn       = timeIn;
-        this.timeOut      = timeOut;
-        this.status       = status;
+                         String timeIn, String timeOut, String status,
+                         String reason, long durationMinutes) {
+        this.licensePlate    = licensePlate;
+        this.lotName         = lotName;
+        this.timeIn          = timeIn;
+        this.timeOut         = timeOut;
+        this.status          = status;
+        this.reason          = reason;
+        this.durationMinutes = durationMinutes;
     }
 
     public String getLicensePlate()           { return licensePlate; }
@@ -34,4 +39,10 @@ public class ViolationItem {
 
     public String getStatus()                 { return status; }
     public void setStatus(String v)           { this.status = v; }
+
+    public String getReason()                 { return reason; }
+    public void setReason(String v)           { this.reason = v; }
+
+    public long getDurationMinutes()          { return durationMinutes; }
+    public void setDurationMinutes(long v)    { this.durationMinutes = v; }
 }
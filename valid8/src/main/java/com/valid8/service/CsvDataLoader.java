@@ -1,88 +1,443 @@
 package com.valid8.service;
 
 import com.opencsv.CSVReader;
-import com.opencsv.exceptions.CsvException;
+import com.opencsv.exceptions.CsvValidationException;
+import com.valid8.model.AutoGate;
+import com.valid8.model.LotConfig;
 import com.valid8.model.ParkingRecord;
+import com.valid8.model.RecordStore;
 import com.valid8.model.Registration;
 import com.valid8.util.TimeUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.nio.file.*;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.LongAdder;
 
 
 @Component
 public class CsvDataLoader {
 
+    @Autowired
+    private Valid8Metrics metrics;
+
     @Value("${valid8.csv.registrations:registered_cars.csv}")
     private String registrationsPath;
 
     @Value("${valid8.csv.simulation:simulation_data.csv}")
     private String simulationPath;
 
+    @Value("${valid8.csv.lots:lots.csv}")
+    private String lotsPath;
+
+    @Value("${valid8.csv.charset:UTF-8}")
+    private String charset;
+
+    @Value("${valid8.csv.parallelism:0}")
+    private int parallelism;
+
+    @Value("${valid8.csv.parallel-min-bytes:33554432}")
+    private long parallelMinBytes;
+
+    private volatile long simulationBytesLoaded = -1;
+    private volatile int simulationRowsLoaded;
+    private final LongAdder rowsParsed = new LongAdder();   // progress of the current full load
+
+    private static final int READ_BUFFER_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final int PROGRESS_MASK = 8191;
+
+    /** Why a row, or a value in it, could not be used; the cause tag of valid8.csv.parse.failures. */
+    private enum Failure {
+        BLANK_PLATE,          // row skipped
+        MISSING_ENTRY_TIME,   // row skipped
+        BAD_ENTRY_TIME,       // row skipped
+        BAD_EXIT_TIME,        // row kept as a session still in the lot
+        BAD_MAX_HOURS,        // registration skipped
+        BLANK_LOT,            // lot skipped
+        BAD_CAPACITY,         // lot skipped
+        BAD_COORDINATES,      // lot skipped
+        MALFORMED;            // row skipped
+
+        String tag() { return name().toLowerCase(); }
+    }
+
    
     public Map<String, Registration> loadRegistrations() {
         Map<String, Registration> map = new LinkedHashMap<>();
-        List<String[]> rows = readCsv(registrationsPath);
-        if (rows == null) return map;
+        try (CSVReader reader = openCsv(registrationsPath)) {
+            if (reader == null) return map;
+            String[] header = reader.readNext();
+            if (header == null) return map;
 
-        int[] idx = detectRegistrationColumns(rows.get(0));
-        if (idx == null) {
-            System.err.println("[CsvDataLoader] registered_cars.csv: cannot detect required columns (plate, lot, max_hours)");
-            return map;
-        }
+            int[] idx = detectRegistrationColumns(header);
+            if (idx == null) {
+                System.err.println("[CsvDataLoader] registered_cars.csv: cannot detect required columns (plate, lot, max_hours)");
+                return map;
+            }
 
-        for (int i = 1; i < rows.size(); i++) {
-            String[] row = rows.get(i);
-            try {
-                String plate   = cell(row, idx[0]).toUpperCase();
-                String lot     = cell(row, idx[1]);
-                double maxHrs  = Double.parseDouble(cell(row, idx[2]));
-                if (!plate.isBlank()) {
-                    map.put(plate, new Registration(plate, lot, maxHrs));
+            String[] row;
+            int i = 0;
+            while ((row = reader.readNext()) != null) {
+                i++;
+                try {
+                    String plate   = cell(row, idx[0]).toUpperCase();
+                    String lot     = cell(row, idx[1]);
+                    double maxHrs  = Double.parseDouble(cell(row, idx[2]));
+                    if (!plate.isBlank()) {
+                        map.put(plate, new Registration(plate, lot, maxHrs));
+                    } else {
+                        metrics.parseFailures("registrations", Failure.BLANK_PLATE.tag(), 1);
+                    }
+                } catch (NumberFormatException e) {
+                    System.err.println("[CsvDataLoader] Skipping registration row " + i + ": bad max_hours");
+                    metrics.parseFailures("registrations", Failure.BAD_MAX_HOURS.tag(), 1);
                 }
-            } catch (NumberFormatException e) {
-                System.err.println("[CsvDataLoader] Skipping registration row " + i + ": bad max_hours");
             }
+        } catch (IOException | CsvValidationException e) {
+            System.err.println("[CsvDataLoader] Error reading " + registrationsPath + ": " + e.getMessage());
         }
         System.out.println("[CsvDataLoader] Loaded " + map.size() + " registrations.");
         return map;
     }
 
 
-    public List<ParkingRecord> loadParkingRecords() {
-        List<ParkingRecord> list = new ArrayList<>();
-        List<String[]> rows = readCsv(simulationPath);
-        if (rows == null) return list;
+    /**
+     * Reads the lots file (name, capacity, latitude, longitude). Without
+     * one, or when it has no usable rows, the built-in AutoGate.LOT_CONFIGS
+     * are used.
+     */
+    public List<LotConfig> loadLots() {
+        if (!Files.isRegularFile(Paths.get(lotsPath)) && getClass().getClassLoader().getResource(lotsPath) == null) {
+            System.out.println("[CsvDataLoader] No " + lotsPath + ", using the "
+                + AutoGate.LOT_CONFIGS.size() + " built-in lots.");
+            return AutoGate.LOT_CONFIGS;
+        }
+        List<LotConfig> lots = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        try (CSVReader reader = openCsv(lotsPath)) {
+            String[] header = reader == null ? null : reader.readNext();
+            int[] idx = header == null ? null : detectLotColumns(header);
+            if (idx == null) {
+                System.err.println("[CsvDataLoader] " + lotsPath + ": cannot detect required columns (name, capacity, latitude, longitude)");
+                return AutoGate.LOT_CONFIGS;
+            }
 
-        int[] idx = detectSimulationColumns(rows.get(0));
-        if (idx == null) {
-            System.err.println("[CsvDataLoader] simulation_data.csv: cannot detect required columns (plate, lot, entry_time, exit_time)");
-            return list;
+            String[] row;
+            int i = 0;
+            while ((row = reader.readNext()) != null) {
+                i++;
+                String name = cell(row, idx[0]);
+                if (name.isBlank()) {
+                    metrics.parseFailures("lots", Failure.BLANK_LOT.tag(), 1);
+                    continue;
+                }
+                int capacity;
+                double lat, lon;
+                try {
+                    capacity = Integer.parseInt(cell(row, idx[1]));
+                    if (capacity < 0) throw new NumberFormatException();
+                } catch (NumberFormatException e) {
+                    System.err.println("[CsvDataLoader] Skipping lot row " + i + ": bad capacity");
+                    metrics.parseFailures("lots", Failure.BAD_CAPACITY.tag(), 1);
+                    continue;
+                }
+                try {
+                    lat = Double.parseDouble(cell(row, idx[2]));
+                    lon = Double.parseDouble(cell(row, idx[3]));
+                    if (!(Math.abs(lat) <= 90 && Math.abs(lon) <= 180)) throw new NumberFormatException();
+                } catch (NumberFormatException e) {
+                    System.err.println("[CsvDataLoader] Skipping lot row " + i + ": bad latitude or longitude");
+                    metrics.parseFailures("lots", Failure.BAD_COORDINATES.tag(), 1);
+                    continue;
+                }
+                if (!names.add(name.toLowerCase())) {
+                    System.err.println("[CsvDataLoader] Skipping lot row " + i + ": " + name + " is listed twice");
+                    continue;
+                }
+                lots.add(new LotConfig(name, capacity, lat, lon));
+            }
+        } catch (IOException | CsvValidationException e) {
+            System.err.println("[CsvDataLoader] Error reading " + lotsPath + ": " + e.getMessage());
+        }
+        if (lots.isEmpty()) {
+            System.err.println("[CsvDataLoader] No usable lots in " + lotsPath + ", using the built-in lots");
+            return AutoGate.LOT_CONFIGS;
+        }
+        System.out.println("[CsvDataLoader] Loaded " + lots.size() + " lots.");
+        return Collections.unmodifiableList(lots);
+    }
+
+    /**
+     * Reads the simulation file into a columnar builder; the caller links it
+     * to the registrations with build().
+     */
+    public RecordStore.Builder loadParkingRecords() {
+        rowsParsed.reset();
+        long started = System.nanoTime();
+        RecordStore.Builder records = readParkingRecords();
+        metrics.fullParse(rowsParsed.sum(), System.nanoTime() - started);
+        return records;
+    }
+
+    private RecordStore.Builder readParkingRecords() {
+        Path fsPath = Paths.get(simulationPath);
+        if (Files.isRegularFile(fsPath)) {
+            try (FileChannel ch = FileChannel.open(fsPath, StandardOpenOption.READ)) {
+                return loadParkingRecords(ch, ch.size());
+            } catch (IOException e) {
+                System.err.println("[CsvDataLoader] Error reading " + simulationPath + ": " + e.getMessage());
+                return new RecordStore.Builder();
+            }
         }
 
-        for (int i = 1; i < rows.size(); i++) {
-            String[] row = rows.get(i);
+        simulationBytesLoaded = -1;
+        RecordStore.Builder list = new RecordStore.Builder();
+        try (CSVReader reader = openCsv(simulationPath)) {
+            if (reader == null) return list;
+            String[] header = reader.readNext();
+            if (header == null) return list;
+
+            int[] idx = detectSimulationColumns(header);
+            if (idx == null) {
+                System.err.println("[CsvDataLoader] simulation_data.csv: cannot detect required columns (plate, lot, entry_time, exit_time)");
+                return list;
+            }
+
+            ParseChunk chunk = new ParseChunk(list);
             try {
-                String plate       = cell(row, idx[0]).toUpperCase();
-                String lot         = cell(row, idx[1]);
-                LocalDateTime entry = TimeUtils.parse(cell(row, idx[2]));
-                LocalDateTime exit  = TimeUtils.parse(cell(row, idx[3])); 
+                parseSimulationRows(reader, idx, chunk);
+            } finally {
+                chunk.reportErrors(0, metrics);
+            }
+        } catch (IOException | CsvValidationException e) {
+            System.err.println("[CsvDataLoader] Error reading " + simulationPath + ": " + e.getMessage());
+        }
+        System.out.println("[CsvDataLoader] Loaded " + list.size() + " parking records.");
+        return list;
+    }
 
-                if (!plate.isBlank() && entry != null) {
-                    list.add(new ParkingRecord(plate, lot, entry, exit));
+    /**
+     * Parses the first size bytes of the simulation file. Large files are
+     * split into byte ranges aligned to line starts and parsed concurrently;
+     * the per-range builders are concatenated in file order. The parallel
+     * mode assumes records do not contain quoted line breaks.
+     */
+    private RecordStore.Builder loadParkingRecords(FileChannel ch, long size) throws IOException {
+        simulationBytesLoaded = -1;
+        long dataStart = FileRangeInputStream.nextLineStart(ch, 0, size);
+        int[] idx = readSimulationHeader(ch, dataStart);
+        if (idx == null) return new RecordStore.Builder();
+
+        int workers = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        long[] bounds = workers > 1 && size >= parallelMinBytes
+                ? chunkBounds(ch, dataStart, size, workers * CHUNKS_PER_WORKER)
+                : new long[]{dataStart, size};
+
+        List<ParseChunk> chunks = new ArrayList<>(bounds.length - 1);
+        if (bounds.length == 2) {
+            chunks.add(parseRange(ch, bounds[0], bounds[1], idx));
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(workers);
+            try {
+                List<ForkJoinTask<ParseChunk>> tasks = new ArrayList<>(bounds.length - 1);
+                for (int k = 0; k + 1 < bounds.length; k++) {
+                    long from = bounds[k];
+                    long to = bounds[k + 1];
+                    tasks.add(pool.submit(() -> parseRange(ch, from, to, idx)));
                 }
-            } catch (Exception e) {
-                System.err.println("[CsvDataLoader] Skipping simulation row " + i + ": " + e.getMessage());
+                for (ForkJoinTask<ParseChunk> t : tasks) {
+                    chunks.add(t.join());
+                }
+            } finally {
+                pool.shutdown();
             }
         }
-        System.out.println("[CsvDataLoader] Loaded " + list.size() + " parking records.");
+
+        RecordStore.Builder list = chunks.get(0).records;
+        int rowOffset = 0;
+        boolean complete = true;
+        for (ParseChunk c : chunks) {
+            c.reportErrors(rowOffset, metrics);
+            if (c.records != list) list.addAll(c.records);
+            if (c.failure != null) {
+                System.err.println("[CsvDataLoader] Error reading " + simulationPath + ": " + c.failure);
+                complete = false;
+                break;
+            }
+            rowOffset += c.rows;
+        }
+        if (complete) {
+            simulationRowsLoaded = rowOffset;
+            simulationBytesLoaded = size;
+        }
+        System.out.println("[CsvDataLoader] Loaded " + list.size() + " parking records"
+                + (chunks.size() > 1 ? " (" + chunks.size() + " chunks on " + workers + " workers)." : "."));
         return list;
     }
 
+    /** Lines read by loadAppendedRecords; pass to commitAppended once their rows are applied. */
+    public static final class Appended {
+
+        private final long from, end;
+        private final int rows;
+
+        Appended(long from, long end, int rows) {
+            this.from = from;
+            this.end = end;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * Parses complete lines appended to the simulation file since the last
+     * full load or committed append, adding them to out. A trailing partial
+     * line is left for the next call. The lines count as loaded only once
+     * commitAppended is called, so if applying them fails the next call
+     * reads them again.
+     *
+     * @return the lines read, or null if there were none
+     */
+    public Appended loadAppendedRecords(List<ParkingRecord> out) throws IOException {
+        long from = simulationBytesLoaded;
+        if (from < 0) return null;
+        try (FileChannel ch = FileChannel.open(Paths.get(simulationPath), StandardOpenOption.READ)) {
+            long end = FileRangeInputStream.lastLineEnd(ch, from, ch.size());
+            if (end <= from) return null;
+            int[] idx = readSimulationHeader(ch, FileRangeInputStream.nextLineStart(ch, 0, from));
+            if (idx == null) return null;
+
+            ParseChunk chunk = new ParseChunk(new RecordStore.Builder());
+            try (CSVReader reader = openRange(ch, from, end)) {
+                parseSimulationRows(reader, idx, chunk);
+            } catch (CsvValidationException e) {
+                throw new IOException(e.getMessage(), e);
+            } finally {
+                chunk.reportErrors(simulationRowsLoaded, metrics);
+            }
+            metrics.appendParse(chunk.rows);
+            out.addAll(chunk.records.toRecords());
+            return new Appended(from, end, chunk.rows);
+        }
+    }
+
+    /** Marks lines from loadAppendedRecords as loaded, unless a full load has happened since. */
+    public void commitAppended(Appended appended) {
+        if (simulationBytesLoaded != appended.from) return;
+        simulationRowsLoaded += appended.rows;
+        simulationBytesLoaded = appended.end;
+    }
+
+    /**
+     * @return the bytes of the simulation file covered by the last load, or -1
+     *         if it was not loaded from the filesystem
+     */
+    public long getSimulationBytesLoaded() { return simulationBytesLoaded; }
+
+    public int getSimulationRowsLoaded()   { return simulationRowsLoaded; }
+    /** Simulation rows read so far by the running (or last) full load, across all parse workers. */
+    public long getRowsParsed()            { return rowsParsed.sum(); }
+
+    /** Records that the simulation file was loaded from a cache instead of parsed. */
+    void restoreSimulationState(long bytesLoaded, int rowsLoaded) {
+        simulationRowsLoaded = rowsLoaded;
+        simulationBytesLoaded = bytesLoaded;
+    }
+
+    /**
+     * @return the current size of the simulation file, or -1 if it is not a regular file
+     */
+    public long simulationFileSize() {
+        try {
+            Path fsPath = Paths.get(simulationPath);
+            return Files.isRegularFile(fsPath) ? Files.size(fsPath) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private int[] readSimulationHeader(FileChannel ch, long dataStart) throws IOException {
+        String[] header;
+        try (CSVReader hr = openRange(ch, 0, dataStart)) {
+            header = hr.readNext();
+        } catch (CsvValidationException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        if (header == null) return null;
+
+        int[] idx = detectSimulationColumns(header);
+        if (idx == null) {
+            System.err.println("[CsvDataLoader] simulation_data.csv: cannot detect required columns (plate, lot, entry_time, exit_time)");
+        }
+        return idx;
+    }
+
+    private ParseChunk parseRange(FileChannel ch, long from, long to, int[] idx) {
+        ParseChunk out = new ParseChunk(new RecordStore.Builder());
+        try (CSVReader reader = openRange(ch, from, to)) {
+            parseSimulationRows(reader, idx, out);
+        } catch (IOException | CsvValidationException e) {
+            out.failure = e.getMessage();
+        }
+        return out;
+    }
+
+    private void parseSimulationRows(CSVReader reader, int[] idx, ParseChunk out)
+            throws IOException, CsvValidationException {
+        TimeUtils.ColumnParser entryTimes = TimeUtils.columnParser();
+        TimeUtils.ColumnParser exitTimes  = TimeUtils.columnParser();
+        String[] row;
+        try {
+            while ((row = reader.readNext()) != null) {
+                int i = ++out.rows;
+                if ((i & PROGRESS_MASK) == 0) rowsParsed.add(PROGRESS_MASK + 1);
+                try {
+                    String plate       = cell(row, idx[0]).toUpperCase();
+                    String lot         = cell(row, idx[1]);
+                    String entryCell   = cell(row, idx[2]);
+                    String exitCell    = cell(row, idx[3]);
+                    LocalDateTime entry = entryTimes.parse(entryCell);
+                    LocalDateTime exit  = exitTimes.parse(exitCell);
+
+                    if (plate.isBlank()) {
+                        out.failures[Failure.BLANK_PLATE.ordinal()]++;
+                    } else if (entry == null) {
+                        out.failures[(entryCell.isEmpty() ? Failure.MISSING_ENTRY_TIME : Failure.BAD_ENTRY_TIME).ordinal()]++;
+                    } else {
+                        if (exit == null && !exitCell.isEmpty()) out.failures[Failure.BAD_EXIT_TIME.ordinal()]++;
+                        out.records.add(plate, lot, entry, exit);
+                    }
+                } catch (Exception e) {
+                    out.failures[Failure.MALFORMED.ordinal()]++;
+                    out.error(i, e.getMessage());
+                }
+            }
+        } finally {
+            rowsParsed.add(out.rows & PROGRESS_MASK);
+        }
+    }
+
+    private static long[] chunkBounds(FileChannel ch, long dataStart, long size, int chunks) throws IOException {
+        long[] bounds = new long[chunks + 1];
+        int m = 0;
+        bounds[m++] = dataStart;
+        for (int k = 1; k < chunks; k++) {
+            long target = dataStart + (size - dataStart) * k / chunks;
+            long aligned = FileRangeInputStream.nextLineStart(ch, Math.max(target - 1, dataStart), size);
+            if (aligned > bounds[m - 1] && aligned < size) bounds[m++] = aligned;
+        }
+        bounds[m++] = size;
+        return Arrays.copyOf(bounds, m);
+    }
+
 
     private int[] detectRegistrationColumns(String[] header) {
         int plateIdx = -1, lotIdx = -1, maxHrsIdx = -1;
@@ -96,6 +451,19 @@ public class CsvDataLoader {
         return new int[]{plateIdx, lotIdx, maxHrsIdx};
     }
 
+    private int[] detectLotColumns(String[] header) {
+        int nameIdx = -1, capIdx = -1, latIdx = -1, lonIdx = -1;
+        for (int i = 0; i < header.length; i++) {
+            String h = header[i].trim().toLowerCase();
+            if (h.startsWith("lat"))                                      latIdx  = i;
+            else if (h.startsWith("lon") || h.startsWith("lng"))          lonIdx  = i;
+            else if (h.contains("capacity") || h.contains("spaces"))      capIdx  = i;
+            else if (h.contains("name") || h.contains("lot"))             nameIdx = i;
+        }
+        if (nameIdx < 0 || capIdx < 0 || latIdx < 0 || lonIdx < 0) return null;
+        return new int[]{nameIdx, capIdx, latIdx, lonIdx};
+    }
+
     private int[] detectSimulationColumns(String[] header) {
         int plateIdx = -1, lotIdx = -1, entryIdx = -1, exitIdx = -1;
         for (int i = 0; i < header.length; i++) {
@@ -110,49 +478,65 @@ public class CsvDataLoader {
     }
 
 
-    private List<String[]> readCsv(String pathStr) {
-      
+    /**
+     * Opens a CSV for row-by-row reading, preferring the filesystem and
+     * falling back to the classpath. Returns null when neither has it.
+     */
+    private CSVReader openCsv(String pathStr) throws IOException {
+        InputStream in;
         Path fsPath = Paths.get(pathStr);
-        if (fsPath.toFile().exists()) {
-            return readFromFile(fsPath.toFile());
-        }
-  
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream(pathStr)) {
-            if (is != null) {
-                return readFromStream(is);
+        if (Files.isRegularFile(fsPath)) {
+            in = Files.newInputStream(fsPath);
+        } else {
+            in = getClass().getClassLoader().getResourceAsStream(pathStr);
+            if (in == null) {
+                System.err.println("[CsvDataLoader] File not found: " + pathStr
+                        + " (checked filesystem and classpath)");
+                return null;
             }
-        } catch (IOException e) {
-            System.err.println("[CsvDataLoader] Classpath read error: " + e.getMessage());
         }
-        System.err.println("[CsvDataLoader] File not found: " + pathStr
-                + " (checked filesystem and classpath)");
-        return null;
+        Reader reader = new BufferedReader(new InputStreamReader(in, Charset.forName(charset)), READ_BUFFER_SIZE);
+        return new CSVReader(reader);
     }
 
-    private List<String[]> readFromFile(File file) {
-        try (CSVReader reader = new CSVReader(new FileReader(file))) {
-            List<String[]> rows = reader.readAll();
-            if (rows.isEmpty()) return null;
-            return rows;
-        } catch (IOException | CsvException e) {
-            System.err.println("[CsvDataLoader] Error reading " + file + ": " + e.getMessage());
-            return null;
-        }
-    }
-
-    private List<String[]> readFromStream(InputStream is) {
-        try (CSVReader reader = new CSVReader(new InputStreamReader(is))) {
-            List<String[]> rows = reader.readAll();
-            if (rows.isEmpty()) return null;
-            return rows;
-        } catch (IOException | CsvException e) {
-            System.err.println("[CsvDataLoader] Error reading stream: " + e.getMessage());
-            return null;
-        }
+    private CSVReader openRange(FileChannel ch, long from, long to) {
+        InputStream in = new FileRangeInputStream(ch, from, to);
+        Reader reader = new BufferedReader(new InputStreamReader(in, Charset.forName(charset)), READ_BUFFER_SIZE);
+        return new CSVReader(reader);
     }
 
     private String cell(String[] row, int idx) {
         if (idx < 0 || idx >= row.length) return "";
         return row[idx] == null ? "" : row[idx].trim();
     }
+
+
+    /** Records and row errors from one contiguous range of the simulation file. */
+    private static final class ParseChunk {
+        final RecordStore.Builder records;
+        final List<String> errors = new ArrayList<>();
+        final List<Integer> errorRows = new ArrayList<>();
+        final int[] failures = new int[Failure.values().length];
+        int rows;
+        String failure;
+
+        ParseChunk(RecordStore.Builder records) {
+            this.records = records;
+        }
+
+        void error(int row, String message) {
+            errorRows.add(row);
+            errors.add(message);
+        }
+
+        void reportErrors(int rowOffset, Valid8Metrics metrics) {
+            for (int k = 0; k < errors.size(); k++) {
+                System.err.println("[CsvDataLoader] Skipping simulation row "
+                        + (rowOffset + errorRows.get(k)) + ": " + errors.get(k));
+            }
+            for (Failure f : Failure.values()) {
+                metrics.parseFailures("simulation", f.tag(), failures[f.ordinal()]);
+            }
+        }
+    }
 }
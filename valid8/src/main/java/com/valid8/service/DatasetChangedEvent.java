@@ -0,0 +1,27 @@
+package com.valid8.service;
+
+import com.valid8.model.ParkingRecord;
+
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * Published after a new dataset generation has been swapped in. For a full
+ * reload changedRecords is null; for incremental updates it holds the new or
+ * updated records in the order they were applied.
+ */
+public class DatasetChangedEvent {
+
+    private final DatasetSnapshot snapshot;
+    private final List<ParkingRecord> changedRecords;
+
+    public DatasetChangedEvent(DatasetSnapshot snapshot, List<ParkingRecord> changedRecords) {
+        this.snapshot = snapshot;
+        this.changedRecords = changedRecords == null ? null : Collections.unmodifiableList(changedRecords);
+    }
+
+    public DatasetSnapshot getSnapshot()           { return snapshot; }
+    public List<ParkingRecord> getChangedRecords() { return changedRecords; }
+    public boolean isFullReload()                  { return changedRecords == null; }
+}
@@ -0,0 +1,98 @@
+package com.valid8.service;
+
+import com.valid8.model.LotAggregate;
+import com.valid8.model.LotSummary;
+import com.valid8.model.RecordStore;
+import com.valid8.model.Registration;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * One immutable generation of the loaded dataset. A reload builds a new
+ * snapshot off to the side and publishes it in a single reference swap,
+ * so readers always see a consistent generation without locking.
+ */
+public final class DatasetSnapshot {
+
+    public static final DatasetSnapshot EMPTY = new DatasetSnapshot(0L,
+            RecordStore.EMPTY, Collections.emptyMap(),
+            Collections.emptyMap(), Collections.emptyList(),
+            RecordIndex.EMPTY, RecordIndex.EMPTY, PlateIndex.EMPTY, FuzzyPlateIndex.EMPTY,
+            OccupancyIndex.EMPTY, StatsIndex.EMPTY, LotIndex.EMPTY, null);
+
+    private final long version;
+    private final RecordStore records;
+    private final Map<String, Registration> registrations;
+    private final Map<String, LotAggregate> lotAggregates;
+    private final List<LotSummary> lotSummaries;
+    private final RecordIndex violationIndex;
+    private final RecordIndex unregisteredIndex;
+    private final PlateIndex plateIndex;
+    private final FuzzyPlateIndex fuzzyPlateIndex;
+    private final OccupancyIndex occupancyIndex;
+    private final StatsIndex statsIndex;
+    private final LotIndex lotIndex;
+    private final LocalDateTime loadedAt;
+    private volatile long estimatedBytes = -1;
+
+    DatasetSnapshot(long version,
+                    RecordStore records,
+                    Map<String, Registration> registrations,
+                    Map<String, LotAggregate> lotAggregates,
+                    List<LotSummary> lotSummaries,
+                    RecordIndex violationIndex,
+                    RecordIndex unregisteredIndex,
+                    PlateIndex plateIndex,
+                    FuzzyPlateIndex fuzzyPlateIndex,
+                    OccupancyIndex occupancyIndex,
+                    StatsIndex statsIndex,
+                    LotIndex lotIndex,
+                    LocalDateTime loadedAt) {
+        this.version = version;
+        this.records = records;
+        this.registrations = Collections.unmodifiableMap(registrations);
+        this.lotAggregates = lotAggregates;
+        this.lotSummaries = lotSummaries;
+        this.violationIndex = violationIndex;
+        this.unregisteredIndex = unregisteredIndex;
+        this.plateIndex = plateIndex;
+        this.fuzzyPlateIndex = fuzzyPlateIndex;
+        this.occupancyIndex = occupancyIndex;
+        this.statsIndex = statsIndex;
+        this.lotIndex = lotIndex;
+        this.loadedAt = loadedAt;
+    }
+
+    public long getVersion()                           { return version; }
+    public RecordStore getRecords()                    { return records; }
+    public Map<String, Registration> getRegistrations(){ return registrations; }
+    public Map<String, LotAggregate> getLotAggregates(){ return lotAggregates; }
+    public List<LotSummary> getLotSummaries()          { return lotSummaries; }   // in slot order of getLotIndex()
+    public RecordIndex getViolationIndex()             { return violationIndex; }
+    public RecordIndex getUnregisteredIndex()          { return unregisteredIndex; }
+    public PlateIndex getPlateIndex()                  { return plateIndex; }
+    public FuzzyPlateIndex getFuzzyPlateIndex()        { return fuzzyPlateIndex; }
+    public OccupancyIndex getOccupancyIndex()          { return occupancyIndex; }
+    public StatsIndex getStatsIndex()                  { return statsIndex; }
+    public LotIndex getLotIndex()                      { return lotIndex; }
+    public LocalDateTime getLoadedAt()                 { return loadedAt; }
+
+    /**
+     * Rough heap size of the records and indexes, computed on first use.
+     * Structures shared with the previous generation are counted in full,
+     * so this is what the generation would cost on its own.
+     */
+    public long estimatedBytes() {
+        long bytes = estimatedBytes;
+        if (bytes < 0) {
+            estimatedBytes = bytes = records.estimatedBytes() + violationIndex.estimatedBytes()
+                + unregisteredIndex.estimatedBytes() + plateIndex.estimatedBytes() + fuzzyPlateIndex.estimatedBytes()
+                + occupancyIndex.estimatedBytes() + statsIndex.estimatedBytes() + lotIndex.estimatedBytes();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,90 @@
+package com.valid8.service;
+
+
+/**
+ * Mergeable quantile sketch for durations in seconds. Values are counted in
+ * logarithmic bins whose edges grow by GAMMA, and a quantile is answered
+ * with the middle of its bin, so it is within RELATIVE_ERROR of the exact
+ * value whatever the distribution. Two sketches merge by adding counts.
+ * Only the bins between the shortest and the longest value are allocated:
+ * a bucket of 20 minute to 10 hour stays takes about 70 ints.
+ */
+final class DwellSketch {
+
+    private static final double GAMMA = 1.05;
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    static final double RELATIVE_ERROR = (GAMMA - 1) / (GAMMA + 1);
+
+    private static final int[] NONE = new int[0];
+
+    private int offset;            // bin of counts[0]
+    private int[] counts = NONE;
+    private long zeros;            // values under a second
+    private long total;
+
+    DwellSketch copy() {
+        DwellSketch c = new DwellSketch();
+        c.offset = offset;
+        c.counts = counts.length == 0 ? NONE : counts.clone();
+        c.zeros = zeros;
+        c.total = total;
+        return c;
+    }
+
+    void add(long seconds) {
+        total++;
+        if (seconds < 1) {
+            zeros++;
+            return;
+        }
+        int bin = (int) Math.ceil(Math.log(seconds) / LOG_GAMMA);
+        ensure(bin, bin);
+        counts[bin - offset]++;
+    }
+
+    void addAll(DwellSketch o) {
+        total += o.total;
+        zeros += o.zeros;
+        if (o.counts.length == 0) return;
+        ensure(o.offset, o.offset + o.counts.length - 1);
+        for (int i = 0; i < o.counts.length; i++) counts[o.offset - offset + i] += o.counts[i];
+    }
+
+    long count() {
+        return total;
+    }
+
+    /** @return the q-quantile (0..1) in seconds, or NaN if the sketch is empty */
+    double quantile(double q) {
+        if (total == 0) return Double.NaN;
+        long rank = (long) Math.floor(q * (total - 1));
+        long seen = zeros;
+        if (rank < seen) return 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (rank < seen) return 2 * Math.pow(GAMMA, offset + i) / (GAMMA + 1);
+        }
+        return 2 * Math.pow(GAMMA, offset + counts.length - 1) / (GAMMA + 1);
+    }
+
+    /** Rough heap size. */
+    long estimatedBytes() {
+        return 40 + 4L * counts.length;
+    }
+
+    // Widens counts to cover bins lo..hi.
+    private void ensure(int lo, int hi) {
+        if (counts.length == 0) {
+            offset = lo;
+            counts = new int[hi - lo + 1];
+            return;
+        }
+        int end = offset + counts.length - 1;
+        if (lo >= offset && hi <= end) return;
+        int newOffset = Math.min(lo, offset), newEnd = Math.max(hi, end);
+        int[] grown = new int[newEnd - newOffset + 1];
+        System.arraycopy(counts, 0, grown, offset - newOffset, counts.length);
+        counts = grown;
+        offset = newOffset;
+    }
+}
@@ -0,0 +1,580 @@
+package com.valid8.service;
+
+import com.valid8.model.ParkingRecord;
+import com.valid8.model.RecordStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+
+/**
+ * Write-ahead journal of the gate events pushed to /api/events, so that
+ * sessions that exist nowhere but in memory survive a restart or reload.
+ *
+ * Events are appended to segment files as CRC32C-framed records with a
+ * sequence number; each batch taken from the event queue is one write and
+ * one fsync (group commit). Segments roll at segment-bytes. Once
+ * compact-segments closed segments exist, a background thread folds them
+ * and the previous checkpoint into a new checkpoint: an entry and the exit
+ * that closed it become a single session record, so replay reads roughly
+ * one record per session instead of one per event.
+ *
+ * Replay reads the checkpoint, then the segments after it; a torn or
+ * corrupt record ends its segment. The journal is the only copy of pushed
+ * sessions, so the checkpoint keeps all of them unless retention-days is
+ * set, in which case closed sessions that ended that long before the
+ * newest event are left out.
+ */
+@Component
+public class EventJournal {
+
+    /** A gate row, applied with the same rules as appended feed rows. */
+    public static final byte ROW = 1;
+    /** A session appended as it is (checkpoints only). */
+    public static final byte SESSION = 2;
+
+    private static final long SEGMENT_MAGIC = 0x314A_3844_494C_4156L;    // "VALID8J1" little-endian
+    private static final long CHECKPOINT_MAGIC = 0x3143_3844_494C_4156L; // "VALID8C1" little-endian
+    private static final int HEADER_BYTES = 16;
+    private static final int MIN_PAYLOAD_BYTES = 8 + 1 + 2 + 2 + 16;
+    private static final int MAX_PAYLOAD_BYTES = MIN_PAYLOAD_BYTES + 2 * 0xFFFF;
+    private static final int READ_BUFFER_BYTES = 1 << 20;
+
+    @Value("${valid8.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${valid8.journal.dir:valid8-journal}")
+    private String dirPath;
+
+    @Value("${valid8.journal.segment-bytes:67108864}")
+    private long segmentBytes;
+
+    @Value("${valid8.journal.compact-segments:4}")
+    private int compactSegments;
+
+    @Value("${valid8.journal.fsync:true}")
+    private boolean fsync;
+
+    @Value("${valid8.journal.retention-days:0}")
+    private int retentionDays;
+
+    /** Receives replayed records in order. */
+    public interface Replay {
+        void apply(byte type, ParkingRecord row);
+    }
+
+    private Path dir;
+    private final List<Path> closed = new ArrayList<>();  // closed segments, oldest first
+    private Path checkpoint;
+    private long checkpointSeq;                           // last sequence folded into the checkpoint
+    private FileChannel active;
+    private long activeBytes;                             // bytes written to active
+    private long nextSegment = 1;                         // number of the next segment file
+    private long lastSeq;
+
+    private Thread compactor;
+    private volatile boolean running;
+    private boolean compactRequested;
+
+    @PostConstruct
+    public void open() {
+        if (!enabled) return;
+        try {
+            dir = Paths.get(dirPath).toAbsolutePath();
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(p -> p.getFileName().toString().endsWith(".tmp")).forEach(this::deleteQuietly);
+            }
+            checkpoint = newest(list("checkpoint-"));
+            if (checkpoint != null) checkpointSeq = readCheckpointSeq(checkpoint);
+            closed.addAll(list("segment-"));
+            lastSeq = checkpointSeq;
+            if (!closed.isEmpty()) repairTail(closed.get(closed.size() - 1));
+            // A segment whose header was never written holds no sequence; look further back
+            for (int i = closed.size() - 1; i >= 0; i--) {
+                long last = lastSequence(closed.get(i));
+                if (last > 0) {
+                    lastSeq = Math.max(lastSeq, last);
+                    break;
+                }
+            }
+            for (Path segment : closed) nextSegment = Math.max(nextSegment, segmentNumber(segment) + 1);
+        } catch (IOException e) {
+            System.err.println("[EventJournal] Cannot open " + dirPath + ", journaling disabled: " + e.getMessage());
+            enabled = false;
+            return;
+        }
+        running = true;
+        compactor = new Thread(this::compactLoop, "valid8-journal-compactor");
+        compactor.setDaemon(true);
+        compactor.start();
+        System.out.println("[EventJournal] " + dir + ": " + closed.size() + " segments, checkpoint through "
+            + checkpointSeq + ", last sequence " + lastSeq);
+        if (closed.size() >= compactSegments) requestCompaction();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Appends rows as one write and, with fsync on, forces them to disk
+     * before returning.
+     */
+    public synchronized void append(List<ParkingRecord> rows) throws IOException {
+        if (!enabled || rows.isEmpty()) return;
+        if (active == null || activeBytes >= segmentBytes) roll();
+        ByteBuffer buf = ByteBuffer.allocate(rows.size() * 64).order(ByteOrder.LITTLE_ENDIAN);
+        long seq = lastSeq;
+        for (ParkingRecord r : rows) buf = frame(buf, ++seq, ROW, r);
+        buf.flip();
+        try {
+            while (buf.hasRemaining()) activeBytes += active.write(buf);
+            if (fsync) active.force(false);
+        } catch (IOException e) {
+            // Start over in a new segment; replay stops at the torn record in this one
+            closeActive();
+            throw e;
+        }
+        lastSeq = seq;
+    }
+
+    /** Replays the checkpoint and every segment after it, in sequence order. */
+    public synchronized void replay(Replay target) throws IOException {
+        if (!enabled) return;
+        long start = System.nanoTime();
+        int[] count = new int[1];
+        if (checkpoint != null) {
+            read(checkpoint, CHECKPOINT_MAGIC, (seq, type, row) -> { target.apply(type, row); count[0]++; });
+        }
+        long[] highest = {checkpointSeq};
+        for (Path segment : closed) {
+            read(segment, SEGMENT_MAGIC, (seq, type, row) -> {
+                // A batch retried after a failed write repeats sequence numbers
+                if (seq <= highest[0]) return;
+                highest[0] = seq;
+                target.apply(type, row);
+                count[0]++;
+            });
+        }
+        if (count[0] > 0) {
+            System.out.println("[EventJournal] Replayed " + count[0] + " records in "
+                + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    /**
+     * Starts a new segment. Segments are numbered by their own counter, not
+     * by their first sequence number: a write that fails leaves lastSeq
+     * where it was, and the segment it was meant for (possibly just a
+     * header) must not stand in the way of the next one.
+     */
+    private void roll() throws IOException {
+        closeActive();
+        Path path = dir.resolve(String.format("segment-%020d.log", nextSegment++));
+        FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(SEGMENT_MAGIC).putLong(lastSeq + 1).flip();
+            while (header.hasRemaining()) ch.write(header);
+            ch.force(true);
+        } catch (IOException e) {
+            ch.close();
+            deleteQuietly(path);
+            throw e;
+        }
+        active = ch;
+        activeBytes = HEADER_BYTES;
+        closed.add(path);
+        if (closed.size() > compactSegments) requestCompaction();
+    }
+
+    private void closeActive() {
+        if (active == null) return;
+        try {
+            active.close();
+        } catch (IOException e) {
+            System.err.println("[EventJournal] Closing segment: " + e.getMessage());
+        }
+        active = null;
+    }
+
+    // ---- compaction ----
+
+    private synchronized void requestCompaction() {
+        compactRequested = true;
+        notifyAll();
+    }
+
+    private void compactLoop() {
+        while (running) {
+            List<Path> segments;
+            Path base;
+            long baseSeq;
+            synchronized (this) {
+                while (!compactRequested && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                compactRequested = false;
+                // Everything but the segment being written
+                int n = active != null ? closed.size() - 1 : closed.size();
+                if (n < compactSegments) continue;
+                segments = new ArrayList<>(closed.subList(0, n));
+                base = checkpoint;
+                baseSeq = checkpointSeq;
+            }
+            try {
+                compact(base, baseSeq, segments);
+            } catch (IOException | RuntimeException e) {
+                System.err.println("[EventJournal] Compaction failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void compact(Path base, long baseSeq, List<Path> segments) throws IOException {
+        long start = System.nanoTime();
+        long cutoff = Long.MIN_VALUE;
+        if (retentionDays > 0) {
+            long[] newest = {RecordStore.NO_TIME};
+            for (Path segment : segments) {
+                read(segment, SEGMENT_MAGIC, (seq, type, row) -> newest[0] = Math.max(newest[0],
+                    Math.max(RecordStore.toKey(row.getEntryTime()), RecordStore.toKey(row.getExitTime()))));
+            }
+            if (newest[0] != RecordStore.NO_TIME) cutoff = newest[0] - retentionDays * 86_400L;
+        }
+
+        Path tmp = dir.resolve("checkpoint.tmp");
+        long[] through = {baseSeq};
+        Fold fold;
+        try (CheckpointWriter out = new CheckpointWriter(tmp)) {
+            fold = new Fold(out, cutoff);
+            if (base != null) read(base, CHECKPOINT_MAGIC, (seq, type, row) -> fold.add(type, row));
+            for (Path segment : segments) {
+                read(segment, SEGMENT_MAGIC, (seq, type, row) -> {
+                    if (seq <= through[0]) return;
+                    through[0] = seq;
+                    fold.add(type, row);
+                });
+            }
+            fold.finish();
+            out.finish(through[0]);
+        }
+        Path next = dir.resolve(String.format("checkpoint-%020d.log", through[0]));
+        synchronized (this) {
+            Files.move(tmp, next, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            checkpoint = next;
+            checkpointSeq = through[0];
+            closed.removeAll(segments);
+        }
+        if (base != null && !base.equals(next)) deleteQuietly(base);
+        segments.forEach(this::deleteQuietly);
+        System.out.println("[EventJournal] Folded " + segments.size() + " segments into " + next.getFileName()
+            + " (" + fold.written + " records, " + fold.open.size() + " open, " + fold.expired
+            + " past retention dropped) in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Folds a record sequence so that replaying the result on the same base
+     * gives the same sessions: an entry becomes a session record, and an
+     * exit that closes a session entered earlier in the sequence is merged
+     * into it. Exits that close a session from the CSV data stay rows.
+     *
+     * Records are written as soon as nothing later can change them, so only
+     * the open sessions are held in memory. The order for any one plate and
+     * lot is kept. Sessions that ended before cutoff are dropped, except
+     * the ones still open at the end.
+     */
+    private static final class Fold {
+
+        private final CheckpointWriter out;
+        private final long cutoff;
+        final Map<String, ParkingRecord> open = new LinkedHashMap<>(); // plate + lot (folded) -> entry
+        int written;
+        int expired;
+
+        Fold(CheckpointWriter out, long cutoff) {
+            this.out = out;
+            this.cutoff = cutoff;
+        }
+
+        void add(byte type, ParkingRecord r) {
+            String key = r.getPlate() + '\0' + r.getLot().toLowerCase();
+            if (type == ROW && r.getExitTime() != null) {
+                ParkingRecord entered = open.remove(key);
+                if (entered != null) {
+                    write(SESSION, new ParkingRecord(entered.getPlate(), entered.getLot(),
+                        entered.getEntryTime(), r.getExitTime()));
+                } else {
+                    write(ROW, r);
+                }
+                return;
+            }
+            // An open session replaced by a newer one for the same plate and lot can no longer close
+            ParkingRecord replaced = r.isStillInLot() ? open.put(key, r) : open.remove(key);
+            if (replaced != null) write(SESSION, replaced);
+            if (!r.isStillInLot()) write(SESSION, r);
+        }
+
+        void finish() {
+            for (ParkingRecord r : open.values()) {
+                out.write(SESSION, r);
+                written++;
+            }
+        }
+
+        private void write(byte type, ParkingRecord r) {
+            if (type == SESSION) {
+                long last = r.isStillInLot() ? RecordStore.toKey(r.getEntryTime()) : RecordStore.toKey(r.getExitTime());
+                if (last < cutoff) {
+                    expired++;
+                    return;
+                }
+            }
+            out.write(type, r);
+            written++;
+        }
+    }
+
+    /** Streams framed records to a new checkpoint file; the header is written last. */
+    private static final class CheckpointWriter implements Closeable {
+
+        private final FileChannel ch;
+        private ByteBuffer buf = ByteBuffer.allocate(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+
+        CheckpointWriter(Path file) throws IOException {
+            ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+            buf.position(HEADER_BYTES);
+        }
+
+        void write(byte type, ParkingRecord r) {
+            buf = frame(buf, 0, type, r);
+            if (buf.position() > buf.capacity() - 512) flush();
+        }
+
+        void finish(long through) throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(CHECKPOINT_MAGIC).putLong(through).flip();
+            while (header.hasRemaining()) ch.write(header, header.position());
+            ch.force(true);
+        }
+
+        // Called from read callbacks, which cannot throw IOException
+        private void flush() {
+            buf.flip();
+            try {
+                while (buf.hasRemaining()) ch.write(buf);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            buf.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            ch.close();
+        }
+    }
+
+    // ---- file format ----
+
+    private interface Sink {
+        void accept(long seq, byte type, ParkingRecord row);
+    }
+
+    // [int length][int crc32c of payload][payload: long seq, byte type, plate, lot, long entry, long exit]
+    private static ByteBuffer frame(ByteBuffer buf, long seq, byte type, ParkingRecord r) {
+        byte[] plate = r.getPlate().getBytes(StandardCharsets.UTF_8);
+        byte[] lot = r.getLot().getBytes(StandardCharsets.UTF_8);
+        if (plate.length > 0xFFFF || lot.length > 0xFFFF) {
+            throw new IllegalArgumentException("Plate or lot longer than 65535 bytes cannot be journaled");
+        }
+        int length = 8 + 1 + 2 + plate.length + 2 + lot.length + 16;
+        if (buf.remaining() < 8 + length) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(buf.capacity() * 2, buf.position() + 8 + length))
+                .order(ByteOrder.LITTLE_ENDIAN);
+            buf.flip();
+            bigger.put(buf);
+            buf = bigger;
+        }
+        int at = buf.position();
+        buf.putInt(length).putInt(0);
+        int payload = buf.position();
+        buf.putLong(seq).put(type)
+            .putShort((short) plate.length).put(plate)
+            .putShort((short) lot.length).put(lot)
+            .putLong(RecordStore.toKey(r.getEntryTime()))
+            .putLong(RecordStore.toKey(r.getExitTime()));
+        CRC32C crc = new CRC32C();
+        crc.update(buf.array(), payload, length);
+        buf.putInt(at + 4, (int) crc.getValue());
+        return buf;
+    }
+
+    /**
+     * Reads file through a fixed buffer, so files of any size take the same
+     * memory.
+     *
+     * @return the length of the valid prefix read
+     */
+    private long read(Path file, long magic, Sink sink) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = ByteBuffer.allocate(READ_BUFFER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            boolean eof = fill(ch, in);
+            in.flip();
+            if (in.remaining() < HEADER_BYTES || in.getLong() != magic) {
+                System.err.println("[EventJournal] Skipping " + file.getFileName() + ": bad header");
+                return 0;
+            }
+            in.getLong();
+            long offset = 0;                    // file position of in's first byte
+            long valid = HEADER_BYTES;
+            CRC32C crc = new CRC32C();
+            while (true) {
+                boolean framed = in.remaining() >= 4;
+                int length = framed ? in.getInt(in.position()) : 0;
+                if (framed && (length < MIN_PAYLOAD_BYTES || length > MAX_PAYLOAD_BYTES)) break;
+                if (!framed || in.remaining() < 8 + length) {
+                    if (eof) break;
+                    offset += in.position();
+                    in.compact();
+                    eof = fill(ch, in);
+                    in.flip();
+                    continue;
+                }
+                int start = in.position();
+                in.getInt();
+                int expected = in.getInt();
+                ByteBuffer payload = in.slice(in.position(), length).order(ByteOrder.LITTLE_ENDIAN);
+                crc.reset();
+                crc.update(payload.duplicate());
+                if ((int) crc.getValue() != expected) {
+                    in.position(start);
+                    break;
+                }
+                in.position(in.position() + length);
+                long seq = payload.getLong();
+                byte type = payload.get();
+                String plate = string(payload);
+                String lot = string(payload);
+                ParkingRecord row = new ParkingRecord(plate, lot,
+                    RecordStore.fromKey(payload.getLong()), RecordStore.fromKey(payload.getLong()));
+                sink.accept(seq, type, row);
+                valid = offset + in.position();
+            }
+            if (ch.size() > valid) {
+                System.err.println("[EventJournal] " + file.getFileName() + ": ignoring "
+                    + (ch.size() - valid) + " bytes after the last valid record");
+            }
+            return valid;
+        }
+    }
+
+    /** @return whether the end of the file was reached */
+    private static boolean fill(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) {
+            if (ch.read(buf) < 0) return true;
+        }
+        return false;
+    }
+
+    private static String string(ByteBuffer in) {
+        byte[] b = new byte[in.getShort() & 0xFFFF];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+
+    /** Truncates a torn record off the end of the last segment. */
+    private void repairTail(Path segment) throws IOException {
+        long valid = read(segment, SEGMENT_MAGIC, (seq, type, row) -> { });
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            if (valid >= HEADER_BYTES && ch.size() > valid) ch.truncate(valid);
+        }
+    }
+
+    /** @return the last sequence number in segment, or the one before its first if it is empty; 0 if unknown */
+    private long lastSequence(Path segment) throws IOException {
+        long[] last = {0};
+        read(segment, SEGMENT_MAGIC, (seq, type, row) -> last[0] = Math.max(last[0], seq));
+        if (last[0] == 0) {
+            ByteBuffer header = header(segment);
+            if (header.getLong(0) == SEGMENT_MAGIC) last[0] = header.getLong(8) - 1;
+        }
+        return last[0];
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("segment-".length(), name.length() - ".log".length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static long readCheckpointSeq(Path file) throws IOException {
+        ByteBuffer header = header(file);
+        if (header.getLong(0) != CHECKPOINT_MAGIC) throw new IOException(file.getFileName() + " is not a checkpoint");
+        return header.getLong(8);
+    }
+
+    // magic and sequence number; zeros if the file is shorter than a header
+    private static ByteBuffer header(Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (header.hasRemaining() && ch.read(header) > 0) {
+                // keep reading
+            }
+        }
+        return header;
+    }
+
+    private List<Path> list(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(p -> {
+                String name = p.getFileName().toString();
+                return name.startsWith(prefix) && name.endsWith(".log");
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private Path newest(List<Path> checkpoints) {
+        if (checkpoints.isEmpty()) return null;
+        for (int i = 0; i < checkpoints.size() - 1; i++) deleteQuietly(checkpoints.get(i));
+        return checkpoints.get(checkpoints.size() - 1);
+    }
+
+    private void deleteQuietly(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            System.err.println("[EventJournal] Cannot delete " + p + ": " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        running = false;
+        notifyAll();
+        closeActive();
+    }
+}
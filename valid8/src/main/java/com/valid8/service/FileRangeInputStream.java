@@ -0,0 +1,82 @@
+package com.valid8.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * Reads the byte range [start, end) of a file using positional reads, so
+ * several ranges of the same FileChannel can be consumed concurrently.
+ */
+class FileRangeInputStream extends InputStream {
+
+    private final FileChannel channel;
+    private final long end;
+    private long pos;
+
+    FileRangeInputStream(FileChannel channel, long start, long end) {
+        this.channel = channel;
+        this.pos = start;
+        this.end = end;
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int n = read(one, 0, 1);
+        return n < 0 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (pos >= end) return -1;
+        int want = (int) Math.min(len, end - pos);
+        int n = channel.read(ByteBuffer.wrap(b, off, want), pos);
+        if (n < 0) return -1;
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return (int) Math.min(Integer.MAX_VALUE, end - pos);
+    }
+
+    /**
+     * @return the offset just past the next '\n' at or after pos, or size if none
+     */
+    static long nextLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        while (pos < size) {
+            buf.clear();
+            int n = channel.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                if (buf.get(i) == '\n') return pos + i + 1;
+            }
+            pos += n;
+        }
+        return size;
+    }
+
+    /**
+     * @return the offset just past the last '\n' in [from, to), or from if none
+     */
+    static long lastLineEnd(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(8192);
+        long pos = to;
+        while (pos > from) {
+            int want = (int) Math.min(buf.capacity(), pos - from);
+            buf.clear().limit(want);
+            int n = channel.read(buf, pos - want);
+            if (n <= 0) break;
+            for (int i = n - 1; i >= 0; i--) {
+                if (buf.get(i) == '\n') return pos - want + i + 1;
+            }
+            pos -= want;
+        }
+        return from;
+    }
+}
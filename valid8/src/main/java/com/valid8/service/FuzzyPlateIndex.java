@@ -0,0 +1,196 @@
+package com.valid8.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.valid8.model.PlateSuggestion;
+import com.valid8.model.Registration;
+
+import java.util.*;
+
+
+/**
+ * Registered plates that an unregistered plate may be a misread of.
+ * Characters a plate reader confuses (O/0, I/1, B/8, ...) are folded to
+ * one representative, and the folded registration plates are kept in an
+ * open-addressing hash table of registration numbers, each stored with its
+ * hash so that most probes never touch the plate. A lookup probes the
+ * folded plate itself and, with max-edits 1, every plate one deletion,
+ * substitution or insertion away, which is a few hundred probes whatever
+ * the size of the registry. The table costs 16 to 32 bytes per registration.
+ *
+ * Candidates are ranked by edit distance on the plates as read, with a
+ * substitution between confusable characters counting half. The answers
+ * for the most recently listed plates are remembered; the index outlives
+ * incremental updates, so the memo is capped rather than growing with
+ * every plate ever pushed.
+ */
+public final class FuzzyPlateIndex {
+
+    private static final char[] FOLD = new char[128];
+    private static final int MAX_ANSWERS = 65_536;
+
+    static {
+        for (char c = 0; c < FOLD.length; c++) FOLD[c] = c;
+        confusable('0', "OQD");
+        confusable('1', "IL");
+        confusable('2', "Z");
+        confusable('5', "S");
+        confusable('6', "G");
+        confusable('8', "B");
+    }
+
+    public static final FuzzyPlateIndex EMPTY = build(Collections.emptyMap(), 0, 0);
+
+    private final Registration[] regs;
+    private final long[] table;         // folded plate hash << 32 | registration index + 1, 0 when free
+    private final int mask;
+    private final char[] alphabet;      // folded characters found in registration plates
+    private final int maxEdits;
+    private final int maxSuggestions;
+    private final Cache<String, List<PlateSuggestion>> answers = Caffeine.newBuilder().maximumSize(MAX_ANSWERS).build();
+
+    private FuzzyPlateIndex(Registration[] regs, long[] table, char[] alphabet, int maxEdits, int maxSuggestions) {
+        this.regs = regs;
+        this.table = table;
+        this.mask = table.length - 1;
+        this.alphabet = alphabet;
+        this.maxEdits = maxEdits;
+        this.maxSuggestions = maxSuggestions;
+    }
+
+    /**
+     * @param maxEdits       edits allowed besides misread characters, 0 or 1
+     * @param maxSuggestions most candidates returned per plate
+     */
+    public static FuzzyPlateIndex build(Map<String, Registration> registrations, int maxEdits, int maxSuggestions) {
+        Registration[] regs = registrations.values().toArray(new Registration[0]);
+        long[] table = new long[Math.max(2, Integer.highestOneBit(Math.max(1, regs.length) * 2 - 1) << 1)];
+        BitSet chars = new BitSet();
+        char[] buf = new char[16];
+        for (int r = 0; r < regs.length; r++) {
+            String plate = regs[r].getPlate();
+            if (plate.length() > buf.length) buf = new char[plate.length()];
+            int len = fold(plate, buf);
+            for (int i = 0; i < len; i++) chars.set(buf[i]);
+            int h = hash(buf, len);
+            int slot = h & (table.length - 1);
+            while (table[slot] != 0) slot = (slot + 1) & (table.length - 1);
+            table[slot] = (long) h << 32 | (r + 1);
+        }
+        char[] alphabet = new char[chars.cardinality()];
+        for (int c = chars.nextSetBit(0), i = 0; c >= 0; c = chars.nextSetBit(c + 1)) alphabet[i++] = (char) c;
+        return new FuzzyPlateIndex(regs, table, alphabet,
+            Math.max(0, Math.min(1, maxEdits)), Math.max(0, maxSuggestions));
+    }
+
+    /** @return registered plates that plate may be a misread of, closest first (the plate itself excluded) */
+    public List<PlateSuggestion> suggest(String plate) {
+        if (plate == null || maxSuggestions == 0 || regs.length == 0) return Collections.emptyList();
+        return answers.get(plate, this::match);
+    }
+
+    /** Rough heap size. */
+    public long estimatedBytes() {
+        return 8L * table.length + 120L * answers.estimatedSize();
+    }
+
+    /** Same as suggest, without remembering the answer. */
+    public List<PlateSuggestion> match(String plate) {
+        String query = plate.trim().toUpperCase();
+        char[] q = new char[query.length()];
+        int len = fold(query, q);
+        Set<Integer> found = new LinkedHashSet<>();
+        probe(q, len, found);
+        if (maxEdits > 0) {
+            char[] buf = new char[len + 1];
+            for (int i = 0; i < len; i++) {                     // deletions
+                System.arraycopy(q, 0, buf, 0, i);
+                System.arraycopy(q, i + 1, buf, i, len - i - 1);
+                probe(buf, len - 1, found);
+            }
+            System.arraycopy(q, 0, buf, 0, len);
+            for (int i = 0; i < len; i++) {                     // substitutions
+                for (char c : alphabet) {
+                    if (c == q[i]) continue;
+                    buf[i] = c;
+                    probe(buf, len, found);
+                }
+                buf[i] = q[i];
+            }
+            for (int i = 0; i <= len; i++) {                    // insertions
+                System.arraycopy(q, 0, buf, 0, i);
+                System.arraycopy(q, i, buf, i + 1, len - i);
+                for (char c : alphabet) {
+                    buf[i] = c;
+                    probe(buf, len + 1, found);
+                }
+            }
+        }
+        if (found.isEmpty()) return Collections.emptyList();
+
+        List<PlateSuggestion> out = new ArrayList<>(found.size());
+        for (int r : found) {
+            String candidate = regs[r].getPlate();
+            if (candidate.equals(query)) continue;
+            out.add(new PlateSuggestion(candidate, regs[r].getLot(), distance(query, candidate)));
+        }
+        out.sort(Comparator.comparingDouble(PlateSuggestion::getDistance)
+            .thenComparing(PlateSuggestion::getLicensePlate));
+        return out.size() > maxSuggestions ? List.copyOf(out.subList(0, maxSuggestions)) : List.copyOf(out);
+    }
+
+    private void probe(char[] folded, int len, Set<Integer> found) {
+        int h = hash(folded, len);
+        for (int slot = h & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+            if ((int) (table[slot] >>> 32) != h) continue;
+            int r = (int) table[slot] - 1;
+            if (foldedEquals(regs[r].getPlate(), folded, len)) found.add(r);
+        }
+    }
+
+    // Levenshtein distance where a substitution between confusable characters costs 0.5
+    private static double distance(String a, String b) {
+        double[] prev = new double[b.length() + 1], cur = new double[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) prev[j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            cur[0] = i;
+            char ca = a.charAt(i - 1);
+            for (int j = 1; j <= b.length(); j++) {
+                char cb = b.charAt(j - 1);
+                double sub = ca == cb ? 0 : fold(ca) == fold(cb) ? 0.5 : 1;
+                cur[j] = Math.min(prev[j - 1] + sub, Math.min(prev[j], cur[j - 1]) + 1);
+            }
+            double[] t = prev; prev = cur; cur = t;
+        }
+        return prev[b.length()];
+    }
+
+    private static boolean foldedEquals(String plate, char[] folded, int len) {
+        if (plate.length() != len) return false;
+        for (int i = 0; i < len; i++) {
+            if (fold(plate.charAt(i)) != folded[i]) return false;
+        }
+        return true;
+    }
+
+    private static int fold(String s, char[] out) {
+        for (int i = 0; i < s.length(); i++) out[i] = fold(s.charAt(i));
+        return s.length();
+    }
+
+    private static char fold(char c) {
+        return c < FOLD.length ? FOLD[c] : c;
+    }
+
+    private static void confusable(char to, String from) {
+        for (char c : from.toCharArray()) FOLD[c] = to;
+    }
+
+    private static int hash(char[] s, int len) {
+        int h = len;
+        for (int i = 0; i < len; i++) h = 31 * h + s[i];
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        return h ^ (h >>> 13);
+    }
+}
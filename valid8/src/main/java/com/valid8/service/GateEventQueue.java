@@ -0,0 +1,291 @@
+package com.valid8.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.valid8.model.ParkingRecord;
+import com.valid8.util.TimeUtils;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Gate events pushed over HTTP. Request threads parse a batch and add it
+ * to a bounded ring buffer as a whole or not at all; a single writer
+ * thread drains the buffer in order and applies what it took as one
+ * session update, so events are applied in arrival order and a burst
+ * becomes a few large updates instead of many small ones.
+ *
+ * An entry event starts a session; an exit event closes the open session
+ * for the same plate and lot, the same rules as rows appended to the
+ * simulation file.
+ *
+ * Each batch is written to the EventJournal before it is applied. If the
+ * journal cannot be written the writer keeps retrying the same batch, so
+ * the buffer fills and requests get 429 rather than events being lost. A
+ * batch that fails for any other reason is dropped, and the requests
+ * waiting on it are told so.
+ */
+@Component
+public class GateEventQueue {
+
+    @Autowired
+    private Valid8Service service;
+
+    @Value("${valid8.events.capacity:65536}")
+    private int capacity;
+
+    @Value("${valid8.events.batch-max:16384}")
+    private int batchMax;
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int MAX_VALUE_BYTES = 64;     // plate and lot, in UTF-8
+    private static final int MAX_DROPPED_RANGES = 1024;
+
+    private ParkingRecord[] ring;
+    private int head;   // next slot to take
+    private int size;
+    private long enqueued;      // events ever added; a batch's ticket is the value after adding it
+
+    // A lock rather than a monitor: request threads wait here, and a virtual
+    // thread blocked in Object.wait() would hold on to its carrier.
+    private final ReentrantLock progress = new ReentrantLock();
+    private final Condition advanced = progress.newCondition();
+    private long completed;     // events taken by the writer and journaled (or dropped), guarded by progress
+    private final ArrayDeque<long[]> droppedRanges = new ArrayDeque<>();  // [from, to) of completed, newest last
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        ring = new ParkingRecord[Math.max(1, capacity)];
+        running = true;
+        writer = new Thread(this::drain, "valid8-event-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Adds the events in order, all or none.
+     *
+     * @return a ticket for awaitApplied, or -1 if the buffer does not have
+     *         room for all of them
+     */
+    public long offer(List<ParkingRecord> events) {
+        long ticket;
+        synchronized (this) {
+            if (ring.length - size < events.size()) {
+                rejected.addAndGet(events.size());
+                return -1;
+            }
+            for (ParkingRecord e : events) {
+                ring[(head + size) % ring.length] = e;
+                size++;
+            }
+            enqueued += events.size();
+            ticket = enqueued;
+            notifyAll();
+        }
+        accepted.addAndGet(events.size());
+        return ticket;
+    }
+
+    /**
+     * Waits until the writer has handled every event up to ticket.
+     *
+     * @return false if that did not happen within timeoutMs
+     */
+    public boolean awaitApplied(long ticket, long timeoutMs) throws InterruptedException {
+        long left = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        progress.lock();
+        try {
+            while (completed < ticket) {
+                if (left <= 0) return false;
+                left = advanced.awaitNanos(left);
+            }
+            return true;
+        } finally {
+            progress.unlock();
+        }
+    }
+
+    /**
+     * @return how many of the events of the batch that got ticket were
+     *         dropped instead of applied; call once awaitApplied returned true
+     */
+    public int dropped(long ticket, int events) {
+        progress.lock();
+        try {
+            long count = 0;
+            for (long[] range : droppedRanges) {
+                count += Math.max(0, Math.min(range[1], ticket) - Math.max(range[0], ticket - events));
+            }
+            return (int) count;
+        } finally {
+            progress.unlock();
+        }
+    }
+
+    private void drain() {
+        while (running) {
+            List<ParkingRecord> batch;
+            synchronized (this) {
+                while (size == 0 && running) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                int n = Math.min(size, Math.max(1, batchMax));
+                batch = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    batch.add(ring[head]);
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                size -= n;
+            }
+            int lost = apply(batch);
+            if (lost < 0) return;
+            progress.lock();
+            try {
+                if (lost > 0) {
+                    droppedRanges.addLast(new long[] {completed, completed + lost});
+                    if (droppedRanges.size() > MAX_DROPPED_RANGES) droppedRanges.removeFirst();
+                }
+                completed += batch.size();
+                advanced.signalAll();
+            } finally {
+                progress.unlock();
+            }
+        }
+    }
+
+    /** @return the number of events dropped, 0 or all of them, or -1 if interrupted while waiting to retry */
+    private int apply(List<ParkingRecord> batch) {
+        while (running) {
+            try {
+                service.applyEvents(batch);
+                applied.addAndGet(batch.size());
+                return 0;
+            } catch (IOException e) {
+                System.err.println("[GateEventQueue] Journal write failed, retrying " + batch.size()
+                    + " events: " + e.getMessage());
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException ie) {
+                    return -1;
+                }
+            } catch (Exception e) {
+                System.err.println("[GateEventQueue] Dropped " + batch.size() + " events: " + e.getMessage());
+                dropped.addAndGet(batch.size());
+                return batch.size();
+            }
+        }
+        return -1;
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) writer.interrupt();
+    }
+
+    public int getCapacity()        { return ring.length; }
+    public synchronized int size()  { return size; }
+    public long getAccepted()       { return accepted.get(); }
+    public long getRejected()       { return rejected.get(); }
+    public long getApplied()        { return applied.get(); }
+    public long getDropped()        { return dropped.get(); }
+
+
+    /**
+     * Reads gate events from a JSON array of objects or from newline
+     * delimited objects (NDJSON). Each object has plate, lot, type ("entry"
+     * or "exit") and time; an exit may also give entryTime. Plates and
+     * lots are at most 64 bytes in UTF-8.
+     *
+     * @throws IllegalArgumentException naming the first invalid event
+     */
+    public static List<ParkingRecord> parse(InputStream body) throws IOException {
+        List<ParkingRecord> events = new ArrayList<>();
+        try (JsonParser p = JSON.createParser(body)) {
+            JsonToken t = p.nextToken();
+            boolean array = t == JsonToken.START_ARRAY;
+            if (array) t = p.nextToken();
+            while (t != null && t != JsonToken.END_ARRAY) {
+                if (t != JsonToken.START_OBJECT) {
+                    throw new IllegalArgumentException("Event " + (events.size() + 1) + ": expected an object");
+                }
+                events.add(readEvent(p, events.size() + 1));
+                t = p.nextToken();
+            }
+            if (array && t == null) throw new IllegalArgumentException("Unterminated event array");
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalArgumentException("Malformed JSON at line " + e.getLocation().getLineNr()
+                + ", column " + e.getLocation().getColumnNr() + " (after " + events.size() + " events)");
+        }
+        return events;
+    }
+
+    private static ParkingRecord readEvent(JsonParser p, int n) throws IOException {
+        String plate = null, lot = null, type = null, time = null, entryTime = null;
+        while (p.nextToken() == JsonToken.FIELD_NAME) {
+            String field = p.currentName();
+            JsonToken v = p.nextToken();
+            if (v == JsonToken.START_OBJECT || v == JsonToken.START_ARRAY) {
+                p.skipChildren();
+                continue;
+            }
+            String text = v == JsonToken.VALUE_NULL ? null : p.getText();
+            switch (field) {
+                case "plate":     plate = text; break;
+                case "lot":       lot = text; break;
+                case "type":      type = text; break;
+                case "time":      time = text; break;
+                case "entryTime": entryTime = text; break;
+                default:          break;
+            }
+        }
+        if (plate == null || plate.isBlank()) throw new IllegalArgumentException("Event " + n + ": missing plate");
+        if (lot == null || lot.isBlank())     throw new IllegalArgumentException("Event " + n + ": missing lot");
+        if (plate.getBytes(StandardCharsets.UTF_8).length > MAX_VALUE_BYTES) {
+            throw new IllegalArgumentException("Event " + n + ": plate longer than " + MAX_VALUE_BYTES + " bytes");
+        }
+        if (lot.getBytes(StandardCharsets.UTF_8).length > MAX_VALUE_BYTES) {
+            throw new IllegalArgumentException("Event " + n + ": lot longer than " + MAX_VALUE_BYTES + " bytes");
+        }
+        LocalDateTime at = TimeUtils.parse(time);
+        if (at == null) throw new IllegalArgumentException("Event " + n + ": cannot parse time: " + time);
+
+        if ("entry".equalsIgnoreCase(type)) {
+            return new ParkingRecord(plate, lot, at, null);
+        }
+        if ("exit".equalsIgnoreCase(type)) {
+            return new ParkingRecord(plate, lot, TimeUtils.parse(entryTime), at);
+        }
+        throw new IllegalArgumentException("Event " + n + ": type must be entry or exit");
+    }
+}
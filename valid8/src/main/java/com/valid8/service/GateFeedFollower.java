@@ -0,0 +1,94 @@
+package com.valid8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Follows simulation_data.csv as the gate feed appends to it, applying only
+ * the new rows instead of doing a full reload. Change notifications come
+ * from a WatchService; the file is also polled every poll-ms in case the
+ * filesystem does not deliver events.
+ */
+@Component
+public class GateFeedFollower {
+
+    @Autowired
+    private Valid8Service service;
+
+    @Value("${valid8.follow.enabled:false}")
+    private boolean enabled;
+
+    @Value("${valid8.follow.poll-ms:2000}")
+    private long pollMs;
+
+    @Value("${valid8.csv.simulation:simulation_data.csv}")
+    private String simulationPath;
+
+    private WatchService watcher;
+    private Thread thread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+        Path file = Paths.get(simulationPath).toAbsolutePath();
+        if (!Files.isRegularFile(file)) {
+            System.err.println("[GateFeedFollower] Not following " + simulationPath + ": not a regular file");
+            return;
+        }
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            file.getParent().register(watcher,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+        } catch (IOException e) {
+            System.err.println("[GateFeedFollower] Cannot watch " + file + ": " + e.getMessage());
+            return;
+        }
+        running = true;
+        thread = new Thread(() -> follow(file.getFileName()), "valid8-gate-follower");
+        thread.setDaemon(true);
+        thread.start();
+        System.out.println("[GateFeedFollower] Following " + file);
+    }
+
+    private void follow(Path fileName) {
+        while (running) {
+            try {
+                WatchKey key = watcher.poll(pollMs, TimeUnit.MILLISECONDS);
+                boolean changed = key == null;
+                if (key != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (fileName.equals(event.context())
+                                || event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                }
+                if (changed) service.ingestAppended();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[GateFeedFollower] Follow error: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+        try {
+            if (watcher != null) watcher.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.valid8.service;
+
+import java.time.LocalDateTime;
+
+
+/**
+ * Filters and paging for the violations / unregistered list endpoints.
+ * Rows are ordered by entry time, then by their position in the dataset,
+ * and the cursor is the (entry time, position) key of the last row of the
+ * previous page, so paging stays stable while new rows are appended.
+ */
+public class ListQuery {
+
+    public enum Status { ALL, IN_LOT, LEFT }
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final String lot;
+    private final LocalDateTime from;
+    private final LocalDateTime to;
+    private final Status status;
+    private final String platePrefix;
+    private final boolean descending;
+    private final Cursor after;
+    private final int limit;
+
+    public ListQuery(String lot, LocalDateTime from, LocalDateTime to, Status status,
+                     String platePrefix, boolean descending, String cursor, Integer limit) {
+        this.lot = lot == null || lot.isBlank() ? null : lot.trim();
+        this.from = from;
+        this.to = to;
+        this.status = status == null ? Status.ALL : status;
+        this.platePrefix = platePrefix == null || platePrefix.isBlank() ? null : platePrefix.trim().toUpperCase();
+        this.descending = descending;
+        this.after = cursor == null || cursor.isBlank() ? null : Cursor.parse(cursor);
+        this.limit = limit == null ? DEFAULT_LIMIT : Math.max(1, Math.min(MAX_LIMIT, limit));
+    }
+
+    public String getLot()            { return lot; }
+    public LocalDateTime getFrom()    { return from; }
+    public LocalDateTime getTo()      { return to; }
+    public Status getStatus()         { return status; }
+    public String getPlatePrefix()    { return platePrefix; }
+    public boolean isDescending()     { return descending; }
+    public Cursor getAfter()          { return after; }
+    public int getLimit()             { return limit; }
+
+
+    public static final class Cursor {
+
+        final long entryKey;
+        final int position;
+
+        Cursor(long entryKey, int position) {
+            this.entryKey = entryKey;
+            this.position = position;
+        }
+
+        static Cursor parse(String s) {
+            int dot = s.indexOf('.');
+            try {
+                if (dot < 0) throw new NumberFormatException();
+                return new Cursor(Long.parseLong(s.substring(0, dot)), Integer.parseInt(s.substring(dot + 1)));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid cursor: " + s);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return entryKey + "." + position;
+        }
+    }
+}
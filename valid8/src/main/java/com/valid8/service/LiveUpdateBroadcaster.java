@@ -0,0 +1,227 @@
+package com.valid8.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valid8.model.ParkingRecord;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+
+/**
+ * Pushes dataset changes to Server-Sent Events subscribers.
+ *
+ * Topics are "summary" (full lot summaries), "violations" and "unregistered"
+ * (new or updated rows only). After a full reload, or when a client falls
+ * behind, it is sent a "resync" event and should refetch its lists.
+ *
+ * Each event is serialized once and shared by all subscribers. Every
+ * subscriber has its own bounded queue drained on a virtual thread, so a
+ * slow client only delays itself. If its queue overflows, the backlog is
+ * dropped and replaced by a single resync.
+ */
+@Component
+public class LiveUpdateBroadcaster {
+
+    public static final String SUMMARY      = "summary";
+    public static final String VIOLATIONS   = "violations";
+    public static final String UNREGISTERED = "unregistered";
+    public static final Set<String> TOPICS  = Set.of(SUMMARY, VIOLATIONS, UNREGISTERED);
+
+    private static final String RESYNC = "resync";
+
+    @Autowired
+    private Valid8Service service;
+
+    @Autowired
+    private ObjectMapper mapper;
+
+    @Value("${valid8.stream.buffer-size:32}")
+    private int bufferSize;
+
+    @Value("${valid8.stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${valid8.stream.heartbeat-ms:15000}")
+    private long heartbeatMs;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService senders = Executors.newVirtualThreadPerTaskExecutor();
+    private final ScheduledExecutorService heartbeat = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "valid8-sse-heartbeat");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    public void start() {
+        Frame ping = new Frame(null, null, null, true);
+        heartbeat.scheduleAtFixedRate(() -> subscribers.forEach(s -> s.offer(ping)),
+                heartbeatMs, heartbeatMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        heartbeat.shutdownNow();
+        subscribers.forEach(Subscriber::close);
+        senders.shutdownNow();
+    }
+
+    public SseEmitter subscribe(Set<String> topics) {
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(emitter, topics);
+        emitter.onCompletion(sub::close);
+        emitter.onTimeout(sub::close);
+        emitter.onError(e -> sub.close());
+        subscribers.add(sub);
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @EventListener
+    public void onDatasetChanged(DatasetChangedEvent event) {
+        if (subscribers.isEmpty()) return;
+        DatasetSnapshot snap = event.getSnapshot();
+        String id = String.valueOf(snap.getVersion());
+        List<ParkingRecord> changed = event.getChangedRecords();
+
+        Set<String> wanted = new HashSet<>();
+        for (Subscriber sub : subscribers) wanted.addAll(sub.topics);
+
+        Map<String, Frame> frames = new HashMap<>();
+        if (wanted.contains(SUMMARY)) {
+            frames.put(SUMMARY, frame(SUMMARY, id,
+                Map.of("version", snap.getVersion(), "lots", snap.getLotSummaries())));
+        }
+        if (changed != null && wanted.contains(VIOLATIONS)) {
+            frames.put(VIOLATIONS, itemsFrame(VIOLATIONS, id, snap, service.toViolationItems(changed)));
+        }
+        if (changed != null && wanted.contains(UNREGISTERED)) {
+            frames.put(UNREGISTERED, itemsFrame(UNREGISTERED, id, snap, service.toUnregisteredItems(snap, changed)));
+        }
+        Frame resync = event.isFullReload()
+            ? frame(RESYNC, id, Map.of("version", snap.getVersion()))
+            : null;
+
+        for (Subscriber sub : subscribers) {
+            if (resync != null && !sub.listsOnlySummary()) sub.offer(resync);
+            for (String topic : sub.topics) {
+                Frame f = frames.get(topic);
+                if (f != null) sub.offer(f);
+            }
+        }
+    }
+
+    private Frame itemsFrame(String name, String id, DatasetSnapshot snap, List<?> items) {
+        if (items.isEmpty()) return null;
+        return frame(name, id, Map.of("version", snap.getVersion(), "items", items));
+    }
+
+    private Frame frame(String name, String id, Object payload) {
+        try {
+            return new Frame(name, id, mapper.writeValueAsString(payload), SUMMARY.equals(name));
+        } catch (JsonProcessingException e) {
+            System.err.println("[LiveUpdateBroadcaster] Cannot serialize " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+
+    /** A pre-serialized event; a null name is a heartbeat comment. */
+    private static final class Frame {
+
+        final String name;
+        final String id;
+        final String data;
+        final boolean latestOnly; // a newer frame with the same name supersedes it
+
+        Frame(String name, String id, String data, boolean latestOnly) {
+            this.name = name;
+            this.id = id;
+            this.data = data;
+            this.latestOnly = latestOnly;
+        }
+
+        void sendTo(SseEmitter emitter) throws Exception {
+            if (name == null) {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } else {
+                emitter.send(SseEmitter.event().name(name).id(id).data(data));
+            }
+        }
+    }
+
+    private final class Subscriber {
+
+        final SseEmitter emitter;
+        final Set<String> topics;
+        private final ArrayDeque<Frame> queue = new ArrayDeque<>();
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter, Set<String> topics) {
+            this.emitter = emitter;
+            this.topics = topics;
+        }
+
+        boolean listsOnlySummary() {
+            return topics.size() == 1 && topics.contains(SUMMARY);
+        }
+
+        void offer(Frame f) {
+            synchronized (this) {
+                if (closed) return;
+                if (f.latestOnly) queue.removeIf(q -> Objects.equals(q.name, f.name));
+                if (queue.size() >= bufferSize) {
+                    queue.clear();
+                    queue.add(new Frame(RESYNC, f.id, "{}", false));
+                }
+                queue.add(f);
+                if (draining) return;
+                draining = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            while (true) {
+                Frame f;
+                synchronized (this) {
+                    f = queue.poll();
+                    if (f == null || closed) {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    f.sendTo(emitter);
+                } catch (Exception e) {
+                    close();
+                    try {
+                        emitter.completeWithError(e);
+                    } catch (Exception ignored) {
+                    }
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                closed = true;
+                queue.clear();
+            }
+            subscribers.remove(this);
+        }
+    }
+}
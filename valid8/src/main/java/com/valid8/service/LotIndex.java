@@ -0,0 +1,193 @@
+package com.valid8.service;
+
+import com.valid8.model.LotConfig;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+
+/**
+ * The configured lots of a generation: their order (a lot's slot, which
+ * is also its position in the lot summaries), lookup by name ignoring
+ * case, and a k-d tree over their coordinates for nearest-lot queries.
+ *
+ * Coordinates are kept as points on the unit sphere, so straight-line
+ * distance in the tree orders lots exactly as great-circle distance does,
+ * with no special cases at the poles or the antimeridian. The tree is an
+ * implicit median-split tree in three arrays. A query descends towards the
+ * point first and skips every subtree that cannot hold a closer lot than
+ * the k found so far, so it visits O(log n) lots when most of them are
+ * accepted. Lots that fail the filter are passed over, not removed, so the
+ * tree is built once per reload and shared by every later generation.
+ */
+public final class LotIndex {
+
+    public static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    public static final LotIndex EMPTY = build(Collections.emptyList());
+
+    private final List<LotConfig> lots;
+    private final Map<String, Integer> slots;       // lower-case name -> slot
+    private final int[] tree;                       // slots in tree order; node i splits on axis (depth % 3)
+    private final double[] xyz;                     // unit vector of tree[i] at 3i..3i+2
+
+    private LotIndex(List<LotConfig> lots, Map<String, Integer> slots, int[] tree, double[] xyz) {
+        this.lots = lots;
+        this.slots = slots;
+        this.tree = tree;
+        this.xyz = xyz;
+    }
+
+    /** Later lots with the name of an earlier one are left out. */
+    public static LotIndex build(List<LotConfig> configs) {
+        List<LotConfig> lots = new ArrayList<>(configs.size());
+        Map<String, Integer> slots = new HashMap<>(configs.size() * 2);
+        for (LotConfig lc : configs) {
+            if (slots.putIfAbsent(lc.getName().toLowerCase(), lots.size()) == null) lots.add(lc);
+        }
+        int n = lots.size();
+        int[] tree = new int[n];
+        double[] points = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            tree[i] = i;
+            toUnit(lots.get(i).getLatitude(), lots.get(i).getLongitude(), points, 3 * i);
+        }
+        split(tree, points, 0, n, 0);
+        double[] xyz = new double[3 * n];
+        for (int i = 0; i < n; i++) System.arraycopy(points, 3 * tree[i], xyz, 3 * i, 3);
+        return new LotIndex(Collections.unmodifiableList(lots), slots, tree, xyz);
+    }
+
+    public List<LotConfig> getLots() { return lots; }
+    public int size()                { return lots.size(); }
+
+    /** @return the slot of the lot named name (case-insensitive), or -1 */
+    public int slot(String name) {
+        Integer slot = name == null ? null : slots.get(name.trim().toLowerCase());
+        return slot == null ? -1 : slot;
+    }
+
+    /** @return the lot named name (case-insensitive), or null */
+    public LotConfig find(String name) {
+        int slot = slot(name);
+        return slot < 0 ? null : lots.get(slot);
+    }
+
+    /** Rough heap size. */
+    public long estimatedBytes() {
+        return 4L * tree.length + 8L * xyz.length + 160L * lots.size();
+    }
+
+    /**
+     * @return up to k lots accepted by accept (given the slot), nearest to
+     *         latitude, longitude first
+     */
+    public Neighbors nearest(double latitude, double longitude, int k, IntPredicate accept) {
+        Neighbors out = new Neighbors(Math.max(0, Math.min(k, tree.length)));
+        if (out.capacity == 0) return out;
+        double[] q = new double[3];
+        toUnit(latitude, longitude, q, 0);
+        search(0, tree.length, 0, q, accept, out);
+        return out;
+    }
+
+    private void search(int from, int to, int axis, double[] q, IntPredicate accept, Neighbors out) {
+        if (from >= to) return;
+        int mid = (from + to) >>> 1;
+        double dx = q[0] - xyz[3 * mid], dy = q[1] - xyz[3 * mid + 1], dz = q[2] - xyz[3 * mid + 2];
+        double d2 = dx * dx + dy * dy + dz * dz;
+        if (out.beats(tree[mid], d2) && accept.test(tree[mid])) out.offer(tree[mid], d2);
+
+        double diff = q[axis] - xyz[3 * mid + axis];
+        int next = axis == 2 ? 0 : axis + 1;
+        if (diff < 0) {
+            search(from, mid, next, q, accept, out);
+            if (diff * diff <= out.worst()) search(mid + 1, to, next, q, accept, out);
+        } else {
+            search(mid + 1, to, next, q, accept, out);
+            if (diff * diff <= out.worst()) search(from, mid, next, q, accept, out);
+        }
+    }
+
+    // Orders slots[from, to) so that the median on axis sits at the middle, then recurses into both halves.
+    private static void split(int[] slots, double[] points, int from, int to, int axis) {
+        if (to - from <= 1) return;
+        int mid = (from + to) >>> 1;
+        select(slots, points, from, to - 1, mid, axis);
+        int next = axis == 2 ? 0 : axis + 1;
+        split(slots, points, from, mid, next);
+        split(slots, points, mid + 1, to, next);
+    }
+
+    // Quickselect: puts the element of rank k on axis at k, smaller ones before it and larger ones after.
+    private static void select(int[] slots, double[] points, int lo, int hi, int k, int axis) {
+        while (lo < hi) {
+            double pivot = points[3 * slots[(lo + hi) >>> 1] + axis];
+            int i = lo, j = hi;
+            while (i <= j) {
+                while (points[3 * slots[i] + axis] < pivot) i++;
+                while (points[3 * slots[j] + axis] > pivot) j--;
+                if (i <= j) {
+                    int t = slots[i]; slots[i] = slots[j]; slots[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) hi = j;
+            else if (k >= i) lo = i;
+            else return;
+        }
+    }
+
+    private static void toUnit(double latitude, double longitude, double[] out, int at) {
+        double lat = Math.toRadians(latitude), lon = Math.toRadians(longitude);
+        double c = Math.cos(lat);
+        out[at]     = c * Math.cos(lon);
+        out[at + 1] = c * Math.sin(lon);
+        out[at + 2] = Math.sin(lat);
+    }
+
+    /** Result of nearest: slots and great-circle distances, nearest first. */
+    public static final class Neighbors {
+
+        private final int capacity;
+        private final int[] slots;
+        private final double[] chords;      // squared straight-line distance on the unit sphere
+        private int size;
+
+        Neighbors(int capacity) {
+            this.capacity = capacity;
+            this.slots = new int[capacity];
+            this.chords = new double[capacity];
+        }
+
+        public int size()       { return size; }
+        public int slot(int i)  { return slots[i]; }
+
+        /** @return the great-circle distance of the i-th lot in meters */
+        public double meters(int i) {
+            return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(chords[i]) / 2));
+        }
+
+        double worst() {
+            return size < capacity ? Double.POSITIVE_INFINITY : chords[size - 1];
+        }
+
+        // Ties on distance go to the lower slot, so a lot as far as the k-th can still displace it.
+        boolean beats(int slot, double chord) {
+            return size < capacity || chord < chords[size - 1] || chord == chords[size - 1] && slot < slots[size - 1];
+        }
+
+        // Insertion into the sorted arrays; k is small.
+        void offer(int slot, double chord) {
+            int i = size < capacity ? size++ : size - 1;
+            while (i > 0 && (chords[i - 1] > chord || chords[i - 1] == chord && slots[i - 1] > slot)) {
+                chords[i] = chords[i - 1];
+                slots[i] = slots[i - 1];
+                i--;
+            }
+            chords[i] = chord;
+            slots[i] = slot;
+        }
+    }
+}
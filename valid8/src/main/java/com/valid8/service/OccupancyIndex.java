@@ -0,0 +1,218 @@
+package com.valid8.service;
+
+import com.valid8.model.RecordStore;
+
+import java.util.*;
+
+
+/**
+ * Occupancy over time per lot: the entry and exit times of its sessions in
+ * sorted arrays with prefix sums, so the occupancy at t and its integral
+ * up to t are each a couple of binary searches. Sessions without an entry
+ * time are left out; an exit before its entry counts as a zero-length stay.
+ */
+public final class OccupancyIndex {
+
+    private static final int COMPACT_MIN = 4096;
+    private static final long[] NO_TIMES = new long[0];
+    private static final Events NONE = new Events(NO_TIMES);
+
+    public static final OccupancyIndex EMPTY = new OccupancyIndex(Collections.emptyMap());
+
+    private final Map<String, Lot> byLot; // lower-case lot name
+
+    private OccupancyIndex(Map<String, Lot> byLot) {
+        this.byLot = byLot;
+    }
+
+    public static OccupancyIndex build(RecordStore records) {
+        return EMPTY.withChanges(records, 0, Collections.emptyList());
+    }
+
+    /**
+     * Returns an index that also covers records[from..] and the exits of
+     * the earlier sessions at the closed positions.
+     */
+    public OccupancyIndex withChanges(RecordStore records, int from, Collection<Integer> closed) {
+        String[] lotKeys = new String[records.lotIdCount()];
+        Map<String, LongList> entries = new HashMap<>();
+        Map<String, LongList> exits = new HashMap<>();
+        for (int pos = from; pos < records.size(); pos++) {
+            long entry = records.entryKey(pos);
+            if (entry == RecordStore.NO_TIME) continue;
+            String key = lotKey(records, pos, lotKeys);
+            entries.computeIfAbsent(key, k -> new LongList()).add(entry);
+            if (!records.isStillInLot(pos)) {
+                exits.computeIfAbsent(key, k -> new LongList()).add(Math.max(entry, records.exitKey(pos)));
+            }
+        }
+        for (int pos : closed) {
+            long entry = records.entryKey(pos);
+            if (entry == RecordStore.NO_TIME || records.isStillInLot(pos)) continue;
+            exits.computeIfAbsent(lotKey(records, pos, lotKeys), k -> new LongList())
+                .add(Math.max(entry, records.exitKey(pos)));
+        }
+        if (entries.isEmpty() && exits.isEmpty()) return this;
+
+        Map<String, Lot> lots = new HashMap<>(byLot);
+        Set<String> touched = new HashSet<>(entries.keySet());
+        touched.addAll(exits.keySet());
+        for (String key : touched) {
+            Lot cur = lots.getOrDefault(key, Lot.EMPTY);
+            lots.put(key, cur.plus(sorted(entries.get(key)), sorted(exits.get(key)), from == 0));
+        }
+        return new OccupancyIndex(Collections.unmodifiableMap(lots));
+    }
+
+    /** Rough heap size: a time and a prefix sum per event. */
+    public long estimatedBytes() {
+        long events = 0;
+        for (Lot lot : byLot.values()) {
+            events += lot.entries.size() + lot.exits.size() + lot.newEntries.size() + lot.newExits.size();
+        }
+        return 16 * events;
+    }
+
+    /** @return the occupancy of a lot (case-insensitive), or null if it has no sessions */
+    public Lot lot(String name) {
+        return byLot.get(name.toLowerCase());
+    }
+
+    private static String lotKey(RecordStore records, int pos, String[] lotKeys) {
+        int lot = records.lotId(pos);
+        if (lotKeys[lot] == null) lotKeys[lot] = records.lotName(lot).toLowerCase();
+        return lotKeys[lot];
+    }
+
+    private static long[] sorted(LongList list) {
+        if (list == null) return NO_TIMES;
+        long[] a = Arrays.copyOf(list.values, list.size);
+        Arrays.sort(a);
+        return a;
+    }
+
+
+    /** Entry and exit events of one lot. Times are RecordStore keys (epoch seconds). */
+    public static final class Lot {
+
+        static final Lot EMPTY = new Lot(NONE, NONE, NONE, NONE);
+
+        private final Events entries, exits;           // base
+        private final Events newEntries, newExits;     // delta since the base was built
+
+        private Lot(Events entries, Events exits, Events newEntries, Events newExits) {
+            this.entries = entries;
+            this.exits = exits;
+            this.newEntries = newEntries;
+            this.newExits = newExits;
+        }
+
+        Lot plus(long[] addedEntries, long[] addedExits, boolean intoBase) {
+            if (intoBase) {
+                return new Lot(entries.merge(addedEntries), exits.merge(addedExits), newEntries, newExits);
+            }
+            Events de = newEntries.merge(addedEntries), dx = newExits.merge(addedExits);
+            int delta = de.size() + dx.size();
+            if (delta > Math.max(COMPACT_MIN, (entries.size() + exits.size()) / 8)) {
+                return new Lot(entries.merge(de.times), exits.merge(dx.times), NONE, NONE);
+            }
+            return new Lot(entries, exits, de, dx);
+        }
+
+        /** Cars in the lot at instant t: entered at or before t and not yet left. */
+        public int at(long t) {
+            return entries.upTo(t) + newEntries.upTo(t) - exits.upTo(t) - newExits.upTo(t);
+        }
+
+        /** Time-weighted mean occupancy over [from, to). */
+        public double average(long from, long to) {
+            if (to <= from) return at(from);
+            return (double) (area(to) - area(from)) / (to - from);
+        }
+
+        /** Sessions that started in [from, to). */
+        public int entered(long from, long to) {
+            return entries.before(to) + newEntries.before(to) - entries.before(from) - newEntries.before(from);
+        }
+
+        /** Sessions that ended in [from, to). */
+        public int exited(long from, long to) {
+            return exits.before(to) + newExits.before(to) - exits.before(from) - newExits.before(from);
+        }
+
+        /** @return the earliest entry time, or NO_TIME if there is none */
+        public long firstEvent() {
+            long a = entries.first(), b = newEntries.first();
+            if (a == RecordStore.NO_TIME) return b;
+            return b == RecordStore.NO_TIME ? a : Math.min(a, b);
+        }
+
+        /** @return the latest entry or exit time, or NO_TIME if there is none */
+        public long lastEvent() {
+            return Math.max(Math.max(entries.last(), newEntries.last()), Math.max(exits.last(), newExits.last()));
+        }
+
+        // Car-seconds of occupancy from the first event up to t.
+        private long area(long t) {
+            int e = entries.upTo(t), ne = newEntries.upTo(t), x = exits.upTo(t), nx = newExits.upTo(t);
+            long in = (long) (e + ne - x - nx) * t;
+            return in - (entries.sum(e) + newEntries.sum(ne) - exits.sum(x) - newExits.sum(nx));
+        }
+    }
+
+    /** Sorted event times with prefix sums: sums[i] is the sum of times[0..i). */
+    private static final class Events {
+
+        final long[] times;
+        final long[] sums;
+
+        Events(long[] times) {
+            this.times = times;
+            this.sums = new long[times.length + 1];
+            for (int i = 0; i < times.length; i++) sums[i + 1] = sums[i] + times[i];
+        }
+
+        int size() { return times.length; }
+
+        Events merge(long[] more) {
+            if (more.length == 0) return this;
+            if (times.length == 0) return new Events(more);
+            long[] out = new long[times.length + more.length];
+            int i = 0, j = 0, w = 0;
+            while (i < times.length && j < more.length) out[w++] = times[i] <= more[j] ? times[i++] : more[j++];
+            while (i < times.length) out[w++] = times[i++];
+            while (j < more.length) out[w++] = more[j++];
+            return new Events(out);
+        }
+
+        /** Number of times <= t. */
+        int upTo(long t) {
+            return t == Long.MAX_VALUE ? times.length : before(t + 1);
+        }
+
+        /** Number of times < t. */
+        int before(long t) {
+            int lo = 0, hi = times.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] < t) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+
+        long sum(int count) { return sums[count]; }
+        long first()        { return times.length == 0 ? RecordStore.NO_TIME : times[0]; }
+        long last()         { return times.length == 0 ? RecordStore.NO_TIME : times[times.length - 1]; }
+    }
+
+    private static final class LongList {
+
+        long[] values = new long[16];
+        int size;
+
+        void add(long v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.valid8.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Flags open sessions as overstays when their deadline passes on the wall
+ * clock, checking every check-ms. Each check only looks at the head of the
+ * service's deadline queue, so it is cheap while nothing expires. With
+ * valid8.overstay.clock=feed the clock only moves with gate rows and this
+ * thread is not started.
+ */
+@Component
+public class OverstayMonitor {
+
+    @Autowired
+    private Valid8Service service;
+
+    @Value("${valid8.overstay.check-ms:1000}")
+    private long checkMs;
+
+    private Thread thread;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!service.usesWallClock()) return;
+        running = true;
+        thread = new Thread(this::run, "valid8-overstay-monitor");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                Thread.sleep(checkMs);
+                service.expireOverstays();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.err.println("[OverstayMonitor] Check error: " + e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (thread != null) thread.interrupt();
+    }
+}
@@ -0,0 +1,108 @@
+package com.valid8.service;
+
+import com.valid8.model.RecordStore;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+
+/**
+ * Open sessions that can still overstay, as a binary min-heap of
+ * (deadline, position) kept in two primitive arrays. Draining pops only
+ * the sessions whose deadline has passed, so checking for overstays costs
+ * O(expirations * log n) however many cars are parked.
+ *
+ * Sessions that close are not removed; drain() skips entries whose
+ * session is no longer open. Not thread-safe: used under the service
+ * monitor like the open-session map.
+ */
+final class OverstayQueue {
+
+    private long[] deadlines = new long[64];
+    private int[] positions = new int[64];
+    private int size;
+
+    /** Replaces the contents with every open session of records that is not yet past its deadline. */
+    void rebuild(RecordStore records) {
+        size = 0;
+        long clock = records.clock();
+        for (int pos = 0; pos < records.size(); pos++) {
+            if (!records.isStillInLot(pos)) continue;
+            long deadline = records.deadline(pos);
+            if (deadline == RecordStore.NO_TIME || clock > deadline) continue;
+            if (size == deadlines.length) grow();
+            deadlines[size] = deadline;
+            positions[size++] = pos;
+        }
+        for (int i = (size >>> 1) - 1; i >= 0; i--) siftDown(i);
+    }
+
+    void add(long deadline, int pos) {
+        if (size == deadlines.length) grow();
+        deadlines[size] = deadline;
+        positions[size] = pos;
+        siftUp(size++);
+    }
+
+    /** @return the earliest deadline queued, or NO_TIME if none */
+    long nextDeadline() {
+        return size == 0 ? RecordStore.NO_TIME : deadlines[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes every entry with a deadline before clock and passes on the
+     * positions whose session is still open in records.
+     */
+    void drain(RecordStore records, long clock, IntConsumer expired) {
+        while (size > 0 && deadlines[0] < clock) {
+            int pos = positions[0];
+            long deadline = deadlines[0];
+            size--;
+            deadlines[0] = deadlines[size];
+            positions[0] = positions[size];
+            siftDown(0);
+            if (pos < records.size() && records.isStillInLot(pos) && records.deadline(pos) == deadline) {
+                expired.accept(pos);
+            }
+        }
+    }
+
+    private void siftUp(int i) {
+        long d = deadlines[i];
+        int p = positions[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (deadlines[parent] <= d) break;
+            deadlines[i] = deadlines[parent];
+            positions[i] = positions[parent];
+            i = parent;
+        }
+        deadlines[i] = d;
+        positions[i] = p;
+    }
+
+    private void siftDown(int i) {
+        long d = deadlines[i];
+        int p = positions[i];
+        int half = size >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && deadlines[child + 1] < deadlines[child]) child++;
+            if (deadlines[child] >= d) break;
+            deadlines[i] = deadlines[child];
+            positions[i] = positions[child];
+            i = child;
+        }
+        deadlines[i] = d;
+        positions[i] = p;
+    }
+
+    private void grow() {
+        deadlines = Arrays.copyOf(deadlines, deadlines.length * 2);
+        positions = Arrays.copyOf(positions, positions.length * 2);
+    }
+}
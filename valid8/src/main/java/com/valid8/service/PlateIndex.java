@@ -0,0 +1,153 @@
+package com.valid8.service;
+
+import com.valid8.model.RecordStore;
+
+import java.util.*;
+
+
+/**
+ * Plate lookups for one dataset generation: the record positions of a
+ * plate's sessions, and prefix search over every known plate (from
+ * sessions and registrations) in sorted order.
+ */
+public final class PlateIndex {
+
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final int COMPACT_MIN = 4096;
+
+    public static final PlateIndex EMPTY = build(RecordStore.EMPTY, Collections.emptySet());
+
+    private final String[] plates;              // sorted, distinct
+    private final Map<String, Integer> slots;   // plate -> index into plates
+    private final int[] offsets;                // sessions of plates[i]: positions[offsets[i]..offsets[i+1])
+    private final int[] positions;
+    private final Set<String> registered;       // registration plates, kept for rebuilds
+
+    private final Map<String, int[]> delta;     // positions appended since the base was built
+    private final String[] deltaPlates;         // sorted delta plates missing from the base
+    private final int deltaRows;
+
+    private PlateIndex(String[] plates, Map<String, Integer> slots, int[] offsets, int[] positions,
+                       Set<String> registered, Map<String, int[]> delta, String[] deltaPlates, int deltaRows) {
+        this.plates = plates;
+        this.slots = slots;
+        this.offsets = offsets;
+        this.positions = positions;
+        this.registered = registered;
+        this.delta = delta;
+        this.deltaPlates = deltaPlates;
+        this.deltaRows = deltaRows;
+    }
+
+    public static PlateIndex build(RecordStore records, Set<String> registeredPlates) {
+        // Count by plate id so the string map is touched once per plate rather than per row
+        int[] perId = new int[records.plateIdCount()];
+        for (int pos = 0; pos < records.size(); pos++) perId[records.plateId(pos)]++;
+        Map<String, Integer> counts = new HashMap<>(Math.max(16, (registeredPlates.size() + perId.length) * 2));
+        for (String plate : registeredPlates) counts.put(plate, 0);
+        for (int id = 0; id < perId.length; id++) {
+            if (perId[id] > 0) counts.merge(records.plateName(id), perId[id], Integer::sum);
+        }
+
+        String[] sorted = counts.keySet().toArray(new String[0]);
+        Arrays.sort(sorted);
+        int[] offsets = new int[sorted.length + 1];
+        for (int i = 0; i < sorted.length; i++) {
+            offsets[i + 1] = offsets[i] + counts.get(sorted[i]);
+            counts.put(sorted[i], i); // the map now holds slots
+        }
+        int[] fill = new int[perId.length];
+        for (int id = 0; id < perId.length; id++) {
+            if (perId[id] > 0) fill[id] = offsets[counts.get(records.plateName(id))];
+        }
+        int[] positions = new int[records.size()];
+        for (int pos = 0; pos < records.size(); pos++) {
+            positions[fill[records.plateId(pos)]++] = pos;
+        }
+        return new PlateIndex(sorted, counts, offsets, positions, registeredPlates,
+            Collections.emptyMap(), new String[0], 0);
+    }
+
+    /**
+     * Returns an index that also covers records[from..]. Closed sessions
+     * keep their positions, so only appended rows need adding.
+     */
+    public PlateIndex withAdded(RecordStore records, int from) {
+        int added = records.size() - from;
+        if (added <= 0) return this;
+        if (deltaRows + added > Math.max(COMPACT_MIN, positions.length / 8)) {
+            return build(records, registered);
+        }
+        Map<String, int[]> d = new HashMap<>(delta);
+        TreeSet<String> fresh = new TreeSet<>();
+        for (int pos = from; pos < records.size(); pos++) {
+            String plate = records.plate(pos);
+            int[] cur = d.getOrDefault(plate, NO_POSITIONS);
+            int[] next = Arrays.copyOf(cur, cur.length + 1);
+            next[cur.length] = pos;
+            d.put(plate, next);
+            if (cur.length == 0 && !slots.containsKey(plate)) fresh.add(plate);
+        }
+        String[] dp = deltaPlates;
+        if (!fresh.isEmpty()) {
+            fresh.addAll(Arrays.asList(deltaPlates));
+            dp = fresh.toArray(new String[0]);
+        }
+        return new PlateIndex(plates, slots, offsets, positions, registered, d, dp, deltaRows + added);
+    }
+
+    /** Rough heap size; the plate strings themselves belong to the record store. */
+    public long estimatedBytes() {
+        long bytes = 4L * (plates.length + offsets.length + positions.length + deltaPlates.length + deltaRows);
+        return bytes + 52L * (slots.size() + registered.size()) + 68L * delta.size();
+    }
+
+    public boolean contains(String plate) {
+        return slots.containsKey(plate) || delta.containsKey(plate);
+    }
+
+    /** Record positions of the plate's sessions, ascending. */
+    public int[] sessions(String plate) {
+        Integer slot = slots.get(plate);
+        int[] extra = delta.getOrDefault(plate, NO_POSITIONS);
+        if (slot == null) return extra;
+        int from = offsets[slot], to = offsets[slot + 1];
+        int[] out = new int[to - from + extra.length];
+        System.arraycopy(positions, from, out, 0, to - from);
+        System.arraycopy(extra, 0, out, to - from, extra.length);
+        return out;
+    }
+
+    /**
+     * Up to limit known plates starting with prefix, in order, strictly
+     * after the given plate when after is not null.
+     */
+    public List<String> prefix(String prefix, String after, int limit) {
+        String start = after != null && after.compareTo(prefix) >= 0 ? after + '\0' : prefix;
+        int i = lowerBound(plates, start);
+        int j = lowerBound(deltaPlates, start);
+        List<String> out = new ArrayList<>(Math.min(limit, 64));
+        while (out.size() < limit) {
+            String a = i < plates.length && plates[i].startsWith(prefix) ? plates[i] : null;
+            String b = j < deltaPlates.length && deltaPlates[j].startsWith(prefix) ? deltaPlates[j] : null;
+            if (a == null && b == null) break;
+            if (b == null || (a != null && a.compareTo(b) < 0)) {
+                out.add(a);
+                i++;
+            } else {
+                out.add(b);
+                j++;
+            }
+        }
+        return out;
+    }
+
+    private static int lowerBound(String[] a, String key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid].compareTo(key) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
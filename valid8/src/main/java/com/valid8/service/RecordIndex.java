@@ -0,0 +1,431 @@
+package com.valid8.service;
+
+import com.valid8.model.RecordStore;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.IntPredicate;
+
+
+/**
+ * Positions of the records matching one list (violations or unregistered),
+ * sorted by entry time and then by position, overall and per lot. Queries
+ * binary-search the entry time range and the cursor, then scan forward
+ * applying the remaining filters until the page is full; a plate prefix
+ * that matches few sessions is looked up in the PlateIndex instead.
+ *
+ * Incremental updates only append records or replace one in place, keeping
+ * its entry time, but a replaced record can join or leave the list (an
+ * open session that overstays becomes a violation). Such changes go into
+ * a delta of added positions and a list of positions removed from the base.
+ */
+public final class RecordIndex {
+
+    private static final int COMPACT_MIN = 4096;
+    private static final int PREFIX_PAGE = 256;
+    private static final int[] NO_POSITIONS = new int[0];
+    private static final Sorted NONE = new Sorted(NO_POSITIONS, new long[0]);
+
+    public static final RecordIndex EMPTY = new RecordIndex(Part.EMPTY, Part.EMPTY, NO_POSITIONS);
+
+    private final Part base;
+    private final Part delta;
+    private final int[] removed;        // base positions no longer in the list, ascending
+
+    private RecordIndex(Part base, Part delta, int[] removed) {
+        this.base = base;
+        this.delta = delta;
+        this.removed = removed;
+    }
+
+    public int size() {
+        return base.all.pos.length - removed.length + delta.all.pos.length;
+    }
+
+    /** Rough heap size: a position and an entry key per row, overall and in its lot. */
+    public long estimatedBytes() {
+        return base.estimatedBytes() + delta.estimatedBytes() + 4L * removed.length;
+    }
+
+    public static RecordIndex build(RecordStore records, IntPredicate include) {
+        return EMPTY.withAdded(records, 0, include);
+    }
+
+    /** Returns a new index that also covers the positions from.. matching include. */
+    public RecordIndex withAdded(RecordStore records, int from, IntPredicate include) {
+        return withChanges(records, from, include, Collections.emptyList());
+    }
+
+    /**
+     * Returns a new index that also covers the positions from.. matching
+     * include, and in which the earlier positions in changed are added or
+     * dropped according to include.
+     */
+    public RecordIndex withChanges(RecordStore records, int from, IntPredicate include,
+                                   Collection<Integer> changed) {
+        String[] lotKeys = new String[records.lotIdCount()];
+        List<Integer> added = new ArrayList<>();
+        Set<Integer> dropDelta = new HashSet<>();
+        Set<Integer> dropBase = new HashSet<>();
+        Set<Integer> restoreBase = new HashSet<>();
+        for (int i : changed) {
+            if (i >= from) continue;
+            long key = records.entryKey(i);
+            boolean inBase = base.all.contains(key, i);
+            boolean inDelta = !inBase && delta.all.contains(key, i);
+            boolean member = inBase ? Arrays.binarySearch(removed, i) < 0 : inDelta;
+            boolean want = include.test(i);
+            if (member == want) continue;
+            if (want) {
+                if (inBase) restoreBase.add(i);
+                else added.add(i);
+            } else if (inDelta) {
+                dropDelta.add(i);
+            } else {
+                dropBase.add(i);
+            }
+        }
+        for (int i = from; i < records.size(); i++) {
+            if (include.test(i)) added.add(i);
+        }
+        if (added.isEmpty() && dropDelta.isEmpty() && dropBase.isEmpty() && restoreBase.isEmpty()) return this;
+
+        Part d = delta.without(records, lotKeys, dropDelta).plus(records, lotKeys, added);
+        int[] r = removed;
+        if (!dropBase.isEmpty() || !restoreBase.isEmpty()) {
+            Set<Integer> all = new TreeSet<>(dropBase);
+            for (int pos : removed) if (!restoreBase.contains(pos)) all.add(pos);
+            r = all.stream().mapToInt(Integer::intValue).toArray();
+        }
+        if (from == 0 || d.all.pos.length + r.length > Math.max(COMPACT_MIN, base.all.pos.length / 8)) {
+            Set<Integer> gone = new HashSet<>();
+            for (int pos : r) gone.add(pos);
+            return new RecordIndex(base.without(records, lotKeys, gone).merge(d), Part.EMPTY, NO_POSITIONS);
+        }
+        return new RecordIndex(base, d, r);
+    }
+
+    private static String lotKey(RecordStore records, int pos, String[] lotKeys) {
+        int lot = records.lotId(pos);
+        if (lotKeys[lot] == null) lotKeys[lot] = records.lotName(lot).toLowerCase();
+        return lotKeys[lot];
+    }
+
+    private static int[] toSortedArray(Collection<Integer> positions) {
+        int[] a = positions.stream().mapToInt(Integer::intValue).toArray();
+        Arrays.sort(a);
+        return a;
+    }
+
+    /**
+     * Returns the positions of the next page of records matching q, and the
+     * cursor for the page after it (null when there is none).
+     */
+    public Page query(RecordStore records, PlateIndex plates, ListQuery q) {
+        Scan scan = new Scan(records, plates, q);
+        int limit = q.getLimit();
+        int[] out = new int[limit];
+        int n = 0;
+        while (n < limit && scan.hasNext()) out[n++] = scan.nextInt();
+        String next = null;
+        if (n == limit && scan.inRange()) {
+            next = new ListQuery.Cursor(scan.lastEntry, scan.lastPos).toString();
+        }
+        return new Page(Arrays.copyOf(out, n), next);
+    }
+
+    /**
+     * Positions of every record matching q from its cursor on, ignoring the
+     * limit. They are found as the iterator is read, so exporting a whole
+     * list takes no memory per row.
+     */
+    public PrimitiveIterator.OfInt scan(RecordStore records, PlateIndex plates, ListQuery q) {
+        return new Scan(records, plates, q);
+    }
+
+    private static boolean matches(RecordStore records, int pos, ListQuery q) {
+        switch (q.getStatus()) {
+            case IN_LOT: if (!records.isStillInLot(pos)) return false; break;
+            case LEFT:   if (records.isStillInLot(pos)) return false; break;
+            default:     break;
+        }
+        return q.getPlatePrefix() == null || records.plate(pos).startsWith(q.getPlatePrefix());
+    }
+
+    // Records without an entry time sort first.
+    static long key(LocalDateTime t) {
+        return RecordStore.toKey(t);
+    }
+
+
+    /**
+     * Walks the entry time range of a query from its cursor, in either
+     * direction, merging the base and the delta (or the sessions of the
+     * plates matching its prefix) in (entry, position) order.
+     */
+    private final class Scan implements PrimitiveIterator.OfInt {
+
+        final RecordStore records;
+        final ListQuery q;
+        final int step;
+        final Run[] runs;
+        Run next;
+        long lastEntry;
+        int lastPos;
+
+        Scan(RecordStore records, PlateIndex plates, ListQuery q) {
+            this.records = records;
+            this.q = q;
+            this.step = q.isDescending() ? -1 : 1;
+            String lot = q.getLot() == null ? null : q.getLot().toLowerCase();
+            Sorted b = base.lot(lot), d = delta.lot(lot);
+            Run[] both = {new Run(b, true), new Run(d, false)};
+            Sorted found = null;
+            if (q.getPlatePrefix() != null && plates != null) {
+                int range = (both[0].hi - both[0].lo) + (both[1].hi - both[1].lo);
+                found = byPrefix(plates, b, d, range / 8);
+            }
+            this.runs = found != null ? new Run[] {new Run(found, false)} : both;
+        }
+
+        /**
+         * Members of b or d whose plate starts with the prefix, or null if
+         * there are more than budget sessions of such plates to look at.
+         */
+        private Sorted byPrefix(PlateIndex plates, Sorted b, Sorted d, int budget) {
+            List<Integer> found = new ArrayList<>();
+            int seen = 0;
+            String after = null;
+            while (true) {
+                List<String> page = plates.prefix(q.getPlatePrefix(), after, PREFIX_PAGE);
+                for (String plate : page) {
+                    for (int pos : plates.sessions(plate)) {
+                        if (++seen > budget) return null;
+                        long key = records.entryKey(pos);
+                        if (b.contains(key, pos) && Arrays.binarySearch(removed, pos) < 0 || d.contains(key, pos)) {
+                            found.add(pos);
+                        }
+                    }
+                }
+                if (page.size() < PREFIX_PAGE) return Sorted.of(records, toSortedArray(found));
+                after = page.get(page.size() - 1);
+            }
+        }
+
+        boolean inRange() {
+            for (Run r : runs) if (r.inRange()) return true;
+            return false;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next != null) return true;
+            while (true) {
+                Run best = null;
+                for (Run r : runs) {
+                    if (r.inRange() && (best == null || r.before(best) == (step > 0))) best = r;
+                }
+                if (best == null) return false;
+                int pos = best.s.pos[best.i];
+                if ((!best.filtered || Arrays.binarySearch(removed, pos) < 0) && matches(records, pos, q)) {
+                    next = best;
+                    return true;
+                }
+                best.i += step;
+            }
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Run r = next;
+            next = null;
+            lastEntry = r.s.entry[r.i];
+            lastPos = r.s.pos[r.i];
+            r.i += step;
+            return lastPos;
+        }
+
+        /** One sorted array, restricted to the query's entry time range. */
+        private final class Run {
+
+            final Sorted s;
+            final boolean filtered;     // positions may be in removed
+            final int lo, hi;
+            int i;
+
+            Run(Sorted s, boolean filtered) {
+                this.s = s;
+                this.filtered = filtered && removed.length > 0;
+                this.lo = q.getFrom() == null ? 0 : s.lowerBound(key(q.getFrom()), Integer.MIN_VALUE);
+                this.hi = q.getTo() == null ? s.pos.length : s.lowerBound(key(q.getTo()) + 1, Integer.MIN_VALUE);
+                ListQuery.Cursor c = q.getAfter();
+                if (step > 0) {
+                    i = c == null ? lo : Math.max(lo, s.lowerBound(c.entryKey, c.position + 1));
+                } else {
+                    i = c == null ? hi - 1 : Math.min(hi, s.lowerBound(c.entryKey, c.position)) - 1;
+                }
+            }
+
+            boolean inRange() {
+                return i >= lo && i < hi;
+            }
+
+            // Whether this run's current key sorts before o's.
+            boolean before(Run o) {
+                long a = s.entry[i], b = o.s.entry[o.i];
+                return a != b ? a < b : s.pos[i] < o.s.pos[o.i];
+            }
+        }
+    }
+
+    public static final class Page {
+
+        private final int[] positions;
+        private final String nextCursor;
+
+        Page(int[] positions, String nextCursor) {
+            this.positions = positions;
+            this.nextCursor = nextCursor;
+        }
+
+        public int[] getPositions()   { return positions; }
+        public String getNextCursor() { return nextCursor; }
+    }
+
+    /** Sorted positions overall and per lot (lower-case lot name). */
+    private static final class Part {
+
+        static final Part EMPTY = new Part(NONE, Collections.emptyMap());
+
+        final Sorted all;
+        final Map<String, Sorted> byLot;
+
+        Part(Sorted all, Map<String, Sorted> byLot) {
+            this.all = all;
+            this.byLot = byLot;
+        }
+
+        Sorted lot(String key) {
+            return key == null ? all : byLot.getOrDefault(key, NONE);
+        }
+
+        long estimatedBytes() {
+            long rows = all.pos.length;
+            for (Sorted s : byLot.values()) rows += s.pos.length;
+            return 12 * rows;
+        }
+
+        Part plus(RecordStore records, String[] lotKeys, List<Integer> positions) {
+            if (positions.isEmpty()) return this;
+            Map<String, List<Integer>> perLot = new HashMap<>();
+            for (int pos : positions) perLot.computeIfAbsent(lotKey(records, pos, lotKeys), k -> new ArrayList<>()).add(pos);
+            Map<String, Sorted> lots = new HashMap<>(byLot);
+            for (Map.Entry<String, List<Integer>> e : perLot.entrySet()) {
+                lots.merge(e.getKey(), Sorted.of(records, toSortedArray(e.getValue())), Sorted::merge);
+            }
+            return new Part(all.merge(Sorted.of(records, toSortedArray(positions))), Collections.unmodifiableMap(lots));
+        }
+
+        Part without(RecordStore records, String[] lotKeys, Set<Integer> positions) {
+            if (positions.isEmpty()) return this;
+            Map<String, Set<Integer>> perLot = new HashMap<>();
+            for (int pos : positions) perLot.computeIfAbsent(lotKey(records, pos, lotKeys), k -> new HashSet<>()).add(pos);
+            Map<String, Sorted> lots = new HashMap<>(byLot);
+            for (Map.Entry<String, Set<Integer>> e : perLot.entrySet()) {
+                Sorted s = lots.get(e.getKey());
+                if (s != null) lots.put(e.getKey(), s.without(e.getValue()));
+            }
+            return new Part(all.without(positions), Collections.unmodifiableMap(lots));
+        }
+
+        Part merge(Part o) {
+            if (o.all.pos.length == 0) return this;
+            Map<String, Sorted> lots = new HashMap<>(byLot);
+            for (Map.Entry<String, Sorted> e : o.byLot.entrySet()) lots.merge(e.getKey(), e.getValue(), Sorted::merge);
+            return new Part(all.merge(o.all), Collections.unmodifiableMap(lots));
+        }
+    }
+
+    /** Parallel arrays of positions and entry keys, ordered by (entry, position). */
+    private static final class Sorted {
+
+        final int[] pos;
+        final long[] entry;
+
+        Sorted(int[] pos, long[] entry) {
+            this.pos = pos;
+            this.entry = entry;
+        }
+
+        static Sorted of(RecordStore records, int[] positions) {
+            int n = positions.length;
+            long[] keys = new long[n];
+            boolean ordered = true;
+            for (int i = 0; i < n; i++) {
+                keys[i] = records.entryKey(positions[i]);
+                if (i > 0 && keys[i] < keys[i - 1]) ordered = false;
+            }
+            if (ordered) return new Sorted(positions, keys); // positions ascend already
+
+            Integer[] order = new Integer[n];
+            for (int i = 0; i < n; i++) order[i] = i;
+            Arrays.sort(order, (a, b) -> keys[a] != keys[b]
+                ? Long.compare(keys[a], keys[b])
+                : Integer.compare(positions[a], positions[b]));
+            int[] p = new int[n];
+            long[] k = new long[n];
+            for (int i = 0; i < n; i++) {
+                p[i] = positions[order[i]];
+                k[i] = keys[order[i]];
+            }
+            return new Sorted(p, k);
+        }
+
+        Sorted merge(Sorted o) {
+            if (o.pos.length == 0) return this;
+            if (pos.length == 0) return o;
+            int n = pos.length, m = o.pos.length;
+            int[] p = new int[n + m];
+            long[] k = new long[n + m];
+            int i = 0, j = 0, w = 0;
+            while (i < n && j < m) {
+                boolean left = entry[i] != o.entry[j] ? entry[i] < o.entry[j] : pos[i] < o.pos[j];
+                if (left) { p[w] = pos[i]; k[w++] = entry[i++]; }
+                else      { p[w] = o.pos[j]; k[w++] = o.entry[j++]; }
+            }
+            while (i < n) { p[w] = pos[i]; k[w++] = entry[i++]; }
+            while (j < m) { p[w] = o.pos[j]; k[w++] = o.entry[j++]; }
+            return new Sorted(p, k);
+        }
+
+        boolean contains(long entryKey, int position) {
+            int i = lowerBound(entryKey, position);
+            return i < pos.length && pos[i] == position;
+        }
+
+        Sorted without(Set<Integer> positions) {
+            if (positions.isEmpty()) return this;
+            int[] p = new int[pos.length];
+            long[] k = new long[pos.length];
+            int w = 0;
+            for (int i = 0; i < pos.length; i++) {
+                if (positions.contains(pos[i])) continue;
+                p[w] = pos[i];
+                k[w++] = entry[i];
+            }
+            return new Sorted(Arrays.copyOf(p, w), Arrays.copyOf(k, w));
+        }
+
+        /** First index whose (entry, position) is not less than the given key. */
+        int lowerBound(long entryKey, int position) {
+            int lo = 0, hi = pos.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                boolean less = entry[mid] != entryKey ? entry[mid] < entryKey : pos[mid] < position;
+                if (less) lo = mid + 1; else hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.valid8.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.valid8.model.PlateSuggestion;
+import com.valid8.model.RecordStore;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+
+/**
+ * Writes violation and unregistered rows straight from a RecordStore to a
+ * JsonGenerator, in the same shape Jackson gives ViolationItem and
+ * UnregisteredItem. Nothing is allocated per row: field names are
+ * pre-encoded, plates and lots come from the store's dictionaries, and
+ * timestamps are formatted into one reused char buffer, re-deriving the
+ * date part only when the day changes. Plate suggestions come from the
+ * snapshot's FuzzyPlateIndex, which remembers them per plate.
+ */
+public final class RecordJsonWriter {
+
+    private static final SerializableString PLATE    = new SerializedString("licensePlate");
+    private static final SerializableString LOT      = new SerializedString("lotName");
+    private static final SerializableString TIME_IN  = new SerializedString("timeIn");
+    private static final SerializableString TIME_OUT = new SerializedString("timeOut");
+    private static final SerializableString STATUS   = new SerializedString("status");
+    private static final SerializableString REASON   = new SerializedString("reason");
+    private static final SerializableString DURATION = new SerializedString("durationMinutes");
+    private static final SerializableString SUGGEST  = new SerializedString("suggestions");
+    private static final SerializableString DISTANCE = new SerializedString("distance");
+
+    private static final SerializableString NO_ENTRY = new SerializedString("—");
+    private static final SerializableString IN_LOT   = new SerializedString("Still In Lot");
+    private static final SerializableString LEFT     = new SerializedString("Left");
+
+    private static final long DAY = 86_400;
+
+    private final RecordStore records;
+    private final FuzzyPlateIndex fuzzy;
+    private final JsonGenerator gen;
+    private final boolean lines;
+    private final long now;                         // end of open sessions when the store has no clock
+    private final char[] time = "MM/dd/yyyy HH:mm".toCharArray();
+    private long timeDay = Long.MIN_VALUE;          // epoch day whose date is in time[0..10]
+    private int rows;
+
+    /**
+     * @param lines write each row as its own line (NDJSON) rather than as
+     *              elements of an array the caller opens and closes
+     */
+    public RecordJsonWriter(DatasetSnapshot snap, JsonGenerator gen, boolean lines) {
+        this.records = snap.getRecords();
+        this.fuzzy = snap.getFuzzyPlateIndex();
+        this.gen = gen;
+        this.lines = lines;
+        this.now = RecordStore.toKey(LocalDateTime.now());
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /** Writes the record at pos as a ViolationItem. */
+    public void writeViolation(int pos) throws IOException {
+        long entry = records.entryKey(pos);
+        gen.writeStartObject();
+        writeCommon(pos, entry);
+        gen.writeFieldName(STATUS);
+        gen.writeString(records.isStillInLot(pos) ? IN_LOT : LEFT);
+        gen.writeFieldName(REASON);
+        gen.writeString(records.violationReason(pos));
+        gen.writeFieldName(DURATION);
+        gen.writeNumber(entry == RecordStore.NO_TIME ? 0 : durationMinutes(pos, entry));
+        end();
+    }
+
+    /** Writes the record at pos as an UnregisteredItem. */
+    public void writeUnregistered(int pos) throws IOException {
+        gen.writeStartObject();
+        writeCommon(pos, records.entryKey(pos));
+        gen.writeFieldName(SUGGEST);
+        gen.writeStartArray();
+        for (PlateSuggestion s : fuzzy.suggest(records.plate(pos))) {
+            gen.writeStartObject();
+            gen.writeFieldName(PLATE);
+            gen.writeString(s.getLicensePlate());
+            gen.writeFieldName(LOT);
+            gen.writeString(s.getLotName());
+            gen.writeFieldName(DISTANCE);
+            gen.writeNumber(s.getDistance());
+            gen.writeEndObject();
+        }
+        gen.writeEndArray();
+        end();
+    }
+
+    private void writeCommon(int pos, long entry) throws IOException {
+        long exit = records.exitKey(pos);
+        gen.writeFieldName(PLATE);
+        gen.writeString(records.plate(pos));
+        gen.writeFieldName(LOT);
+        gen.writeString(records.lot(pos));
+        gen.writeFieldName(TIME_IN);
+        if (entry == RecordStore.NO_TIME) gen.writeString(NO_ENTRY);
+        else writeTime(entry);
+        gen.writeFieldName(TIME_OUT);
+        if (exit == RecordStore.NO_TIME) gen.writeString(IN_LOT);
+        else writeTime(exit);
+    }
+
+    private void end() throws IOException {
+        gen.writeEndObject();
+        if (lines) gen.writeRaw('\n');
+        rows++;
+    }
+
+    // Open sessions are measured up to the generation's clock, as the record views do.
+    private long durationMinutes(int pos, long entry) {
+        long end = records.exitKey(pos);
+        if (end == RecordStore.NO_TIME) end = records.clock() != RecordStore.NO_TIME ? records.clock() : now;
+        return (end - entry) / 60;
+    }
+
+    // MM/dd/yyyy HH:mm, as Valid8Service.DT_FMT
+    private void writeTime(long key) throws IOException {
+        long day = Math.floorDiv(key, DAY);
+        if (day != timeDay) {
+            writeDate(day);
+            timeDay = day;
+        }
+        int secondOfDay = (int) Math.floorMod(key, DAY);
+        two(11, secondOfDay / 3600);
+        two(14, secondOfDay / 60 % 60);
+        gen.writeString(time, 0, time.length);
+    }
+
+    // Proleptic Gregorian date of an epoch day, computed in place of LocalDate.ofEpochDay
+    private void writeDate(long epochDay) {
+        long z = epochDay + 719_468;                 // days since 0000-03-01
+        long era = Math.floorDiv(z, 146_097);
+        long doe = z - era * 146_097;
+        long yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365;
+        long doy = doe - (365 * yoe + yoe / 4 - yoe / 100);
+        long mp = (5 * doy + 2) / 153;               // month counted from March
+        int month = (int) (mp < 10 ? mp + 3 : mp - 9);
+        int year = (int) (yoe + era * 400 + (month <= 2 ? 1 : 0));
+        two(0, month);
+        two(3, (int) (doy - (153 * mp + 2) / 5 + 1));
+        two(6, year / 100);
+        two(8, year % 100);
+    }
+
+    private void two(int at, int value) {
+        time[at] = (char) ('0' + value / 10);
+        time[at + 1] = (char) ('0' + value % 10);
+    }
+}
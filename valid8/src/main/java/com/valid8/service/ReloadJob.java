@@ -0,0 +1,100 @@
+package com.valid8.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.function.LongSupplier;
+
+
+/**
+ * Status of one asynchronous reload, as served by /api/reload/{id}. The
+ * reload thread writes it while request threads read it, so every field it
+ * reports is volatile.
+ */
+public class ReloadJob {
+
+    public static final String RUNNING = "running";
+    public static final String DONE    = "done";
+    public static final String FAILED  = "failed";
+
+    private static final DateTimeFormatter DT_FMT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private final long id;
+    private final LocalDateTime submittedAt = LocalDateTime.now();
+    private final long startNanos = System.nanoTime();
+    private volatile String state = RUNNING;
+    private volatile String phase = "waiting";
+    private volatile LongSupplier rowsSource;
+    private volatile long rowsParsed;
+    private volatile int requests = 1;
+    private volatile long elapsedMs = -1;
+    private volatile LocalDateTime finishedAt;
+    private volatile Long version;
+    private volatile String error;
+
+    ReloadJob(long id) {
+        this.id = id;
+    }
+
+    /** Enters phase; rows parsed are read from rows until the next phase starts. */
+    void phase(String phase, LongSupplier rows) {
+        freezeRows();
+        this.rowsSource = rows;
+        this.phase = phase;
+    }
+
+    void phase(String phase) {
+        phase(phase, null);
+    }
+
+    void setRowsParsed(long rows) {
+        rowsSource = null;
+        rowsParsed = rows;
+    }
+
+    /** Counts another reload request served by this job. */
+    void join() {
+        requests++;
+    }
+
+    void finish(long version, String error) {
+        freezeRows();
+        this.version = version;
+        this.error = error;
+        this.elapsedMs = (System.nanoTime() - startNanos) / 1_000_000;
+        this.finishedAt = LocalDateTime.now();
+        this.phase = "finished";
+        this.state = error == null ? DONE : FAILED;
+    }
+
+    private void freezeRows() {
+        LongSupplier rows = rowsSource;
+        if (rows != null) rowsParsed = rows.getAsLong();
+        rowsSource = null;
+    }
+
+    public long getId()             { return id; }
+    public String getState()        { return state; }
+    public String getPhase()        { return phase; }
+    public int getRequests()        { return requests; }
+    public Long getVersion()        { return version; }
+    public String getError()        { return error; }
+    public String getSubmittedAt()  { return submittedAt.format(DT_FMT); }
+    public String getFinishedAt()   { return finishedAt == null ? null : finishedAt.format(DT_FMT); }
+
+    public long getRowsParsed() {
+        LongSupplier rows = rowsSource;
+        return rows != null ? rows.getAsLong() : rowsParsed;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs >= 0 ? elapsedMs : (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return !RUNNING.equals(state);
+    }
+}
@@ -0,0 +1,92 @@
+package com.valid8.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Runs reloads off the request thread. At most one reload runs at a time.
+ * A request made while one is running gets a follow-up job that starts when
+ * it finishes, since the running one may already have read the files; the
+ * requests made meanwhile all join that one follow-up. The last
+ * valid8.reload.history jobs stay available for status polling.
+ */
+@Component
+public class ReloadJobs {
+
+    @Autowired
+    private Valid8Service service;
+
+    @Value("${valid8.reload.history:20}")
+    private int history;
+
+    private long nextId = 1;
+    private ReloadJob current;      // running, or null
+    private ReloadJob next;         // waiting for current to finish, or null
+    private final Map<Long, ReloadJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, ReloadJob> eldest) {
+            return size() > Math.max(1, history);
+        }
+    };
+
+    /**
+     * Starts a reload, or queues one to run after the running one, or
+     * returns the queued one after counting this request against it.
+     */
+    public synchronized ReloadJob submit() {
+        if (current == null) {
+            current = create();
+            start(current);
+            return current;
+        }
+        if (next == null) next = create();
+        else next.join();
+        return next;
+    }
+
+    /** @return the job, or null if it is unknown or no longer kept */
+    public synchronized ReloadJob get(long id) {
+        return jobs.get(id);
+    }
+
+    private ReloadJob create() {
+        ReloadJob job = new ReloadJob(nextId++);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    private void start(ReloadJob job) {
+        Thread thread = new Thread(() -> run(job), "valid8-reload-" + job.getId());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private synchronized void startNext() {
+        current = next;
+        next = null;
+        if (current != null) start(current);
+    }
+
+    // reload(job) keeps Exceptions to itself, but an Error (out of memory on a large
+    // reload) gets here; the job must still finish and hand over to the queued one.
+    private void run(ReloadJob job) {
+        String error = "Reload did not complete";
+        try {
+            service.reload(job);
+            error = service.getLoadError();
+        } catch (Throwable t) {
+            error = t.getMessage() != null ? t.getMessage() : t.toString();
+            throw t;
+        } finally {
+            job.finish(service.getSnapshot().getVersion(), error);
+            startNext();
+        }
+        System.out.println("[ReloadJobs] Reload " + job.getId() + " " + job.getState() + " in "
+            + job.getElapsedMs() + " ms (" + job.getRequests() + " requests)");
+    }
+}
@@ -0,0 +1,196 @@
+package com.valid8.service;
+
+import com.valid8.model.MappedInput;
+import com.valid8.model.RecordStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+
+/**
+ * Binary cache of the parsed, registration-joined dataset. It is keyed by
+ * the size, modification time and CRC32C of both CSV files (plus the CSV
+ * charset), so a restart or reload with unchanged sources maps the cache
+ * file, in 2 GiB windows when it is larger, and bulk-copies its columns
+ * instead of parsing the CSVs again.
+ */
+@Component
+public class SnapshotCache {
+
+    private static final long MAGIC = 0x3153_3844_494C_4156L; // "VALID8S1" little-endian
+    private static final int FORMAT = 1;
+
+    @Value("${valid8.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${valid8.cache.file:valid8-snapshot.bin}")
+    private String cachePath;
+
+    @Value("${valid8.csv.registrations:registered_cars.csv}")
+    private String registrationsPath;
+
+    @Value("${valid8.csv.simulation:simulation_data.csv}")
+    private String simulationPath;
+
+    @Value("${valid8.csv.charset:UTF-8}")
+    private String charset;
+
+
+    /** Identity of the source files a cache was built from. */
+    public static final class Key {
+
+        final long regSize, regModified, regHash;
+        final long simSize, simModified, simHash;
+        final String charset;
+
+        Key(long regSize, long regModified, long regHash,
+            long simSize, long simModified, long simHash, String charset) {
+            this.regSize = regSize;
+            this.regModified = regModified;
+            this.regHash = regHash;
+            this.simSize = simSize;
+            this.simModified = simModified;
+            this.simHash = simHash;
+            this.charset = charset;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key k = (Key) o;
+            return regSize == k.regSize && regModified == k.regModified && regHash == k.regHash
+                && simSize == k.simSize && simModified == k.simModified && simHash == k.simHash
+                && charset.equals(k.charset);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(regSize, regModified, regHash, simSize, simModified, simHash, charset);
+        }
+    }
+
+    public static final class Cached {
+
+        private final RecordStore records;
+        private final long simulationBytes;
+        private final int simulationRows;
+
+        Cached(RecordStore records, long simulationBytes, int simulationRows) {
+            this.records = records;
+            this.simulationBytes = simulationBytes;
+            this.simulationRows = simulationRows;
+        }
+
+        public RecordStore getRecords()   { return records; }
+        public long getSimulationBytes()  { return simulationBytes; }
+        public int getSimulationRows()    { return simulationRows; }
+    }
+
+
+    /**
+     * @return the key of the current source files, or null if caching is
+     *         disabled or the simulation file is not on the filesystem
+     */
+    public Key currentKey() {
+        if (!enabled) return null;
+        try {
+            Path sim = Paths.get(simulationPath);
+            if (!Files.isRegularFile(sim)) return null;
+            Path reg = Paths.get(registrationsPath);
+            boolean hasReg = Files.isRegularFile(reg);
+            return new Key(
+                hasReg ? Files.size(reg) : -1,
+                hasReg ? Files.getLastModifiedTime(reg).toMillis() : -1,
+                hasReg ? crc(reg) : 0,
+                Files.size(sim), Files.getLastModifiedTime(sim).toMillis(), crc(sim), charset);
+        } catch (IOException e) {
+            System.err.println("[SnapshotCache] Cannot fingerprint sources: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /** @return the cached dataset for key, or null if there is none or it is stale */
+    public Cached load(Key key) {
+        if (key == null) return null;
+        Path path = Paths.get(cachePath);
+        if (!Files.isRegularFile(path)) return null;
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedInput buf = new MappedInput(ch);
+            if (buf.getLong() != MAGIC || buf.getInt() != FORMAT) return null;
+            Key stored = new Key(buf.getLong(), buf.getLong(), buf.getLong(),
+                buf.getLong(), buf.getLong(), buf.getLong(), readString(buf));
+            if (!stored.equals(key)) return null;
+            int rows = buf.getInt();
+            RecordStore records = RecordStore.read(buf);
+            System.out.println("[SnapshotCache] Loaded " + records.size() + " records from " + cachePath
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+            return new Cached(records, stored.simSize, rows);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("[SnapshotCache] Ignoring unreadable " + cachePath + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes records as the cache for key. Skipped if the load did not cover
+     * exactly the fingerprinted simulation file (it changed while parsing).
+     */
+    public void save(Key key, RecordStore records, long simulationBytes, int simulationRows) {
+        if (key == null || simulationBytes != key.simSize) return;
+        Path path = Paths.get(cachePath).toAbsolutePath();
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        long start = System.nanoTime();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            byte[] cs = key.charset.getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(72 + cs.length).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(MAGIC).putInt(FORMAT)
+                .putLong(key.regSize).putLong(key.regModified).putLong(key.regHash)
+                .putLong(key.simSize).putLong(key.simModified).putLong(key.simHash)
+                .putInt(cs.length).put(cs)
+                .putInt(simulationRows)
+                .flip();
+            while (header.hasRemaining()) ch.write(header);
+            records.write(ch);
+            ch.force(true);
+        } catch (IOException e) {
+            System.err.println("[SnapshotCache] Cannot write " + tmp + ": " + e.getMessage());
+            return;
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            System.out.println("[SnapshotCache] Wrote " + records.size() + " records to " + cachePath
+                + " in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+        } catch (IOException e) {
+            System.err.println("[SnapshotCache] Cannot replace " + path + ": " + e.getMessage());
+        }
+    }
+
+    private static long crc(Path file) throws IOException {
+        CRC32C crc = new CRC32C();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = ch.size();
+            for (long pos = 0; pos < size; pos += Integer.MAX_VALUE) {
+                crc.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(Integer.MAX_VALUE, size - pos)));
+            }
+        }
+        return crc.getValue();
+    }
+
+    private static String readString(MappedInput in) {
+        int n = in.getInt();
+        if (n < 0 || n > in.remaining()) throw new IllegalArgumentException("String of " + n + " bytes exceeds the file");
+        byte[] b = new byte[n];
+        in.get(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
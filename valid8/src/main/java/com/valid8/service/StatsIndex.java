@@ -0,0 +1,258 @@
+package com.valid8.service;
+
+import com.valid8.model.RecordStore;
+
+import java.util.*;
+
+
+/**
+ * Per-lot rollups of the sessions by the hour and by the day they started:
+ * how many there were, how many are violations or unregistered, and the
+ * dwell time of those that have left (a total for the mean and a
+ * DwellSketch for percentiles). A month-long trend reads 30 day buckets
+ * per lot instead of scanning the records.
+ *
+ * Like the other indexes it is derived per generation and never changed
+ * once published. withChanges copies only the days that new, closed and
+ * re-tested sessions fall in and shares the rest with the previous
+ * generation. Violations are counted at the generation's clock, so an open
+ * session moves into the count when it overstays.
+ */
+public final class StatsIndex {
+
+    private static final long DAY = 86_400;
+    private static final long HOUR = 3_600;
+
+    public static final StatsIndex EMPTY = new StatsIndex(Collections.emptyMap());
+
+    private final Map<String, Map<Long, Day>> byLot; // lower-case lot name -> epoch day
+
+    private StatsIndex(Map<String, Map<Long, Day>> byLot) {
+        this.byLot = byLot;
+    }
+
+    public static StatsIndex build(RecordStore records) {
+        return EMPTY.withChanges(records, records, 0, Collections.emptyList(), Collections.emptyList());
+    }
+
+    /**
+     * Returns an index that also covers records[from..], the dwell times of
+     * the earlier sessions at the closed positions, and changes in the
+     * violation status of the earlier retested positions since base.
+     */
+    public StatsIndex withChanges(RecordStore base, RecordStore records, int from,
+                                  Collection<Integer> closed, Collection<Integer> retested) {
+        Editor edit = new Editor(records);
+        for (int pos = from; pos < records.size(); pos++) {
+            Day day = edit.day(pos);
+            if (day == null) continue;
+            boolean unregistered = records.isUnregistered(pos), violation = records.isViolation(pos);
+            long dwell = dwell(records, pos);
+            day.total.addSession(unregistered, violation, dwell);
+            edit.hour.addSession(unregistered, violation, dwell);
+        }
+        for (int pos : closed) {
+            if (pos >= from) continue;
+            long dwell = dwell(records, pos);
+            if (dwell < 0 || edit.day(pos) == null) continue;
+            edit.current.total.addDwell(dwell);
+            edit.hour.addDwell(dwell);
+        }
+        for (int pos : retested) {
+            if (pos >= from) continue;
+            boolean was = base.isViolation(pos), is = records.isViolation(pos);
+            if (was == is || edit.day(pos) == null) continue;
+            edit.current.total.violations += is ? 1 : -1;
+            edit.hour.violations += is ? 1 : -1;
+        }
+        return new StatsIndex(Collections.unmodifiableMap(edit.lots));
+    }
+
+    /** @return whether lot (case-insensitive) has any sessions */
+    public boolean hasLot(String lot) {
+        return byLot.containsKey(lot.toLowerCase());
+    }
+
+    /** @return the start of the first day with sessions in lot, or NO_TIME */
+    public long firstDay(String lot) {
+        Map<Long, Day> days = byLot.get(lot.toLowerCase());
+        return days == null || days.isEmpty() ? RecordStore.NO_TIME : Collections.min(days.keySet()) * DAY;
+    }
+
+    /** @return the start of the last day with sessions in lot, or NO_TIME */
+    public long lastDay(String lot) {
+        Map<Long, Day> days = byLot.get(lot.toLowerCase());
+        return days == null || days.isEmpty() ? RecordStore.NO_TIME : Collections.max(days.keySet()) * DAY;
+    }
+
+    /**
+     * Totals of the sessions of lot (case-insensitive) that started in
+     * [from, to), read from day buckets where whole days are covered and
+     * from hour buckets otherwise. Bounds are RecordStore keys and are
+     * rounded down to the hour.
+     */
+    public Totals sum(String lot, long from, long to) {
+        Totals out = new Totals();
+        Map<Long, Day> days = byLot.get(lot.toLowerCase());
+        if (days == null) return out;
+        from -= Math.floorMod(from, HOUR);
+        to -= Math.floorMod(to, HOUR);
+        for (long t = from; t < to; ) {
+            long d = Math.floorDiv(t, DAY);
+            Day day = days.get(d);
+            if (Math.floorMod(t, DAY) == 0 && t + DAY <= to) {
+                if (day != null) out.add(day.total);
+                t += DAY;
+            } else {
+                if (day != null) out.add(day.hours[(int) (Math.floorMod(t, DAY) / HOUR)]);
+                t += HOUR;
+            }
+        }
+        return out;
+    }
+
+    /** Rough heap size. */
+    public long estimatedBytes() {
+        long bytes = 0;
+        for (Map<Long, Day> days : byLot.values()) {
+            for (Day day : days.values()) {
+                bytes += 200 + day.total.estimatedBytes();
+                for (Totals h : day.hours) if (h != null) bytes += h.estimatedBytes();
+            }
+        }
+        return bytes;
+    }
+
+    private static long dwell(RecordStore records, int pos) {
+        long exit = records.exitKey(pos);
+        return exit == RecordStore.NO_TIME ? -1 : Math.max(0, exit - records.entryKey(pos));
+    }
+
+
+    /** Counts for one bucket, or for a sum of buckets. */
+    public static final class Totals {
+
+        private int sessions;
+        private int violations;
+        private int unregistered;
+        private int departed;             // sessions with a dwell time
+        private long dwellSeconds;
+        private final DwellSketch dwell;
+
+        private Totals() {
+            this.dwell = new DwellSketch();
+        }
+
+        private Totals(Totals o) {
+            sessions = o.sessions;
+            violations = o.violations;
+            unregistered = o.unregistered;
+            departed = o.departed;
+            dwellSeconds = o.dwellSeconds;
+            dwell = o.dwell.copy();
+        }
+
+        public int getSessions()      { return sessions; }
+        public int getViolations()    { return violations; }
+        public int getUnregistered()  { return unregistered; }
+        public int getDeparted()      { return departed; }
+        public long getDwellSeconds() { return dwellSeconds; }
+
+        /** @return the q-quantile (0..1) of the dwell times in seconds, or NaN if none have left */
+        public double dwellQuantile(double q) {
+            return dwell.quantile(q);
+        }
+
+        void add(Totals o) {
+            if (o == null) return;
+            sessions += o.sessions;
+            violations += o.violations;
+            unregistered += o.unregistered;
+            departed += o.departed;
+            dwellSeconds += o.dwellSeconds;
+            dwell.addAll(o.dwell);
+        }
+
+        private void addSession(boolean isUnregistered, boolean isViolation, long dwellTime) {
+            sessions++;
+            if (isUnregistered) unregistered++;
+            if (isViolation) violations++;
+            if (dwellTime >= 0) addDwell(dwellTime);
+        }
+
+        private void addDwell(long seconds) {
+            departed++;
+            dwellSeconds += seconds;
+            dwell.add(seconds);
+        }
+
+        private long estimatedBytes() {
+            return 48 + dwell.estimatedBytes();
+        }
+    }
+
+    /** Totals of one day and of each of its hours (null when no session started in it). */
+    private static final class Day {
+
+        final Totals total;
+        final Totals[] hours;
+
+        Day(Totals total, Totals[] hours) {
+            this.total = total;
+            this.hours = hours;
+        }
+    }
+
+    /**
+     * Copy-on-write view used to derive the next generation. Maps, days and
+     * hour buckets are copied the first time this edit touches them, so the
+     * published index is never modified.
+     */
+    private final class Editor {
+
+        final RecordStore records;
+        final String[] lotKeys;
+        final Map<String, Map<Long, Day>> lots = new HashMap<>(byLot);
+        final Set<Object> owned = Collections.newSetFromMap(new IdentityHashMap<>());
+        Day current;      // set by day(), with the hour bucket of the same session
+        Totals hour;
+
+        Editor(RecordStore records) {
+            this.records = records;
+            this.lotKeys = new String[records.lotIdCount()];
+        }
+
+        /** @return the writable day of the session at pos, or null if it has no entry time */
+        Day day(int pos) {
+            long entry = records.entryKey(pos);
+            if (entry == RecordStore.NO_TIME) return null;
+            int lot = records.lotId(pos);
+            if (lotKeys[lot] == null) lotKeys[lot] = records.lotName(lot).toLowerCase();
+
+            Map<Long, Day> days = lots.get(lotKeys[lot]);
+            if (days == null || !owned.contains(days)) {
+                days = days == null ? new HashMap<>() : new HashMap<>(days);
+                owned.add(days);
+                lots.put(lotKeys[lot], days);
+            }
+            long d = Math.floorDiv(entry, DAY);
+            Day day = days.get(d);
+            if (day == null || !owned.contains(day)) {
+                day = day == null ? new Day(new Totals(), new Totals[24])
+                                  : new Day(new Totals(day.total), day.hours.clone());
+                owned.add(day);
+                days.put(d, day);
+            }
+            int h = (int) (Math.floorMod(entry, DAY) / HOUR);
+            Totals t = day.hours[h];
+            if (t == null || !owned.contains(t)) {
+                t = t == null ? new Totals() : new Totals(t);
+                owned.add(t);
+                day.hours[h] = t;
+            }
+            current = day;
+            hour = t;
+            return day;
+        }
+    }
+}
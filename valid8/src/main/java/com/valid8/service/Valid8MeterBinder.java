@@ -0,0 +1,74 @@
+package com.valid8.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+
+/**
+ * Gauges read from the live state when the registry is scraped:
+ *
+ *   valid8.snapshot.age           seconds since the current generation was published
+ *   valid8.snapshot.version       its version
+ *   valid8.snapshot.records       sessions in it
+ *   valid8.snapshot.heap.estimate rough heap size of its records and indexes
+ *   valid8.events.queue.*         pushed gate event buffer depth and totals
+ *   valid8.stream.subscribers     open Server-Sent Events connections
+ */
+@Component
+public class Valid8MeterBinder implements MeterBinder {
+
+    @Autowired
+    private Valid8Service service;
+
+    @Autowired
+    private GateEventQueue gateEvents;
+
+    @Autowired
+    private LiveUpdateBroadcaster broadcaster;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("valid8.snapshot.age", service, s -> age(s.getSnapshot()))
+            .description("Time since the current dataset generation was published")
+            .baseUnit("seconds")
+            .register(registry);
+        Gauge.builder("valid8.snapshot.version", service, s -> s.getSnapshot().getVersion())
+            .register(registry);
+        Gauge.builder("valid8.snapshot.records", service, s -> s.getSnapshot().getRecords().size())
+            .register(registry);
+        Gauge.builder("valid8.snapshot.heap.estimate", service, s -> s.getSnapshot().estimatedBytes())
+            .description("Rough heap size of the current generation's records and indexes")
+            .baseUnit("bytes")
+            .register(registry);
+
+        Gauge.builder("valid8.events.queue.size", gateEvents, GateEventQueue::size)
+            .register(registry);
+        Gauge.builder("valid8.events.queue.capacity", gateEvents, GateEventQueue::getCapacity)
+            .register(registry);
+        FunctionCounter.builder("valid8.events.accepted", gateEvents, GateEventQueue::getAccepted)
+            .register(registry);
+        FunctionCounter.builder("valid8.events.rejected", gateEvents, GateEventQueue::getRejected)
+            .description("Events refused because the buffer was full")
+            .register(registry);
+        FunctionCounter.builder("valid8.events.applied", gateEvents, GateEventQueue::getApplied)
+            .register(registry);
+        FunctionCounter.builder("valid8.events.dropped", gateEvents, GateEventQueue::getDropped)
+            .description("Events taken from the buffer but not applied because their batch failed")
+            .register(registry);
+
+        Gauge.builder("valid8.stream.subscribers", broadcaster, LiveUpdateBroadcaster::getSubscriberCount)
+            .register(registry);
+    }
+
+    private static double age(DatasetSnapshot snap) {
+        LocalDateTime at = snap.getLoadedAt();
+        return at == null ? Double.NaN : Duration.between(at, LocalDateTime.now()).toMillis() / 1000.0;
+    }
+}
@@ -0,0 +1,103 @@
+package com.valid8.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Meters recorded by the load and reload paths. Request latencies and JVM
+ * meters come from Actuator; dataset and queue gauges are bound by
+ * Valid8MeterBinder.
+ *
+ *   valid8.reload              full reloads, by source (csv or cache) and outcome
+ *   valid8.reload.phase        time in each reload phase
+ *   valid8.update              publishing a generation from gate rows or expired overstays
+ *   valid8.csv.rows            simulation rows parsed
+ *   valid8.csv.rows.per.second parse rate of the last full load
+ *   valid8.csv.parse.failures  rows, or values in them, that could not be used, by file and cause
+ */
+@Component
+public class Valid8Metrics {
+
+    public static final String READ      = "read";        // registrations file
+    public static final String PARSE     = "parse";       // simulation file
+    public static final String JOIN      = "join";        // linking sessions to registrations
+    public static final String CACHE     = "cache_load";
+    public static final String JOURNAL   = "journal";
+    public static final String AGGREGATE = "aggregate";   // lot aggregates and summaries
+    public static final String INDEX     = "index";
+    public static final String SAVE      = "cache_save";
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private Counter rowsParsed;
+    private Timer updates;
+    private volatile double rowsPerSecond;
+
+    @PostConstruct
+    public void init() {
+        rowsParsed = Counter.builder("valid8.csv.rows")
+            .description("Simulation rows parsed, including appended rows")
+            .register(registry);
+        updates = Timer.builder("valid8.update")
+            .description("Publishing a generation from gate rows or expired overstays")
+            .register(registry);
+        Gauge.builder("valid8.csv.rows.per.second", this, m -> m.rowsPerSecond)
+            .description("Parse rate of the last full load of the simulation file")
+            .register(registry);
+    }
+
+    /**
+     * Records a reload phase that began at startedNanos.
+     *
+     * @return the current System.nanoTime(), the start of the next phase
+     */
+    public long phase(String phase, long startedNanos) {
+        long now = System.nanoTime();
+        Timer.builder("valid8.reload.phase")
+            .tag("phase", phase)
+            .register(registry)
+            .record(now - startedNanos, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
+    public void reloaded(String source, boolean succeeded, long nanos) {
+        Timer.builder("valid8.reload")
+            .tag("source", source)
+            .tag("outcome", succeeded ? "success" : "error")
+            .register(registry)
+            .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void updated(long nanos) {
+        updates.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Records rows parsed by a full load that took nanos. */
+    public void fullParse(long rows, long nanos) {
+        rowsParsed.increment(rows);
+        if (nanos > 0) rowsPerSecond = rows * 1e9 / nanos;
+    }
+
+    /** Records rows parsed from appended lines. */
+    public void appendParse(long rows) {
+        rowsParsed.increment(rows);
+    }
+
+    public void parseFailures(String file, String cause, long rows) {
+        if (rows == 0) return;
+        Counter.builder("valid8.csv.parse.failures")
+            .tag("file", file)
+            .tag("cause", cause)
+            .register(registry)
+            .increment(rows);
+    }
+}
@@ -1,13 +1,19 @@
 package com.valid8.service;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.valid8.model.*;
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 
@@ -17,18 +23,57 @@ public class Valid8Service {
     @Autowired
     private CsvDataLoader csvDataLoader;
 
+    @Autowired
+    private SnapshotCache snapshotCache;
+
+    @Autowired
+    private EventJournal journal;
+
+    @Autowired
+    private Valid8Metrics metrics;
+
+    @Autowired
+    private ApplicationEventPublisher events;
+
+    @Value("${valid8.overstay.clock:system}")
+    private String overstayClock;
+
+    @Value("${valid8.match.max-edits:1}")
+    private int matchMaxEdits;
+
+    @Value("${valid8.match.max-suggestions:3}")
+    private int matchMaxSuggestions;
+
     private static final DateTimeFormatter DT_FMT =
         DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
 
+    private static final Predicate<ParkingRecord> IS_VIOLATION    = r -> !r.legal();
+    private static final Predicate<ParkingRecord> IS_UNREGISTERED = r -> r.getRegistration() == null;
+
+    public static final int MAX_PLATE_MATCHES = 200;
+    public static final int MAX_OCCUPANCY_POINTS = 2000;
+    public static final int MAX_STATS_POINTS = 2000;
+    public static final int MAX_NEAREST_LOTS = 50;
+
+    private static final DateTimeFormatter SERIES_FMT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Default bucket sizes in minutes, the smallest that keeps a series near 200 points is used.
+    private static final long[] STEP_LADDER = {1, 5, 15, 30, 60, 180, 360, 720, 1440, 10080};
+
   
-    private List<ParkingRecord> records = new ArrayList<>();
-    private Map<String, Registration> registrations = new LinkedHashMap<>();
-    private LocalDateTime lastLoaded = null;
-    private String loadError = null;
+    private final AtomicReference<DatasetSnapshot> snapshot =
+        new AtomicReference<>(DatasetSnapshot.EMPTY);
+    private volatile String loadError = null;
 
-   
-    private final Map<String, Integer> lotSimulated = new LinkedHashMap<>();
-    private final Random rng = new Random();
+    // Position in the current snapshot's records of each open session, keyed by
+    // RecordStore.sessionKey. Only touched while holding the service monitor.
+    private Map<Long, Integer> openSessions = new HashMap<>();
+
+    // Open sessions not yet past their deadline, and the latest gate event time
+    // seen (the clock when valid8.overstay.clock=feed). Same monitor as above.
+    private final OverstayQueue overstays = new OverstayQueue();
+    private long feedClock = RecordStore.NO_TIME;
 
     @PostConstruct
     public void init() {
@@ -37,66 +82,345 @@ public class Valid8Service {
 
   
     public synchronized void reload() {
+        reload(new ReloadJob(0));
+    }
+
+    /**
+     * Reloads both CSV files (or the snapshot cache) and replays the journal,
+     * reporting each phase to job. Errors are kept in getLoadError().
+     */
+    synchronized void reload(ReloadJob job) {
         loadError = null;
+        long started = System.nanoTime();
+        long t = started;
+        String source = "csv";
         try {
-            registrations = csvDataLoader.loadRegistrations();
-            records = csvDataLoader.loadParkingRecords();
-            AutoGate.applyRegistrations(records, registrations);
-
-            for (LotConfig lc : AutoGate.LOT_CONFIGS) {
-                int cap = lc.getCapacity();
-                
-                int band = rng.nextInt(3); // 0=green, 1=yellow, 2=red
-                int inLot;
-                if (band == 0) {
-                    
-                    int maxInLot = (int)(cap * 0.59);
-                    inLot = rng.nextInt(Math.max(1, maxInLot + 1));
-                } else if (band == 1) {
-                    
-                    int minInLot = (int)(cap * 0.61);
-                    int maxInLot = (int)(cap * 0.84);
-                    inLot = minInLot + rng.nextInt(Math.max(1, maxInLot - minInLot + 1));
-                } else {
-                  
-                    int minInLot = (int)(cap * 0.87);
-                    int maxInLot = (int)(cap * 0.99);
-                    inLot = minInLot + rng.nextInt(Math.max(1, maxInLot - minInLot + 1));
-                }
-                lotSimulated.put(lc.getName(), Math.min(cap, inLot));
+            job.phase("checking snapshot cache");
+            SnapshotCache.Key sourceKey = snapshotCache.currentKey();
+            SnapshotCache.Cached cached = snapshotCache.load(sourceKey);
+            Map<String, Registration> registrations;
+            RecordStore records;
+            if (cached != null) {
+                source = "cache";
+                records = cached.getRecords();
+                registrations = records.registrations();
+                csvDataLoader.restoreSimulationState(cached.getSimulationBytes(), cached.getSimulationRows());
+                job.setRowsParsed(cached.getSimulationRows());
+                t = metrics.phase(Valid8Metrics.CACHE, t);
+            } else {
+                job.phase("reading registrations");
+                registrations = csvDataLoader.loadRegistrations();
+                t = metrics.phase(Valid8Metrics.READ, t);
+                job.phase("parsing records", csvDataLoader::getRowsParsed);
+                RecordStore.Builder parsed = csvDataLoader.loadParkingRecords();
+                t = metrics.phase(Valid8Metrics.PARSE, t);
+                records = parsed.build(registrations);
+                t = metrics.phase(Valid8Metrics.JOIN, t);
+            }
+            RecordStore loaded = records;
+            feedClock = RecordStore.NO_TIME;
+            Map<Long, Integer> open = new HashMap<>();
+            for (int i = 0; i < records.size(); i++) {
+                feedClock = Math.max(feedClock, Math.max(records.entryKey(i), records.exitKey(i)));
+                if (records.isStillInLot(i)) open.put(records.sessionKey(i), i);
+            }
+            job.phase("replaying journal");
+            RecordStore.Mutation mutation = records.mutate();
+            try {
+                replayJournal(records, mutation, open);
+            } catch (IOException | RuntimeException e) {
+                // Keep the CSV data and whatever was replayed before the failure
+                loadError = "Journal replay failed: " + e.getMessage();
+                System.err.println("[Valid8Service] Journal replay failed, continuing without the rest: "
+                    + e.getMessage());
             }
+            mutation.setClock(currentClock());
+            records = mutation.publish();
+            t = metrics.phase(Valid8Metrics.JOURNAL, t);
+
+            job.phase("indexing");
+
+            LotIndex lotIndex = LotIndex.build(csvDataLoader.loadLots());
+            Map<String, LotAggregate> lotAggregates = AutoGate.aggregateByLot(records, lotIndex.getLots());
+            List<LotSummary> lotSummaries = buildLotSummaries(lotAggregates);
+            t = metrics.phase(Valid8Metrics.AGGREGATE, t);
 
-            lastLoaded = LocalDateTime.now();
-            System.out.println("[Valid8Service] Data reloaded at " + lastLoaded);
+            DatasetSnapshot next = new DatasetSnapshot(snapshot.get().getVersion() + 1,
+                records, registrations, lotAggregates, lotSummaries,
+                RecordIndex.build(records, records::isViolation),
+                RecordIndex.build(records, records::isUnregistered),
+                PlateIndex.build(records, registrations.keySet()),
+                FuzzyPlateIndex.build(registrations, matchMaxEdits, matchMaxSuggestions),
+                OccupancyIndex.build(records), StatsIndex.build(records), lotIndex, LocalDateTime.now());
+            t = metrics.phase(Valid8Metrics.INDEX, t);
+            openSessions = open;
+            overstays.rebuild(records);
+            snapshot.set(next);
+            loaded.supersede();
+            events.publishEvent(new DatasetChangedEvent(next, null));
+            System.out.println("[Valid8Service] Data reloaded at " + next.getLoadedAt()
+                + " (version " + next.getVersion() + ")");
+            if (cached == null) {
+                job.phase("saving snapshot cache");
+                snapshotCache.save(sourceKey, loaded, csvDataLoader.getSimulationBytesLoaded(),
+                    csvDataLoader.getSimulationRowsLoaded());
+                metrics.phase(Valid8Metrics.SAVE, t);
+            }
+            metrics.reloaded(source, true, System.nanoTime() - started);
         } catch (Exception e) {
             loadError = e.getMessage();
+            metrics.reloaded(source, false, System.nanoTime() - started);
             System.err.println("[Valid8Service] Reload error: " + e.getMessage());
         }
     }
 
-    public LocalDateTime getLastLoaded() { return lastLoaded; }
+    /**
+     * Applies the journaled events on top of freshly loaded records. Rows
+     * follow the rules of applySessionUpdates; sessions from a checkpoint
+     * are appended as they are.
+     */
+    private void replayJournal(RecordStore base, RecordStore.Mutation mutation, Map<Long, Integer> open)
+            throws IOException {
+        journal.replay((type, row) -> {
+            feedClock = Math.max(feedClock,
+                Math.max(RecordStore.toKey(row.getEntryTime()), RecordStore.toKey(row.getExitTime())));
+            if (type == EventJournal.ROW && row.getExitTime() != null) {
+                long key = base.sessionKey(row.getPlate(), row.getLot());
+                Integer at = key >= 0 ? open.remove(key) : null;
+                if (at != null) {
+                    mutation.close(at, row.getExitTime());
+                    return;
+                }
+            }
+            int pos = mutation.append(row);
+            long key = base.sessionKey(row.getPlate(), row.getLot());
+            if (row.isStillInLot()) open.put(key, pos);
+            else if (type == EventJournal.SESSION) open.remove(key);
+        });
+    }
+
+    /**
+     * Writes pushed gate events to the journal, then applies them. Both
+     * happen under the service monitor, so a reload either replays a batch
+     * or has not seen it yet, never both.
+     *
+     * @throws IOException if the journal write failed; nothing was applied
+     */
+    synchronized void applyEvents(List<ParkingRecord> events) throws IOException {
+        journal.append(events);
+        applySessionUpdates(events);
+    }
+
+    /**
+     * Reads rows appended to the simulation file since the last load and
+     * applies them as session updates. Falls back to a full reload if the
+     * file shrank (truncated or replaced).
+     *
+     * @return the number of appended rows applied
+     */
+    public synchronized int ingestAppended() {
+        long loaded = csvDataLoader.getSimulationBytesLoaded();
+        long size = csvDataLoader.simulationFileSize();
+        if (loaded < 0 || size < 0 || size == loaded) return 0;
+        if (size < loaded) {
+            System.out.println("[Valid8Service] Simulation file shrank, doing a full reload");
+            reload();
+            return 0;
+        }
+        List<ParkingRecord> rows = new ArrayList<>();
+        CsvDataLoader.Appended appended;
+        try {
+            appended = csvDataLoader.loadAppendedRecords(rows);
+        } catch (Exception e) {
+            System.err.println("[Valid8Service] Append read error: " + e.getMessage());
+            return 0;
+        }
+        if (appended == null) return 0;
+        // Only once they are published; if applying throws, the next call reads the same lines
+        if (!rows.isEmpty()) applySessionUpdates(rows);
+        csvDataLoader.commitAppended(appended);
+        return rows.size();
+    }
+
+    /**
+     * Flags the open sessions whose overstay deadline has passed by
+     * publishing a new generation, if there are any.
+     */
+    public synchronized void expireOverstays() {
+        applySessionUpdates(Collections.emptyList());
+    }
+
+    /**
+     * Applies gate rows in order on top of the current snapshot. A row with an
+     * exit time closes the open session for the same plate and lot; any other
+     * row starts a new session. Open sessions whose deadline passed since the
+     * last generation are flagged as overstays. Lot aggregates are adjusted by
+     * the contributions of the rows and expirations rather than recomputed.
+     */
+    synchronized void applySessionUpdates(List<ParkingRecord> rows) {
+        long feedClockBefore = feedClock;
+        for (ParkingRecord row : rows) {
+            feedClock = Math.max(feedClock,
+                Math.max(RecordStore.toKey(row.getEntryTime()), RecordStore.toKey(row.getExitTime())));
+        }
+        long clock = currentClock();
+        long due = overstays.nextDeadline();
+        if (rows.isEmpty() && (due == RecordStore.NO_TIME || due >= clock)) return;
+
+        long started = System.nanoTime();
+        DatasetSnapshot cur = snapshot.get();
+        RecordStore base = cur.getRecords();
+        int oldSize = base.size();
+
+        // Nothing below touches the live snapshot's store until the swap; on failure the
+        // open sessions and overstay queue are put back and base stays mutable.
+        Map<Long, Integer> undo = new HashMap<>();
+        DatasetSnapshot next;
+        List<ParkingRecord> changed;
+        List<Integer> expired = new ArrayList<>();
+        boolean cleared = false;
+        try {
+            RecordStore.Mutation mutation = base.mutate();
+            Set<Integer> changedPositions = new LinkedHashSet<>();
+            List<Integer> closedBefore = new ArrayList<>();
+
+            for (ParkingRecord row : rows) {
+                Integer open = null;
+                if (row.getExitTime() != null) {
+                    long key = base.sessionKey(row.getPlate(), row.getLot());
+                    if (key >= 0) {
+                        remember(undo, key);
+                        open = openSessions.remove(key);
+                    }
+                }
+                if (open != null) {
+                    mutation.close(open, row.getExitTime());
+                    if (open < oldSize) closedBefore.add(open);
+                    changedPositions.add(open);
+                } else {
+                    int pos = mutation.append(row);
+                    if (row.isStillInLot()) {
+                        long key = base.sessionKey(row.getPlate(), row.getLot());
+                        remember(undo, key);
+                        openSessions.put(key, pos);
+                    }
+                    changedPositions.add(pos);
+                }
+            }
+            mutation.setClock(clock);
+            RecordStore records = mutation.publish();
+
+            for (int pos = oldSize; pos < records.size(); pos++) {
+                long deadline = records.deadline(pos);
+                if (records.isStillInLot(pos) && deadline != RecordStore.NO_TIME && deadline >= clock) {
+                    overstays.add(deadline, pos);
+                }
+            }
+            overstays.drain(records, clock, expired::add);
+            changedPositions.addAll(expired);
+
+            // Earlier sessions whose violation status may differ from base's
+            Set<Integer> retested = new LinkedHashSet<>(closedBefore);
+            retested.addAll(expired);
+
+            List<LotConfig> lots = cur.getLotIndex().getLots();
+            int n = lots.size();
+            int[] slots = AutoGate.configSlots(records, lots);
+            int[] sessions = new int[n], violations = new int[n], inLot = new int[n];
+            for (int pos = oldSize; pos < records.size(); pos++) {
+                int slot = slots[records.lotId(pos)];
+                if (slot < 0) continue;
+                sessions[slot]++;
+                if (records.isViolation(pos))   violations[slot]++;
+                if (records.isStillInLot(pos)) inLot[slot]++;
+            }
+            for (int pos : closedBefore) {
+                int slot = slots[records.lotId(pos)];
+                if (slot >= 0) inLot[slot]--;
+            }
+            for (int pos : retested) {
+                boolean was = base.isViolation(pos), is = records.isViolation(pos);
+                if (was && !is) cleared = true;
+                int slot = slots[records.lotId(pos)];
+                if (slot >= 0 && was != is) violations[slot] += is ? 1 : -1;
+            }
+            Map<String, LotAggregate> aggregates = new LinkedHashMap<>(cur.getLotAggregates());
+            for (int slot = 0; slot < n; slot++) {
+                if (sessions[slot] == 0 && violations[slot] == 0 && inLot[slot] == 0) continue;
+                String name = lots.get(slot).getName();
+                aggregates.put(name, aggregates.get(name).adjust(sessions[slot], violations[slot], inLot[slot]));
+            }
+            aggregates = Collections.unmodifiableMap(aggregates);
+
+            changed = new ArrayList<>(changedPositions.size());
+            for (int pos : changedPositions) changed.add(records.get(pos));
+
+            next = new DatasetSnapshot(cur.getVersion() + 1, records, cur.getRegistrations(),
+                aggregates, buildLotSummaries(aggregates),
+                cur.getViolationIndex().withChanges(records, oldSize, records::isViolation, retested),
+                cur.getUnregisteredIndex().withAdded(records, oldSize, records::isUnregistered),
+                cur.getPlateIndex().withAdded(records, oldSize), cur.getFuzzyPlateIndex(),
+                cur.getOccupancyIndex().withChanges(records, oldSize, closedBefore),
+                cur.getStatsIndex().withChanges(base, records, oldSize, closedBefore, retested), cur.getLotIndex(),
+                LocalDateTime.now());
+            if (!snapshot.compareAndSet(cur, next)) throw new IllegalStateException("Snapshot replaced during an update");
+        } catch (RuntimeException | Error e) {
+            undo.forEach((key, pos) -> {
+                if (pos == null) openSessions.remove(key);
+                else openSessions.put(key, pos);
+            });
+            overstays.rebuild(base);
+            feedClock = feedClockBefore;
+            throw e;
+        }
+        base.supersede();
+        // Pages only upsert pushed rows, so a violation that was cleared needs a refetch
+        events.publishEvent(new DatasetChangedEvent(next, cleared ? null : changed));
+        metrics.updated(System.nanoTime() - started);
+        System.out.println("[Valid8Service] Applied " + rows.size() + " gate rows, flagged "
+            + expired.size() + " overstays in " + (System.nanoTime() - started) / 1_000_000
+            + " ms (version " + next.getVersion() + ")");
+    }
+
+    // Keeps the value key had in openSessions before this update first changed it
+    private void remember(Map<Long, Integer> undo, long key) {
+        if (!undo.containsKey(key)) undo.put(key, openSessions.get(key));
+    }
+
+    /**
+     * The time open sessions are checked against: the wall clock, or with
+     * valid8.overstay.clock=feed the latest gate event time seen, for
+     * replaying recorded data.
+     */
+    private long currentClock() {
+        return "feed".equalsIgnoreCase(overstayClock) ? feedClock : RecordStore.toKey(LocalDateTime.now());
+    }
+
+    /** Whether expirations depend on the wall clock and must be checked as time passes. */
+    public boolean usesWallClock() {
+        return !"feed".equalsIgnoreCase(overstayClock);
+    }
+
+    public DatasetSnapshot getSnapshot()  { return snapshot.get(); }
+    public LocalDateTime getLastLoaded() { return snapshot.get().getLoadedAt(); }
     public String getLoadError()         { return loadError; }
 
     
 
     public List<LotSummary> getLotSummaries() {
+        return snapshot.get().getLotSummaries();
+    }
+
+    private List<LotSummary> buildLotSummaries(Map<String, LotAggregate> aggregates) {
         List<LotSummary> summaries = new ArrayList<>();
 
-        for (LotConfig lc : AutoGate.LOT_CONFIGS) {
-            List<ParkingRecord> lotRecords = records.stream()
-                .filter(r -> r.getLot().equalsIgnoreCase(lc.getName()))
-                .collect(Collectors.toList());
+        for (LotAggregate agg : aggregates.values()) {
+            LotConfig lc = agg.getConfig();
 
-            
-            int inLotNow = lotSimulated.getOrDefault(lc.getName(),
-                (int) lotRecords.stream().filter(ParkingRecord::isStillInLot).count());
+            int inLotNow = agg.getInLotCount();
 
             int availableNow = AutoGate.computeAvailable(lc.getCapacity(), inLotNow);
 
-            long violationsCount = lotRecords.stream()
-                .filter(r -> !r.legal())
-                .count();
-
             double occupancyPct = lc.getCapacity() > 0
                 ? (double) inLotNow / lc.getCapacity() * 100.0
                 : 0.0;
@@ -108,8 +432,8 @@ public class Valid8Service {
             s.setCapacity(lc.getCapacity());
             s.setInLotNow(inLotNow);
             s.setAvailableNow(availableNow);
-            s.setTotalSessions(lotRecords.size());
-            s.setViolationsCount((int) violationsCount);
+            s.setTotalSessions(agg.getTotalSessions());
+            s.setViolationsCount(agg.getViolationsCount());
             s.setOccupancyPercent(Math.round(occupancyPct * 10.0) / 10.0);
             s.setLatitude(lc.getLatitude());
             s.setLongitude(lc.getLongitude());
@@ -117,34 +441,355 @@ public class Valid8Service {
 
             summaries.add(s);
         }
-        return summaries;
+        return Collections.unmodifiableList(summaries);
     }
 
  
     public List<ViolationItem> getViolations() {
+        return getViolations(snapshot.get());
+    }
+
+    public List<ViolationItem> getViolations(DatasetSnapshot snap) {
+        RecordStore records = snap.getRecords();
+        List<ViolationItem> items = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            if (records.isViolation(i)) items.add(toViolationItem(records.get(i)));
+        }
+        return items;
+    }
+
+    public ItemPage<ViolationItem> getViolations(DatasetSnapshot snap, ListQuery query) {
+        RecordIndex.Page page = snap.getViolationIndex().query(snap.getRecords(), snap.getPlateIndex(), query);
+        return new ItemPage<>(snap.getVersion(),
+            toViolationItems(pick(snap, page)), page.getNextCursor());
+    }
+
+    /**
+     * Writes the violations to gen as they are read from the snapshot,
+     * without building items: the whole list in dataset order when query is
+     * null, otherwise every row matching its filters from its cursor on,
+     * ignoring the limit. With lines each row is an NDJSON line, otherwise
+     * the rows form one JSON array.
+     *
+     * @return the number of rows written
+     */
+    public int writeViolations(DatasetSnapshot snap, ListQuery query, JsonGenerator gen, boolean lines)
+            throws IOException {
+        return writeRows(snap, snap.getViolationIndex(), query, gen, lines, true);
+    }
+
+    public List<ViolationItem> toViolationItems(Collection<ParkingRecord> records) {
         return records.stream()
-            .filter(r -> !r.legal())
-            .map(r -> new ViolationItem(
-                r.getPlate(),
-                r.getLot(),
-                r.getEntryTime() != null ? r.getEntryTime().format(DT_FMT) : "—",
-                r.getExitTime()  != null ? r.getExitTime().format(DT_FMT)  : "Still In Lot",
-                r.isStillInLot() ? "Still In Lot" : "Left"
-            ))
+            .filter(IS_VIOLATION)
+            .map(this::toViolationItem)
             .collect(Collectors.toList());
     }
 
+    private ViolationItem toViolationItem(ParkingRecord r) {
+        return new ViolationItem(
+            r.getPlate(),
+            r.getLot(),
+            r.getEntryTime() != null ? r.getEntryTime().format(DT_FMT) : "—",
+            r.getExitTime()  != null ? r.getExitTime().format(DT_FMT)  : "Still In Lot",
+            r.isStillInLot() ? "Still In Lot" : "Left",
+            r.violationReason(),
+            r.getEntryTime() != null ? r.getDurationMinutes() : 0
+        );
+    }
+
    
 
     public List<UnregisteredItem> getUnregistered() {
+        return getUnregistered(snapshot.get());
+    }
+
+    public List<UnregisteredItem> getUnregistered(DatasetSnapshot snap) {
+        RecordStore records = snap.getRecords();
+        List<UnregisteredItem> items = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++) {
+            if (records.isUnregistered(i)) items.add(toUnregisteredItem(snap, records.get(i)));
+        }
+        return items;
+    }
+
+    public ItemPage<UnregisteredItem> getUnregistered(DatasetSnapshot snap, ListQuery query) {
+        RecordIndex.Page page = snap.getUnregisteredIndex().query(snap.getRecords(), snap.getPlateIndex(), query);
+        return new ItemPage<>(snap.getVersion(),
+            toUnregisteredItems(snap, pick(snap, page)), page.getNextCursor());
+    }
+
+    /** Same as writeViolations, for the unregistered list. */
+    public int writeUnregistered(DatasetSnapshot snap, ListQuery query, JsonGenerator gen, boolean lines)
+            throws IOException {
+        return writeRows(snap, snap.getUnregisteredIndex(), query, gen, lines, false);
+    }
+
+    private static int writeRows(DatasetSnapshot snap, RecordIndex index, ListQuery query,
+                                 JsonGenerator gen, boolean lines, boolean violations) throws IOException {
+        RecordStore records = snap.getRecords();
+        RecordJsonWriter out = new RecordJsonWriter(snap, gen, lines);
+        if (lines) gen.setRootValueSeparator(null); // rows end with their own newline
+        else gen.writeStartArray();
+        if (query == null) {
+            for (int i = 0; i < records.size(); i++) {
+                if (violations ? records.isViolation(i) : records.isUnregistered(i)) write(out, i, violations);
+            }
+        } else {
+            PrimitiveIterator.OfInt it = index.scan(records, snap.getPlateIndex(), query);
+            while (it.hasNext()) write(out, it.nextInt(), violations);
+        }
+        if (!lines) gen.writeEndArray();
+        return out.getRows();
+    }
+
+    private static void write(RecordJsonWriter out, int pos, boolean violation) throws IOException {
+        if (violation) out.writeViolation(pos);
+        else out.writeUnregistered(pos);
+    }
+
+    public List<UnregisteredItem> toUnregisteredItems(DatasetSnapshot snap, Collection<ParkingRecord> records) {
         return records.stream()
-            .filter(r -> r.getRegistration() == null)
-            .map(r -> new UnregisteredItem(
-                r.getPlate(),
+            .filter(IS_UNREGISTERED)
+            .map(r -> toUnregisteredItem(snap, r))
+            .collect(Collectors.toList());
+    }
+
+    private UnregisteredItem toUnregisteredItem(DatasetSnapshot snap, ParkingRecord r) {
+        return new UnregisteredItem(
+            r.getPlate(),
+            r.getLot(),
+            r.getEntryTime() != null ? r.getEntryTime().format(DT_FMT) : "—",
+            r.getExitTime()  != null ? r.getExitTime().format(DT_FMT)  : "Still In Lot",
+            snap.getFuzzyPlateIndex().suggest(r.getPlate())
+        );
+    }
+
+    /** Registration and sessions of a plate, or null if the plate is unknown. */
+    public PlateStatus getPlateStatus(DatasetSnapshot snap, String plate) {
+        String p = plate.trim().toUpperCase();
+        PlateIndex index = snap.getPlateIndex();
+        if (!index.contains(p)) return null;
+
+        List<ParkingRecord> recs = new ArrayList<>();
+        for (int pos : index.sessions(p)) recs.add(snap.getRecords().get(pos));
+        recs.sort(Comparator.comparing(ParkingRecord::getEntryTime,
+            Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        List<PlateSession> sessions = new ArrayList<>();
+        String currentLot = null;
+        for (ParkingRecord r : recs) {
+            if (r.isStillInLot()) currentLot = r.getLot();
+            sessions.add(new PlateSession(
                 r.getLot(),
                 r.getEntryTime() != null ? r.getEntryTime().format(DT_FMT) : "—",
-                r.getExitTime()  != null ? r.getExitTime().format(DT_FMT)  : "Still In Lot"
-            ))
-            .collect(Collectors.toList());
+                r.getExitTime()  != null ? r.getExitTime().format(DT_FMT)  : "Still In Lot",
+                r.isStillInLot() ? "Still In Lot" : "Left",
+                r.violationReason()
+            ));
+        }
+        return new PlateStatus(p, snap.getRegistrations().get(p), currentLot, sessions);
+    }
+
+    /** Known plates starting with prefix, in order; after is the previous page's cursor. */
+    public ItemPage<PlateMatch> searchPlates(DatasetSnapshot snap, String prefix, String after, int limit) {
+        int n = Math.max(1, Math.min(MAX_PLATE_MATCHES, limit));
+        PlateIndex index = snap.getPlateIndex();
+        List<PlateMatch> items = new ArrayList<>();
+        for (String plate : index.prefix(prefix.trim().toUpperCase(),
+                after == null || after.isBlank() ? null : after.trim().toUpperCase(), n)) {
+            int[] positions = index.sessions(plate);
+            String currentLot = null;
+            for (int pos : positions) {
+                ParkingRecord r = snap.getRecords().get(pos);
+                if (r.isStillInLot()) currentLot = r.getLot();
+            }
+            Registration reg = snap.getRegistrations().get(plate);
+            items.add(new PlateMatch(plate, reg != null, reg != null ? reg.getLot() : null,
+                currentLot, positions.length));
+        }
+        String next = items.size() == n ? items.get(n - 1).getLicensePlate() : null;
+        return new ItemPage<>(snap.getVersion(), items, next);
+    }
+
+    /**
+     * Occupancy curves bucketed by stepMinutes over [from, to]: one series for
+     * the given lot, or one per configured lot when lot is null. Missing bounds
+     * default to the first and last gate event, a missing step to a size that
+     * gives about 200 points.
+     */
+    public List<OccupancySeries> getOccupancy(DatasetSnapshot snap, String lot,
+                                              LocalDateTime from, LocalDateTime to, Long stepMinutes) {
+        OccupancyIndex index = snap.getOccupancyIndex();
+        List<LotConfig> lots = new ArrayList<>();
+        if (lot == null || lot.isBlank()) {
+            lots.addAll(snap.getLotIndex().getLots());
+        } else {
+            String name = lot.trim();
+            LotConfig config = snap.getLotIndex().find(name);
+            if (config == null && index.lot(name) == null) {
+                throw new IllegalArgumentException("Unknown lot: " + name);
+            }
+            lots.add(config != null ? config : new LotConfig(name, 0, 0, 0));
+        }
+
+        long start = from != null ? RecordStore.toKey(from) : Long.MAX_VALUE;
+        long end   = to   != null ? RecordStore.toKey(to)   : Long.MIN_VALUE;
+        for (LotConfig lc : lots) {
+            OccupancyIndex.Lot o = index.lot(lc.getName());
+            if (o == null) continue;
+            if (from == null && o.firstEvent() != RecordStore.NO_TIME) start = Math.min(start, o.firstEvent());
+            if (to == null) end = Math.max(end, o.lastEvent());
+        }
+        boolean empty = start == Long.MAX_VALUE || end == Long.MIN_VALUE; // no events and no bound given
+        if (!empty && from == null) start -= Math.floorMod(start, 60);
+        if (!empty && end < start) throw new IllegalArgumentException("to must not be before from");
+
+        long step;
+        if (stepMinutes != null) {
+            if (stepMinutes < 1 || stepMinutes > 366 * 1440) {
+                throw new IllegalArgumentException("step must be between one minute and 366 days");
+            }
+            step = stepMinutes;
+        } else {
+            step = STEP_LADDER[STEP_LADDER.length - 1];
+            for (long s : STEP_LADDER) {
+                if (empty || (end - start) / (s * 60) < 200) { step = s; break; }
+            }
+        }
+        long stepSeconds = step * 60;
+        long count = empty ? 0 : (end - start) / stepSeconds + 1;
+        if (count > MAX_OCCUPANCY_POINTS) {
+            throw new IllegalArgumentException("Range gives " + count + " points, the maximum is "
+                + MAX_OCCUPANCY_POINTS + "; use a larger step");
+        }
+
+        List<OccupancySeries> out = new ArrayList<>(lots.size());
+        for (LotConfig lc : lots) {
+            OccupancyIndex.Lot o = index.lot(lc.getName());
+            List<OccupancyPoint> points = new ArrayList<>((int) count);
+            for (long i = 0; i < count; i++) {
+                long t = start + i * stepSeconds, u = t + stepSeconds;
+                String time = RecordStore.fromKey(t).format(SERIES_FMT);
+                if (o == null) {
+                    points.add(new OccupancyPoint(time, 0, 0.0, 0, 0));
+                } else {
+                    points.add(new OccupancyPoint(time, o.at(t),
+                        Math.round(o.average(t, u) * 100.0) / 100.0, o.entered(t, u), o.exited(t, u)));
+                }
+            }
+            out.add(new OccupancySeries(lc.getName(), lc.getCapacity(), step, points));
+        }
+        return out;
+    }
+
+    /**
+     * Session trends from the rollups: one series for lot, or one per
+     * configured lot. Each point covers the sessions that started in its
+     * hour or day; dwell figures cover those of them that have left.
+     * Without from/to the range covers the first to the last day with
+     * sessions.
+     */
+    public List<StatsSeries> getStats(DatasetSnapshot snap, String lot, String granularity,
+                                      LocalDateTime from, LocalDateTime to) {
+        StatsIndex index = snap.getStatsIndex();
+        String unit;
+        long step;
+        String g = granularity == null ? "" : granularity.trim().toLowerCase();
+        if (g.isEmpty() || g.equals("day") || g.equals("daily") || g.equals("1d")) {
+            unit = "day";
+            step = 86_400;
+        } else if (g.equals("hour") || g.equals("hourly") || g.equals("1h")) {
+            unit = "hour";
+            step = 3_600;
+        } else {
+            throw new IllegalArgumentException("granularity must be hour or day");
+        }
+
+        List<String> lots = new ArrayList<>();
+        if (lot == null || lot.isBlank()) {
+            for (LotConfig lc : snap.getLotIndex().getLots()) lots.add(lc.getName());
+        } else {
+            String name = lot.trim();
+            LotConfig config = snap.getLotIndex().find(name);
+            if (config == null && !index.hasLot(name)) {
+                throw new IllegalArgumentException("Unknown lot: " + name);
+            }
+            lots.add(config != null ? config.getName() : name);
+        }
+
+        long start = from != null ? RecordStore.toKey(from) : Long.MAX_VALUE;
+        long end   = to   != null ? RecordStore.toKey(to)   : Long.MIN_VALUE;
+        for (String name : lots) {
+            long first = index.firstDay(name);
+            if (first == RecordStore.NO_TIME) continue;
+            if (from == null) start = Math.min(start, first);
+            if (to == null) end = Math.max(end, index.lastDay(name) + 86_400 - step);
+        }
+        boolean empty = start == Long.MAX_VALUE || end == Long.MIN_VALUE; // no sessions and no bound given
+        if (!empty) start -= Math.floorMod(start, step);
+        if (!empty && end < start) throw new IllegalArgumentException("to must not be before from");
+        long count = empty ? 0 : (end - start) / step + 1;
+        if (count > MAX_STATS_POINTS) {
+            throw new IllegalArgumentException("Range gives " + count + " points, the maximum is "
+                + MAX_STATS_POINTS + "; use granularity=day or a shorter range");
+        }
+
+        List<StatsSeries> out = new ArrayList<>(lots.size());
+        for (String name : lots) {
+            List<StatsPoint> points = new ArrayList<>((int) count);
+            for (long i = 0; i < count; i++) {
+                long t = start + i * step;
+                StatsIndex.Totals s = index.sum(name, t, t + step);
+                StatsPoint p = new StatsPoint();
+                p.setTime(RecordStore.fromKey(t).format(SERIES_FMT));
+                p.setSessions(s.getSessions());
+                p.setViolations(s.getViolations());
+                p.setUnregistered(s.getUnregistered());
+                p.setUnregisteredPercent(s.getSessions() == 0 ? 0.0
+                    : Math.round(s.getUnregistered() * 1000.0 / s.getSessions()) / 10.0);
+                p.setDeparted(s.getDeparted());
+                if (s.getDeparted() > 0) {
+                    p.setAverageDwellMinutes(minutes((double) s.getDwellSeconds() / s.getDeparted()));
+                    p.setP50DwellMinutes(minutes(s.dwellQuantile(0.50)));
+                    p.setP90DwellMinutes(minutes(s.dwellQuantile(0.90)));
+                    p.setP99DwellMinutes(minutes(s.dwellQuantile(0.99)));
+                }
+                points.add(p);
+            }
+            out.add(new StatsSeries(name, unit, points));
+        }
+        return out;
+    }
+
+    /**
+     * The k lots nearest to latitude, longitude with at least minAvailable
+     * free spaces in snap's generation, nearest first.
+     */
+    public List<NearbyLot> getNearestLots(DatasetSnapshot snap, double latitude, double longitude,
+                                          int minAvailable, int k) {
+        if (!(Math.abs(latitude) <= 90) || !(Math.abs(longitude) <= 180)) {
+            throw new IllegalArgumentException("lat must be within ±90 and lon within ±180");
+        }
+        if (k < 1 || k > MAX_NEAREST_LOTS) {
+            throw new IllegalArgumentException("k must be between 1 and " + MAX_NEAREST_LOTS);
+        }
+        List<LotSummary> summaries = snap.getLotSummaries();
+        LotIndex.Neighbors near = snap.getLotIndex().nearest(latitude, longitude, k,
+            slot -> summaries.get(slot).getAvailableNow() >= minAvailable);
+        List<NearbyLot> out = new ArrayList<>(near.size());
+        for (int i = 0; i < near.size(); i++) {
+            out.add(new NearbyLot(summaries.get(near.slot(i)), (int) Math.round(near.meters(i))));
+        }
+        return out;
+    }
+
+    private static double minutes(double seconds) {
+        return Math.round(seconds / 6.0) / 10.0;
+    }
+
+    private static List<ParkingRecord> pick(DatasetSnapshot snap, RecordIndex.Page page) {
+        List<ParkingRecord> out = new ArrayList<>(page.getPositions().length);
+        for (int pos : page.getPositions()) out.add(snap.getRecords().get(pos));
+        return out;
     }
 }
@@ -1,5 +1,7 @@
 package com.valid8.util;
 
+import java.text.ParsePosition;
+import java.time.DateTimeException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
@@ -8,7 +10,7 @@ import java.util.List;
 
 public class TimeUtils {
 
-  
+
     private static final List<DateTimeFormatter> FORMATTERS = List.of(
         DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
         DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
@@ -18,14 +20,121 @@ public class TimeUtils {
         DateTimeFormatter.ISO_LOCAL_DATE_TIME
     );
 
+    /** Fixed-width layouts handled by the hand-written digit parser. */
+    private enum Layout {
+        ISO_SECONDS,    // yyyy-MM-dd HH:mm:ss or yyyy-MM-ddTHH:mm:ss
+        ISO_MINUTES,    // yyyy-MM-dd HH:mm    or yyyy-MM-ddTHH:mm
+        US_SECONDS,     // MM/dd/yyyy HH:mm:ss
+        US_MINUTES      // MM/dd/yyyy HH:mm
+    }
+
     /**
-     * @param raw 
-     * @return 
+     * @param raw
+     * @return
      */
     public static LocalDateTime parse(String raw) {
         if (raw == null || raw.isBlank()) return null;
         String trimmed = raw.trim();
+        Layout layout = sniff(trimmed);
+        if (layout != null) {
+            LocalDateTime fast = parseLayout(trimmed, layout);
+            if (fast != null) return fast;
+        }
+        return parseWithFormatters(trimmed);
+    }
+
+    /**
+     * Returns a parser for a single column of timestamps. The layout is
+     * detected from the first non-blank value and reused for the rest of
+     * the column; values that do not match it go through {@link #parse}.
+     * Instances are not thread-safe.
+     */
+    public static ColumnParser columnParser() {
+        return new ColumnParser();
+    }
+
+    public static final class ColumnParser {
+
+        private Layout layout;
+        private boolean sniffed;
+
+        private ColumnParser() {}
+
+        public LocalDateTime parse(String raw) {
+            if (raw == null || raw.isBlank()) return null;
+            String trimmed = raw.trim();
+            if (!sniffed) {
+                layout = sniff(trimmed);
+                sniffed = true;
+            }
+            if (layout != null) {
+                LocalDateTime fast = parseLayout(trimmed, layout);
+                if (fast != null) return fast;
+            }
+            return TimeUtils.parse(trimmed);
+        }
+    }
+
+    private static Layout sniff(String s) {
+        int len = s.length();
+        if (len != 16 && len != 19) return null;
+        boolean seconds = len == 19;
+        if (seconds && s.charAt(16) != ':') return null;
+        if (s.charAt(13) != ':') return null;
+
+        if (s.charAt(4) == '-' && s.charAt(7) == '-'
+                && (s.charAt(10) == ' ' || s.charAt(10) == 'T')) {
+            return seconds ? Layout.ISO_SECONDS : Layout.ISO_MINUTES;
+        }
+        if (s.charAt(2) == '/' && s.charAt(5) == '/' && s.charAt(10) == ' ') {
+            return seconds ? Layout.US_SECONDS : Layout.US_MINUTES;
+        }
+        return null;
+    }
+
+    /**
+     * @return the parsed value, or null if s does not fit the layout
+     */
+    private static LocalDateTime parseLayout(String s, Layout layout) {
+        if (sniff(s) != layout) return null;
+        int year, month, day;
+        if (layout == Layout.ISO_SECONDS || layout == Layout.ISO_MINUTES) {
+            year  = digits(s, 0, 4);
+            month = digits(s, 5, 7);
+            day   = digits(s, 8, 10);
+        } else {
+            month = digits(s, 0, 2);
+            day   = digits(s, 3, 5);
+            year  = digits(s, 6, 10);
+        }
+        int hour   = digits(s, 11, 13);
+        int minute = digits(s, 14, 16);
+        int second = s.length() == 19 ? digits(s, 17, 19) : 0;
+        if ((year | month | day | hour | minute | second) < 0 || year == 0) return null;
+        try {
+            return LocalDateTime.of(year, month, day, hour, minute, second);
+        } catch (DateTimeException e) {
+            return null; // out-of-range field; let the formatters resolve or reject it
+        }
+    }
+
+    private static int digits(String s, int from, int to) {
+        int v = 0;
+        for (int i = from; i < to; i++) {
+            int d = s.charAt(i) - '0';
+            if (d < 0 || d > 9) return -1;
+            v = v * 10 + d;
+        }
+        return v;
+    }
+
+    private static LocalDateTime parseWithFormatters(String trimmed) {
         for (DateTimeFormatter fmt : FORMATTERS) {
+            ParsePosition pos = new ParsePosition(0);
+            if (fmt.parseUnresolved(trimmed, pos) == null
+                    || pos.getErrorIndex() >= 0 || pos.getIndex() != trimmed.length()) {
+                continue;
+            }
             try {
                 return LocalDateTime.parse(trimmed, fmt);
             } catch (DateTimeParseException ignored) {
@@ -21,12 +21,21 @@ function showError(msg) {
 }
 
 
+// Starts a reload (or joins the one already running) and polls its job
+// until it finishes, showing the phase and rows parsed in #lastUpdated.
 async function reloadData() {
     try {
         const res = await fetch('/api/reload', { method: 'POST' });
-        const data = await res.json();
-        if (!data.success) {
-            showError('Reload failed: ' + (data.error || 'unknown'));
+        let job = await res.json();
+        while (job.state === 'running') {
+            showReloadProgress(job);
+            await new Promise(resolve => setTimeout(resolve, 500));
+            const poll = await fetch('/api/reload/' + job.id);
+            if (!poll.ok) throw new Error('reload job ' + job.id + ' is no longer available');
+            job = await poll.json();
+        }
+        if (job.state === 'failed') {
+            showError('Reload failed: ' + (job.error || 'unknown'));
         } else {
             showError(null);
         }
@@ -35,3 +44,64 @@ async function reloadData() {
     }
     if (typeof refreshPage === 'function') refreshPage();
 }
+
+function showReloadProgress(job) {
+    let text = 'Reloading: ' + job.phase;
+    if (job.rowsParsed > 0) text += ' (' + job.rowsParsed.toLocaleString('en-US') + ' rows)';
+    document.querySelectorAll('#lastUpdated').forEach(el => el.textContent = text);
+}
+
+
+// Subscribes to server-pushed updates for the given topics. handlers maps
+// event names to callbacks taking the parsed payload; resync() refetches the
+// page's data and runs on every (re)connect and whenever the server asks for
+// it. Browsers without EventSource fall back to polling resync().
+function subscribeUpdates(topics, handlers, resync) {
+    if (!window.EventSource) {
+        resync();
+        setInterval(resync, 5000);
+        return;
+    }
+    const source = new EventSource('/api/stream?topics=' + encodeURIComponent(topics.join(',')));
+    source.addEventListener('open', () => resync());
+    source.addEventListener('resync', () => resync());
+    Object.keys(handlers).forEach(name =>
+        source.addEventListener(name, e => handlers[name](JSON.parse(e.data))));
+    source.addEventListener('error', () => {
+        if (source.readyState !== EventSource.OPEN) {
+            showError('Live updates disconnected — reconnecting…');
+        }
+    });
+}
+
+
+// Fetches one page of a paged list endpoint (/api/violations or
+// /api/unregistered). Returns { items, nextCursor }; nextCursor is null on
+// the last page.
+const PAGE_SIZE = 200;
+
+async function fetchPage(path, cursor) {
+    let url = path + '?limit=' + PAGE_SIZE;
+    if (cursor) url += '&cursor=' + encodeURIComponent(cursor);
+    const res = await fetch(url);
+    if (!res.ok) throw new Error('HTTP ' + res.status);
+    return res.json();
+}
+
+
+// Merges pushed rows into list in place, replacing rows for the same
+// session (plate, lot and time in) and appending new ones.
+function upsertItems(list, items) {
+    const key = r => r.licensePlate + '|' + r.lotName + '|' + r.timeIn;
+    const index = new Map(list.map((r, i) => [key(r), i]));
+    for (const item of items) {
+        const k = key(item);
+        if (index.has(k)) {
+            list[index.get(k)] = item;
+        } else {
+            index.set(k, list.length);
+            list.push(item);
+        }
+    }
+    return list;
+}
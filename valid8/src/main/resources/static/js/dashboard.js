@@ -92,5 +92,9 @@ function escHtml(str) {
 }
 
 
-refreshPage();
-setInterval(refreshPage, 5000);
+subscribeUpdates(['summary'], {
+    summary: data => {
+        renderCards(data.lots);
+        setLastUpdated();
+    }
+}, refreshPage);
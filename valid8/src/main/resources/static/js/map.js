@@ -46,34 +46,7 @@ async function refreshPage() {
         const res = await fetch('/api/summary');
         if (!res.ok) throw new Error('HTTP ' + res.status);
         const lots = await res.json();
-
-        for (const lot of lots) {
-            const color = markerColor(lot.availabilityColor);
-            const popupHtml = buildPopup(lot);
-            const tooltipText = buildTooltip(lot);
-
-            if (markers[lot.lotName]) {
-               
-                const m = markers[lot.lotName];
-                m.setStyle({ color: color, fillColor: color });
-                m.setPopupContent(popupHtml);
-                m.setTooltipContent(tooltipText);
-            } else {
-              
-                const m = L.circleMarker([lot.latitude, lot.longitude], {
-                    radius: 14,
-                    color: color,
-                    fillColor: color,
-                    fillOpacity: 0.85,
-                    weight: 2
-                });
-                m.bindPopup(popupHtml);
-                m.bindTooltip(tooltipText, { permanent: false, direction: 'top' });
-                m.addTo(map);
-                markers[lot.lotName] = m;
-            }
-        }
-
+        updateMarkers(lots);
         setLastUpdated();
         showError(null);
     } catch (e) {
@@ -81,6 +54,35 @@ async function refreshPage() {
     }
 }
 
+function updateMarkers(lots) {
+    for (const lot of lots) {
+        const color = markerColor(lot.availabilityColor);
+        const popupHtml = buildPopup(lot);
+        const tooltipText = buildTooltip(lot);
+
+        if (markers[lot.lotName]) {
+           
+            const m = markers[lot.lotName];
+            m.setStyle({ color: color, fillColor: color });
+            m.setPopupContent(popupHtml);
+            m.setTooltipContent(tooltipText);
+        } else {
+          
+            const m = L.circleMarker([lot.latitude, lot.longitude], {
+                radius: 14,
+                color: color,
+                fillColor: color,
+                fillOpacity: 0.85,
+                weight: 2
+            });
+            m.bindPopup(popupHtml);
+            m.bindTooltip(tooltipText, { permanent: false, direction: 'top' });
+            m.addTo(map);
+            markers[lot.lotName] = m;
+        }
+    }
+}
+
 function escHtml(str) {
     return String(str)
         .replace(/&/g, '&amp;')
@@ -89,5 +91,9 @@ function escHtml(str) {
 }
 
 
-refreshPage();
-setInterval(refreshPage, 5000);
+subscribeUpdates(['summary'], {
+    summary: data => {
+        updateMarkers(data.lots);
+        setLastUpdated();
+    }
+}, refreshPage);
@@ -49,6 +49,70 @@ function applySearch() {
     }
 }
 
+let suggestTimer = null;
+
+function suggestPlates() {
+    clearTimeout(suggestTimer);
+    const prefix = document.getElementById('plateBox').value.trim();
+    if (!prefix) return;
+    suggestTimer = setTimeout(async () => {
+        try {
+            const res = await fetch('/api/plates?limit=10&prefix=' + encodeURIComponent(prefix));
+            if (!res.ok) return;
+            const page = await res.json();
+            document.getElementById('plateSuggestions').innerHTML = page.items.map(m => {
+                const label = (m.registered ? 'Registered · ' + m.registeredLot : 'Unregistered')
+                    + (m.currentLot ? ' · in ' + m.currentLot : '');
+                return `<option value="${esc(m.licensePlate)}">${esc(label)}</option>`;
+            }).join('');
+        } catch (e) {
+            // suggestions are best-effort
+        }
+    }, 120);
+}
+
+async function lookupPlate() {
+    const plate = document.getElementById('plateBox').value.trim().toUpperCase();
+    const panel = document.getElementById('plateStatus');
+    if (!plate) {
+        panel.classList.add('hidden');
+        return;
+    }
+    try {
+        const res = await fetch('/api/plates/' + encodeURIComponent(plate));
+        if (res.status === 404) {
+            renderPlateStatus(panel, `${plateBadge(plate)}
+                <span class="text-gray-400 text-sm ml-3">No sessions or registration on file</span>`);
+            return;
+        }
+        if (!res.ok) throw new Error('HTTP ' + res.status);
+        const s = await res.json();
+        const reg = s.registered
+            ? `<span class="text-green-400 font-semibold">Registered · ${esc(s.registeredLot)} · ${s.maxHours} h</span>`
+            : `<span class="text-red-400 font-semibold">Unregistered</span>`;
+        const where = s.currentLot
+            ? `<span class="text-orange-400">In ${esc(s.currentLot)}</span>`
+            : `<span class="text-gray-500">Not in a lot</span>`;
+        const recent = s.sessions.slice(-5).reverse().map(x => `
+            <div class="font-mono text-xs text-gray-400">
+                ${esc(x.timeIn)} → ${esc(x.timeOut)} · ${esc(x.lotName)}
+                ${x.violation ? `<span class="text-red-400">· ${esc(x.violation)}</span>` : ''}
+            </div>`).join('');
+        renderPlateStatus(panel, `
+            <div class="flex flex-wrap items-center gap-4 mb-2">
+                ${plateBadge(s.licensePlate)} ${reg} ${where}
+                <span class="text-gray-500 text-xs">${s.totalSessions} session${s.totalSessions !== 1 ? 's' : ''}</span>
+            </div>${recent}`);
+    } catch (e) {
+        showError('Plate lookup failed: ' + e.message);
+    }
+}
+
+function renderPlateStatus(panel, html) {
+    panel.innerHTML = `<div class="section-bg rounded-xl px-5 py-4">${html}</div>`;
+    panel.classList.remove('hidden');
+}
+
 function renderTable(items) {
     const tbody = document.getElementById('unregBody');
     if (!items || items.length === 0) {
@@ -97,5 +161,12 @@ function esc(str) {
     return String(str).replace(/&/g, '&amp;').replace(/</g, '&lt;').replace(/>/g, '&gt;');
 }
 
-refreshPage();
-setInterval(refreshPage, 5000);
\ No newline at end of file
+subscribeUpdates(['unregistered'], {
+    unregistered: data => {
+        upsertItems(allRecords, data.items);
+        document.getElementById('totalCount').textContent = allRecords.length;
+        populateDropdown(allRecords);
+        applySearch();
+        setLastUpdated();
+    }
+}, refreshPage);
\ No newline at end of file
@@ -218,5 +218,12 @@ function setLastUpdated() {
 }
 
 
-refreshPage();
-setInterval(refreshPage, 5000);
+subscribeUpdates(['summary'], {
+    summary: data => {
+        lotsCache = data.lots;
+        renderCards(lotsCache);
+        updateDropdown(lotsCache);
+        updateMap(lotsCache);
+        setLastUpdated();
+    }
+}, refreshPage);
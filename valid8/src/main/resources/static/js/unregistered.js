@@ -1,11 +1,14 @@
 
 
+let unregisteredItems = [];
+let nextCursor = null;
+
 async function refreshPage() {
     try {
-        const res = await fetch('/api/unregistered');
-        if (!res.ok) throw new Error('HTTP ' + res.status);
-        const items = await res.json();
-        renderTable(items);
+        const page = await fetchPage('/api/unregistered');
+        unregisteredItems = page.items;
+        nextCursor = page.nextCursor;
+        renderTable(unregisteredItems);
         setLastUpdated();
         showError(null);
     } catch (e) {
@@ -13,16 +16,28 @@ async function refreshPage() {
     }
 }
 
+async function loadMore() {
+    if (!nextCursor) return;
+    try {
+        const page = await fetchPage('/api/unregistered', nextCursor);
+        nextCursor = page.nextCursor;
+        renderTable(upsertItems(unregisteredItems, page.items));
+    } catch (e) {
+        showError('Failed to load more unregistered data: ' + e.message);
+    }
+}
+
 function renderTable(items) {
     const tbody = document.getElementById('unregisteredBody');
     const countEl = document.getElementById('unregCount');
 
-    if (countEl) countEl.textContent = items.length + ' unregistered';
+    if (countEl) countEl.textContent = items.length + (nextCursor ? '+' : '') + ' unregistered';
+    document.getElementById('loadMore').classList.toggle('hidden', !nextCursor);
 
     if (!items || items.length === 0) {
         tbody.innerHTML = `
             <tr>
-                <td colspan="3" class="text-center py-16 text-slate-400">
+                <td colspan="4" class="text-center py-16 text-slate-400">
                     <div class="font-semibold">No unregistered plates found</div>
                     <div class="text-sm mt-1 text-slate-500">All vehicles in lots have a registration on file.</div>
                 </td>
@@ -37,10 +52,20 @@ function renderTable(items) {
             <td class="px-6 py-4 text-slate-400 text-sm">${idx + 1}</td>
             <td class="px-6 py-4 font-mono font-bold text-yellow-400">${escHtml(item.licensePlate)}</td>
             <td class="px-6 py-4 text-slate-200">${escHtml(item.lotName)}</td>
+            <td class="px-6 py-4 text-slate-300">${renderSuggestions(item.suggestions)}</td>
         </tr>`;
     }).join('');
 }
 
+function renderSuggestions(suggestions) {
+    if (!suggestions || suggestions.length === 0) return '<span class="text-slate-500">—</span>';
+    return suggestions.map(s => `
+        <span class="inline-block mr-3" title="Edit distance ${s.distance}">
+            <span class="font-mono font-semibold text-emerald-400">${escHtml(s.licensePlate)}</span>
+            <span class="text-slate-400 text-xs">${escHtml(s.lotName)}</span>
+        </span>`).join('');
+}
+
 function escHtml(str) {
     return String(str)
         .replace(/&/g, '&amp;')
@@ -48,5 +73,9 @@ function escHtml(str) {
         .replace(/>/g, '&gt;');
 }
 
-refreshPage();
-setInterval(refreshPage, 5000);
+subscribeUpdates(['unregistered'], {
+    unregistered: data => {
+        renderTable(upsertItems(unregisteredItems, data.items));
+        setLastUpdated();
+    }
+}, refreshPage);
@@ -1,11 +1,14 @@
 
 
+let violationItems = [];
+let nextCursor = null;
+
 async function refreshPage() {
     try {
-        const res = await fetch('/api/violations');
-        if (!res.ok) throw new Error('HTTP ' + res.status);
-        const items = await res.json();
-        renderTable(items);
+        const page = await fetchPage('/api/violations');
+        violationItems = page.items;
+        nextCursor = page.nextCursor;
+        renderTable(violationItems);
         setLastUpdated();
         showError(null);
     } catch (e) {
@@ -13,11 +16,24 @@ async function refreshPage() {
     }
 }
 
+async function loadMore() {
+    if (!nextCursor) return;
+    try {
+        const page = await fetchPage('/api/violations', nextCursor);
+        nextCursor = page.nextCursor;
+        renderTable(upsertItems(violationItems, page.items));
+    } catch (e) {
+        showError('Failed to load more violations: ' + e.message);
+    }
+}
+
 function renderTable(items) {
     const tbody = document.getElementById('violationsBody');
     const countEl = document.getElementById('violationCount');
 
-    if (countEl) countEl.textContent = items.length + ' violation' + (items.length !== 1 ? 's' : '');
+    const more = nextCursor ? '+' : '';
+    if (countEl) countEl.textContent = items.length + more + ' violation' + (items.length !== 1 || more ? 's' : '');
+    document.getElementById('loadMore').classList.toggle('hidden', !nextCursor);
 
     if (!items || items.length === 0) {
         tbody.innerHTML = `
@@ -67,5 +83,9 @@ function escHtml(str) {
         .replace(/>/g, '&gt;');
 }
 
-refreshPage();
-setInterval(refreshPage, 5000);
+subscribeUpdates(['violations'], {
+    violations: data => {
+        renderTable(upsertItems(violationItems, data.items));
+        setLastUpdated();
+    }
+}, refreshPage);
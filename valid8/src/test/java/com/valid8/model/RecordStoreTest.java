@@ -0,0 +1,119 @@
+package com.valid8.model;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class RecordStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static final LocalDateTime T = LocalDateTime.of(2024, 3, 1, 8, 0);
+
+    @Test
+    void unusedGenerationLeavesItsBaseMutable() {
+        RecordStore.Builder builder = new RecordStore.Builder();
+        builder.add("ABC123", "Lot 33", T, null);
+        RecordStore base = builder.build(Collections.emptyMap());
+
+        RecordStore.Mutation dropped = base.mutate();
+        dropped.append(new ParkingRecord("XYZ999", "Lot 33", T.plusHours(1), null));
+        dropped.close(0, T.plusHours(2));
+        assertEquals(2, dropped.publish().size());
+
+        // The published generation was never swapped in, so base is still the latest
+        RecordStore.Mutation retry = base.mutate();
+        retry.append(new ParkingRecord("DEF456", "Lot 33", T.plusHours(3), null));
+        RecordStore next = retry.publish();
+        base.supersede();
+
+        assertEquals(1, base.size());
+        assertTrue(base.isStillInLot(0));
+        assertEquals(2, next.size());
+        assertEquals("DEF456", next.plate(1));
+        assertTrue(next.isStillInLot(0));
+        assertThrows(IllegalStateException.class, base::mutate);
+        assertDoesNotThrow(next::mutate);
+    }
+
+    @Test
+    void readCrossesMappedWindowBoundaries() throws IOException {
+        RecordStore.Builder builder = new RecordStore.Builder();
+        for (int i = 0; i < 70_000; i++) {
+            builder.add("P" + (i % 5_000), "Lot " + (i % 7), T.plusMinutes(i), i % 3 == 0 ? null : T.plusMinutes(i + 30));
+        }
+        RecordStore store = builder.build(Map.of("P42", new Registration("P42", "Lot 0", 2.0)));
+        byte[] bytes = bytes(store);
+
+        for (long window : new long[] {4093, 100_003, Integer.MAX_VALUE}) {
+            RecordStore copy = read(bytes, window);
+            assertEquals(store.size(), copy.size());
+            for (int i = 0; i < store.size(); i += 997) {
+                assertEquals(store.plate(i), copy.plate(i));
+                assertEquals(store.lotId(i), copy.lotId(i));
+                assertEquals(store.isStillInLot(i), copy.isStillInLot(i));
+            }
+            assertEquals(store.plate(store.size() - 1), copy.plate(copy.size() - 1));
+        }
+    }
+
+    @Test
+    void readRejectsCorruptSizesWithoutAllocatingThem() throws IOException {
+        RecordStore.Builder builder = new RecordStore.Builder();
+        builder.add("ABC123", "Lot 33", T, null);
+        builder.add("XYZ999", "Lot 7", T, T.plusHours(1));
+        RecordStore store = builder.build(Map.of("ABC123", new Registration("ABC123", "Lot 33", 2.0)));
+        byte[] bytes = bytes(store);
+
+        RecordStore copy = read(bytes, 16);
+        assertEquals(2, copy.size());
+        assertEquals("XYZ999", copy.plate(1));
+
+        // Plate dictionary count, then the length of its first string
+        for (int at : new int[] {0, 4}) {
+            byte[] corrupt = bytes.clone();
+            ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(at, Integer.MAX_VALUE);
+            assertThrows(IllegalArgumentException.class, () -> read(corrupt, 16));
+        }
+        // Record count: the last int before the five columns of two records
+        byte[] corrupt = bytes.clone();
+        ByteBuffer.wrap(corrupt).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length - 2 * 28 - 4, 1 << 30);
+        assertThrows(IllegalArgumentException.class, () -> read(corrupt, 16));
+        // A plate id past the dictionary
+        byte[] badId = bytes.clone();
+        ByteBuffer.wrap(badId).order(ByteOrder.LITTLE_ENDIAN).putInt(bytes.length - 2 * 28, 99);
+        assertThrows(IllegalArgumentException.class, () -> read(badId, 16));
+
+        assertThrows(RuntimeException.class, () -> read(Arrays.copyOf(bytes, bytes.length - 8), 16));
+    }
+
+    private static byte[] bytes(RecordStore store) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        store.write(Channels.newChannel(out));
+        return out.toByteArray();
+    }
+
+    private RecordStore read(byte[] bytes, long window) throws IOException {
+        Path file = Files.write(dir.resolve("store.bin"), bytes);
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            return RecordStore.read(new MappedInput(ch, window));
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.valid8.service;
+
+import com.valid8.model.ParkingRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class EventJournalTest {
+
+    @TempDir
+    Path dir;
+
+    private final List<EventJournal> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeAll() {
+        opened.forEach(EventJournal::close);
+    }
+
+    @Test
+    void writeFailureRightAfterRollRecovers() throws IOException {
+        EventJournal journal = open(1 << 20);
+        journal.append(rows("A", 2));
+
+        // The next batch gets a fresh segment, then its write fails: only the header is on disk
+        ReflectionTestUtils.invokeMethod(journal, "roll");
+        ((FileChannel) ReflectionTestUtils.getField(journal, "active")).close();
+        assertThrows(IOException.class, () -> journal.append(rows("B", 2)));
+
+        journal.append(rows("C", 2));
+        assertEquals(List.of("A0", "A1", "C0", "C1"), replay(journal));
+
+        journal.close();
+        EventJournal reopened = open(1 << 20);
+        reopened.append(rows("D", 1));
+        assertEquals(List.of("A0", "A1", "C0", "C1", "D0"), replay(reopened));
+    }
+
+    @Test
+    void restartAfterCrashBetweenRollAndFirstWriteRecovers() throws IOException {
+        EventJournal journal = open(1);
+        journal.append(rows("A", 3));
+        journal.close();
+
+        // What an older build left behind: a header-only segment named after the next sequence
+        Path orphan = dir.resolve(String.format("segment-%020d.log", 4));
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(0x314A_3844_494C_4156L).putLong(4).flip();
+        Files.write(orphan, header.array());
+
+        EventJournal reopened = open(1);
+        reopened.append(rows("B", 2));
+        assertEquals(List.of("A0", "A1", "A2", "B0", "B1"), replay(reopened));
+    }
+
+    @Test
+    void compactionKeepsOpenSessionsAndDropsHistoryPastRetention() throws Exception {
+        EventJournal journal = open(1);
+        ReflectionTestUtils.setField(journal, "compactSegments", 2);
+        ReflectionTestUtils.setField(journal, "retentionDays", 30);
+        journal.append(List.of(row("X", "2024-03-01T08:00", null)));
+        journal.append(List.of(row("X", null, "2024-03-01T10:00")));   // closed 40 days before the newest event
+        journal.append(List.of(row("W", null, "2024-03-01T11:00")));   // exit of a session from the CSV data
+        journal.append(List.of(row("Y", "2024-04-10T08:00", null)));
+        journal.append(List.of(row("Z", "2024-04-10T09:00", null), row("Z", null, "2024-04-10T10:00")));
+        journal.append(List.of(row("V", "2024-04-10T11:00", null)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((long) ReflectionTestUtils.getField(journal, "checkpointSeq") < 6) {
+            assertTrue(System.currentTimeMillis() < deadline, "compaction did not run");
+            Thread.sleep(20);
+        }
+        List<String> replayed = new ArrayList<>();
+        journal.replay((type, row) -> replayed.add((type == EventJournal.ROW ? "row " : "session ") + row.getPlate()
+            + (row.isStillInLot() ? " open" : " closed")));
+        assertEquals(List.of("row W closed", "session Z closed", "session Y open", "row V open"), replayed);
+    }
+
+    @Test
+    void compactionWithoutRetentionKeepsEveryClosedSession() throws Exception {
+        EventJournal journal = open(1);
+        ReflectionTestUtils.setField(journal, "compactSegments", 2);
+        journal.append(List.of(row("X", "2020-03-01T08:00", null)));
+        journal.append(List.of(row("X", null, "2020-03-01T10:00")));
+        journal.append(List.of(row("Y", "2024-04-10T08:00", null)));
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        while ((long) ReflectionTestUtils.getField(journal, "checkpointSeq") < 2) {
+            assertTrue(System.currentTimeMillis() < deadline, "compaction did not run");
+            Thread.sleep(20);
+        }
+        List<String> replayed = new ArrayList<>();
+        journal.replay((type, row) -> replayed.add(row.getPlate() + (row.isStillInLot() ? " open" : " closed")));
+        assertEquals(List.of("X closed", "Y open"), replayed);
+    }
+
+    @Test
+    void replayReadsSegmentsLargerThanTheReadBuffer() throws IOException {
+        EventJournal journal = open(1L << 30);
+        for (int i = 0; i < 10; i++) journal.append(rows("P" + i + "-", 5_000));
+        assertEquals(50_000, replay(journal).size());
+    }
+
+    @Test
+    void oversizedPlateIsRejectedWithoutTouchingTheSegment() throws IOException {
+        EventJournal journal = open(1 << 20);
+        journal.append(rows("A", 2));
+        List<ParkingRecord> batch = rows("B", 1);
+        batch.add(new ParkingRecord("P".repeat(70_000), "Lot 33", LocalDateTime.of(2024, 3, 1, 9, 0), null));
+        assertThrows(IllegalArgumentException.class, () -> journal.append(batch));
+
+        journal.append(rows("C", 1));
+        journal.close();
+        assertEquals(List.of("A0", "A1", "C0"), replay(open(1 << 20)));
+    }
+
+    private EventJournal open(long segmentBytes) {
+        EventJournal journal = new EventJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "dirPath", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentBytes", segmentBytes);
+        ReflectionTestUtils.setField(journal, "compactSegments", 1000);
+        ReflectionTestUtils.setField(journal, "fsync", false);
+        ReflectionTestUtils.setField(journal, "retentionDays", 0);
+        journal.open();
+        opened.add(journal);
+        return journal;
+    }
+
+    private static List<ParkingRecord> rows(String prefix, int n) {
+        List<ParkingRecord> rows = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            rows.add(new ParkingRecord(prefix + i, "Lot 33", LocalDateTime.of(2024, 3, 1, 8, 0).plusMinutes(i), null));
+        }
+        return rows;
+    }
+
+    private static ParkingRecord row(String plate, String entry, String exit) {
+        return new ParkingRecord(plate, "Lot 33",
+            entry == null ? null : LocalDateTime.parse(entry), exit == null ? null : LocalDateTime.parse(exit));
+    }
+
+    private static List<String> replay(EventJournal journal) throws IOException {
+        List<String> plates = new ArrayList<>();
+        journal.replay((type, row) -> plates.add(row.getPlate()));
+        return plates;
+    }
+}
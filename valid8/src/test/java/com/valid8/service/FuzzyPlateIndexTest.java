@@ -0,0 +1,142 @@
+package com.valid8.service;
+
+import com.valid8.model.PlateSuggestion;
+import com.valid8.model.Registration;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class FuzzyPlateIndexTest {
+
+    private static final String CHARS = "ABDGILOQSZ0125678X";
+    private static final Map<Character, Character> FOLD = new HashMap<>();
+
+    static {
+        for (char c : "OQD".toCharArray()) FOLD.put(c, '0');
+        for (char c : "IL".toCharArray()) FOLD.put(c, '1');
+        FOLD.put('Z', '2');
+        FOLD.put('S', '5');
+        FOLD.put('G', '6');
+        FOLD.put('B', '8');
+    }
+
+    private final SplittableRandom random = new SplittableRandom(11);
+
+    @Test
+    void suggestionsMatchBruteForce() {
+        Map<String, Registration> regs = new HashMap<>();
+        while (regs.size() < 3_000) {
+            String plate = randomPlate(3 + random.nextInt(3));
+            regs.put(plate, new Registration(plate, "Lot " + random.nextInt(5), 2.0));
+        }
+        List<String> plates = new ArrayList<>(regs.keySet());
+        for (int maxEdits = 0; maxEdits <= 1; maxEdits++) {
+            for (int maxSuggestions : new int[] {1, 3, 1000}) {
+                FuzzyPlateIndex index = FuzzyPlateIndex.build(regs, maxEdits, maxSuggestions);
+                for (int q = 0; q < 500; q++) {
+                    String query = q % 3 == 0 ? randomPlate(2 + random.nextInt(5)) : mutate(plates.get(random.nextInt(plates.size())));
+                    List<PlateSuggestion> actual = index.match(query);
+                    assertEquals(describe(brute(regs, query, maxEdits, maxSuggestions)), describe(actual),
+                        query + " with " + maxEdits + " edits");
+                    assertEquals(describe(actual), describe(index.suggest(query)));
+                }
+            }
+        }
+    }
+
+    @Test
+    void confusablesCostHalfAndTiesGoByPlate() {
+        Map<String, Registration> regs = new HashMap<>();
+        for (String p : new String[] {"ABC123", "A8C123", "ABC12", "ABC1Z3", "ABC1234"}) regs.put(p, new Registration(p, "Lot 1", 2.0));
+        FuzzyPlateIndex index = FuzzyPlateIndex.build(regs, 1, 10);
+
+        List<PlateSuggestion> s = index.suggest(" abc123 ");
+        assertEquals(List.of("A8C123 0.5", "ABC1Z3 0.5", "ABC12 1.0", "ABC1234 1.0"), describe(s));
+        assertTrue(FuzzyPlateIndex.build(regs, 0, 10).suggest("ABC123").stream()
+            .allMatch(p -> p.getDistance() == 0.5));
+    }
+
+    @Test
+    void emptyInputsGiveNoSuggestions() {
+        assertEquals(List.of(), FuzzyPlateIndex.EMPTY.suggest("ABC123"));
+        FuzzyPlateIndex index = FuzzyPlateIndex.build(Map.of("ABC123", new Registration("ABC123", "Lot 1", 2.0)), 1, 5);
+        assertEquals(List.of(), index.suggest(null));
+        assertEquals(List.of(), index.suggest("ZZZZZZZZ"));
+        assertEquals(List.of(), index.suggest("ABC123"));
+        assertEquals(List.of(), FuzzyPlateIndex.build(Map.of("ABC123", new Registration("ABC123", "Lot 1", 2.0)), 1, 0)
+            .suggest("ABC12"));
+    }
+
+    private static List<PlateSuggestion> brute(Map<String, Registration> regs, String plate, int maxEdits, int max) {
+        String query = plate.trim().toUpperCase();
+        return regs.values().stream()
+            .filter(r -> !r.getPlate().equals(query))
+            .filter(r -> levenshtein(fold(query), fold(r.getPlate())) <= maxEdits)
+            .map(r -> new PlateSuggestion(r.getPlate(), r.getLot(), weighted(query, r.getPlate())))
+            .sorted(Comparator.comparingDouble(PlateSuggestion::getDistance).thenComparing(PlateSuggestion::getLicensePlate))
+            .limit(max)
+            .collect(Collectors.toList());
+    }
+
+    private static String fold(String s) {
+        StringBuilder b = new StringBuilder();
+        for (char c : s.toCharArray()) b.append(FOLD.getOrDefault(c, c));
+        return b.toString();
+    }
+
+    private static int levenshtein(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int sub = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + sub, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    // Edit distance on the plates as read, a substitution between confusable characters costing half
+    private static double weighted(String a, String b) {
+        double[][] d = new double[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                char x = a.charAt(i - 1), y = b.charAt(j - 1);
+                double sub = x == y ? 0 : FOLD.getOrDefault(x, x).equals(FOLD.getOrDefault(y, y)) ? 0.5 : 1;
+                d[i][j] = Math.min(d[i - 1][j - 1] + sub, Math.min(d[i - 1][j], d[i][j - 1]) + 1);
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private String randomPlate(int length) {
+        StringBuilder b = new StringBuilder();
+        for (int i = 0; i < length; i++) b.append(CHARS.charAt(random.nextInt(CHARS.length())));
+        return b.toString();
+    }
+
+    // Up to two random edits, some of them confusable swaps
+    private String mutate(String plate) {
+        StringBuilder b = new StringBuilder(plate);
+        for (int e = random.nextInt(3); e > 0; e--) {
+            int i = random.nextInt(b.length() + 1);
+            switch (random.nextInt(3)) {
+                case 0:  if (i < b.length() && b.length() > 1) b.deleteCharAt(i); break;
+                case 1:  b.insert(i, CHARS.charAt(random.nextInt(CHARS.length()))); break;
+                default: if (i < b.length()) b.setCharAt(i, CHARS.charAt(random.nextInt(CHARS.length()))); break;
+            }
+        }
+        return random.nextInt(4) == 0 ? b.toString().toLowerCase() : b.toString();
+    }
+
+    private static List<String> describe(List<PlateSuggestion> s) {
+        return s.stream().map(p -> p.getLicensePlate() + " " + p.getDistance()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,74 @@
+package com.valid8.service;
+
+import com.valid8.model.ParkingRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+
+
+class GateEventQueueTest {
+
+    @Test
+    void parseRejectsPlatesAndLotsLongerThanTheLimit() throws IOException {
+        String ok = "{\"plate\":\"" + "P".repeat(64) + "\",\"lot\":\"Lot 33\",\"type\":\"entry\",\"time\":\"2024-03-01T08:00\"}";
+        List<ParkingRecord> events = parse(ok);
+        assertEquals(64, events.get(0).getPlate().length());
+
+        String plate = "{\"plate\":\"" + "P".repeat(65) + "\",\"lot\":\"Lot 33\",\"type\":\"entry\",\"time\":\"2024-03-01T08:00\"}";
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> parse(ok + "\n" + plate));
+        assertTrue(e.getMessage().startsWith("Event 2: plate"), e.getMessage());
+
+        // 22 three-byte characters are 66 bytes in UTF-8
+        String lot = "{\"plate\":\"ABC123\",\"lot\":\"" + "€".repeat(22) + "\",\"type\":\"entry\",\"time\":\"2024-03-01T08:00\"}";
+        e = assertThrows(IllegalArgumentException.class, () -> parse(lot));
+        assertTrue(e.getMessage().startsWith("Event 1: lot"), e.getMessage());
+    }
+
+    @Test
+    void waitersLearnThatTheirBatchWasDropped() throws Exception {
+        Valid8Service service = mock(Valid8Service.class);
+        doThrow(new IllegalStateException("boom")).when(service)
+            .applyEvents(argThat(batch -> batch.stream().anyMatch(e -> e.getPlate().equals("BAD"))));
+        GateEventQueue queue = new GateEventQueue();
+        ReflectionTestUtils.setField(queue, "service", service);
+        ReflectionTestUtils.setField(queue, "capacity", 16);
+        ReflectionTestUtils.setField(queue, "batchMax", 16);
+        queue.start();
+        try {
+            long first = queue.offer(List.of(entry("A"), entry("B")));
+            assertTrue(queue.awaitApplied(first, 5_000));
+            assertEquals(0, queue.dropped(first, 2));
+
+            long second = queue.offer(List.of(entry("C"), entry("BAD"), entry("D")));
+            assertTrue(queue.awaitApplied(second, 5_000));
+            assertEquals(3, queue.dropped(second, 3));
+
+            long third = queue.offer(List.of(entry("E")));
+            assertTrue(queue.awaitApplied(third, 5_000));
+            assertEquals(0, queue.dropped(third, 1));
+            assertEquals(0, queue.dropped(first, 2));
+            assertEquals(3, queue.getDropped());
+            assertEquals(3, queue.getApplied());
+        } finally {
+            queue.stop();
+        }
+    }
+
+    private static ParkingRecord entry(String plate) {
+        return new ParkingRecord(plate, "Lot 33", LocalDateTime.of(2024, 3, 1, 8, 0), null);
+    }
+
+    private static List<ParkingRecord> parse(String body) throws IOException {
+        return GateEventQueue.parse(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    }
+}
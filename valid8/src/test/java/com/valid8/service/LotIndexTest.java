@@ -0,0 +1,127 @@
+package com.valid8.service;
+
+import com.valid8.model.LotConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class LotIndexTest {
+
+    private final SplittableRandom random = new SplittableRandom(3);
+
+    @Test
+    void nearestMatchesBruteForce() {
+        for (int n : new int[] {1, 2, 7, 64, 1_000}) {
+            List<LotConfig> lots = new ArrayList<>();
+            for (int i = 0; i < n; i++) {
+                // A campus-sized cluster, a few repeated coordinates, and points near the poles and the antimeridian
+                switch (random.nextInt(5)) {
+                    case 0:  lots.add(lot(i, 40.50 + random.nextDouble() * 0.02, -74.45 + random.nextDouble() * 0.02)); break;
+                    case 1:  lots.add(i == 0 ? lot(i, 40.5, -74.45) : lot(i, lots.get(random.nextInt(i)))); break;
+                    case 2:  lots.add(lot(i, (random.nextBoolean() ? 89.9 : -89.9) + random.nextDouble() * 0.1 * Math.signum(0.5 - random.nextDouble()),
+                                 random.nextDouble() * 360 - 180)); break;
+                    case 3:  lots.add(lot(i, random.nextDouble() * 10 - 5, random.nextBoolean() ? 179.99 + random.nextDouble() * 0.01
+                                 : -180 + random.nextDouble() * 0.01)); break;
+                    default: lots.add(lot(i, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180)); break;
+                }
+            }
+            LotIndex index = LotIndex.build(lots);
+            for (int q = 0; q < 300; q++) {
+                LotConfig at = q % 4 == 0 ? lots.get(random.nextInt(n))
+                    : lot(-1, random.nextDouble() * 180 - 90, random.nextDouble() * 360 - 180);
+                int k = random.nextInt(n + 3);
+                IntPredicate accept = q % 3 == 0 ? slot -> true : slot -> slot % 3 != 0;
+                LotIndex.Neighbors got = index.nearest(at.getLatitude(), at.getLongitude(), k, accept);
+                List<Integer> expected = brute(lots, at, k, accept);
+                List<Integer> actual = new ArrayList<>();
+                for (int i = 0; i < got.size(); i++) {
+                    actual.add(got.slot(i));
+                    assertEquals(haversine(at, lots.get(got.slot(i))), got.meters(i), 1e-3);
+                }
+                assertEquals(expected, actual, "n=" + n + " k=" + k + " at " + at.getLatitude() + "," + at.getLongitude());
+            }
+        }
+    }
+
+    @Test
+    void crossesTheAntimeridianAndThePoles() {
+        LotIndex index = LotIndex.build(List.of(lot(0, 0, 179.9), lot(1, 0, -170), lot(2, 89.99, 0), lot(3, 89.99, 180)));
+        LotIndex.Neighbors east = index.nearest(0, -179.95, 1, slot -> true);
+        assertEquals(0, east.slot(0));
+        assertEquals(haversine(lot(-1, 0, -179.95), lot(0, 0, 179.9)), east.meters(0), 1e-3);
+
+        LotIndex.Neighbors pole = index.nearest(90, 45, 2, slot -> true);
+        assertEquals(List.of(2, 3), List.of(pole.slot(0), pole.slot(1)));
+        assertEquals(pole.meters(0), pole.meters(1), 1e-6);
+    }
+
+    @Test
+    void emptyAndDegenerateQueries() {
+        assertEquals(0, LotIndex.EMPTY.nearest(40.5, -74.4, 5, slot -> true).size());
+        LotIndex index = LotIndex.build(List.of(lot(0, 40.5, -74.4), lot(1, 40.5, -74.4), lot(2, 40.6, -74.4)));
+        assertEquals(0, index.nearest(40.5, -74.4, 0, slot -> true).size());
+        assertEquals(0, index.nearest(40.5, -74.4, -1, slot -> true).size());
+        assertEquals(0, index.nearest(40.5, -74.4, 3, slot -> false).size());
+
+        // Equal distances go by slot
+        LotIndex.Neighbors all = index.nearest(40.5, -74.4, 10, slot -> true);
+        assertEquals(3, all.size());
+        assertEquals(List.of(0, 1, 2), List.of(all.slot(0), all.slot(1), all.slot(2)));
+        assertEquals(0.0, all.meters(0));
+        assertEquals(0, index.nearest(40.5, -74.4, 1, slot -> true).slot(0));
+        assertEquals(1, index.nearest(40.5, -74.4, 1, slot -> slot != 0).slot(0));
+    }
+
+    @Test
+    void laterLotsWithTheSameNameAreDropped() {
+        LotIndex index = LotIndex.build(List.of(new LotConfig("Lot 33", 10, 40.5, -74.4),
+            new LotConfig("lot 33", 20, 40.6, -74.4), new LotConfig("Lot 51", 30, 40.7, -74.4)));
+        assertEquals(2, index.size());
+        assertEquals(10, index.find(" LOT 33 ").getCapacity());
+        assertEquals(1, index.slot("Lot 51"));
+        assertEquals(-1, index.slot("Lot 99"));
+        assertEquals(-1, index.slot(null));
+    }
+
+    // Ranked by the same chord the index uses, so ties come out exactly equal, then by slot
+    private static List<Integer> brute(List<LotConfig> lots, LotConfig at, int k, IntPredicate accept) {
+        double[] q = unit(at);
+        return IntStream.range(0, lots.size()).boxed()
+            .filter(accept::test)
+            .sorted(Comparator.<Integer>comparingDouble(i -> chord(q, unit(lots.get(i)))).thenComparingInt(i -> i))
+            .limit(Math.max(0, k))
+            .collect(Collectors.toList());
+    }
+
+    private static double[] unit(LotConfig lot) {
+        double lat = Math.toRadians(lot.getLatitude()), lon = Math.toRadians(lot.getLongitude());
+        return new double[] {Math.cos(lat) * Math.cos(lon), Math.cos(lat) * Math.sin(lon), Math.sin(lat)};
+    }
+
+    private static double chord(double[] a, double[] b) {
+        double dx = a[0] - b[0], dy = a[1] - b[1], dz = a[2] - b[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private static double haversine(LotConfig a, LotConfig b) {
+        double dLat = Math.toRadians(b.getLatitude() - a.getLatitude());
+        double dLon = Math.toRadians(b.getLongitude() - a.getLongitude());
+        double h = Math.pow(Math.sin(dLat / 2), 2)
+            + Math.cos(Math.toRadians(a.getLatitude())) * Math.cos(Math.toRadians(b.getLatitude())) * Math.pow(Math.sin(dLon / 2), 2);
+        return 2 * LotIndex.EARTH_RADIUS_METERS * Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    private static LotConfig lot(int i, double latitude, double longitude) {
+        return new LotConfig("Lot " + i, 100, latitude, longitude);
+    }
+
+    private static LotConfig lot(int i, LotConfig same) {
+        return lot(i, same.getLatitude(), same.getLongitude());
+    }
+}
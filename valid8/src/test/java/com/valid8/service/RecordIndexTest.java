@@ -0,0 +1,172 @@
+package com.valid8.service;
+
+import com.valid8.model.ParkingRecord;
+import com.valid8.model.RecordStore;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class RecordIndexTest {
+
+    private static final LocalDateTime T = LocalDateTime.of(2024, 3, 1, 8, 0);
+    private static final String[] LOTS = {"Lot 33", "Busch Lot 51", "College Ave Deck"};
+
+    private final SplittableRandom random = new SplittableRandom(7);
+
+    @Test
+    void pagesMatchBruteForceAcrossIncrementalGenerations() {
+        RecordStore.Builder builder = new RecordStore.Builder();
+        for (int i = 0; i < 6_000; i++) {
+            LocalDateTime entry = random.nextInt(50) == 0 ? null : T.plusMinutes(random.nextInt(20_000));
+            builder.add(plate(), LOTS[random.nextInt(LOTS.length)], entry,
+                entry != null && random.nextBoolean() ? entry.plusHours(2) : null);
+        }
+        RecordStore records = builder.build(Collections.emptyMap());
+        BitSet member = new BitSet();
+        for (int i = 0; i < records.size(); i++) if (random.nextInt(3) == 0) member.set(i);
+
+        RecordIndex index = RecordIndex.build(records, member::get);
+        PlateIndex plates = PlateIndex.build(records, Collections.emptySet());
+        check(records, plates, index, member);
+
+        for (int gen = 0; gen < 12; gen++) {
+            // Flip the membership of some earlier records, close some, and append a few
+            RecordStore.Mutation m = records.mutate();
+            List<Integer> changed = new ArrayList<>();
+            for (int k = 0; k < 150; k++) {
+                int pos = random.nextInt(records.size());
+                member.flip(pos);
+                changed.add(pos);
+                if (records.isStillInLot(pos) && records.entryKey(pos) != RecordStore.NO_TIME) {
+                    m.close(pos, RecordStore.fromKey(records.entryKey(pos)).plusHours(1));
+                }
+            }
+            int oldSize = records.size();
+            for (int k = 0; k < 40 + gen * 100; k++) {
+                m.append(new ParkingRecord(plate(), LOTS[random.nextInt(LOTS.length)],
+                    T.plusMinutes(random.nextInt(20_000)), null));
+                if (random.nextBoolean()) member.set(oldSize + k);
+            }
+            RecordStore next = m.publish();
+            records.supersede();
+            records = next;
+            index = index.withChanges(records, oldSize, member::get, changed);
+            plates = plates.withAdded(records, oldSize);
+            assertEquals(member.cardinality(), index.size());
+            check(records, plates, index, member);
+        }
+    }
+
+    @Test
+    void emptyIndexAnswersNothing() {
+        RecordIndex index = RecordIndex.build(RecordStore.EMPTY, i -> true);
+        RecordIndex.Page page = index.query(RecordStore.EMPTY, PlateIndex.EMPTY, query(null, null, null, false, null, 10));
+        assertEquals(0, page.getPositions().length);
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void cursorsRoundTripAndResumeAcrossTiesAndTheEpoch() {
+        for (long key : new long[] {RecordStore.NO_TIME, -1L, 0L, 1L, Long.MAX_VALUE}) {
+            for (int pos : new int[] {0, 7, Integer.MAX_VALUE}) {
+                ListQuery.Cursor c = ListQuery.Cursor.parse(new ListQuery.Cursor(key, pos).toString());
+                assertEquals(key, c.entryKey);
+                assertEquals(pos, c.position);
+            }
+        }
+        for (String bad : new String[] {"abc", "12", "12.", ".5", "1.2.3", "1.99999999999", "x.1", "1.-"}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> ListQuery.Cursor.parse(bad));
+            assertEquals("Invalid cursor: " + bad, e.getMessage());
+        }
+        assertNull(query(null, null, null, false, " ", 10).getAfter());
+
+        // Rows with no entry time, rows either side of the epoch, and runs of equal times
+        LocalDateTime epoch = LocalDateTime.of(1970, 1, 1, 0, 0);
+        LocalDateTime[] times = {null, epoch.minusSeconds(1), epoch, epoch, null, epoch.plusSeconds(1), epoch.minusSeconds(1), epoch};
+        RecordStore.Builder builder = new RecordStore.Builder();
+        for (int i = 0; i < 40; i++) builder.add("AB" + i, LOTS[i % 2], times[i % times.length], null);
+        RecordStore records = builder.build(Collections.emptyMap());
+        BitSet member = new BitSet();
+        member.set(0, records.size());
+        RecordIndex index = RecordIndex.build(records, member::get);
+        PlateIndex plates = PlateIndex.build(records, Collections.emptySet());
+        for (String prefix : new String[] {null, "AB1"}) {
+            for (boolean desc : new boolean[] {false, true}) {
+                for (int limit : new int[] {1, 2, 3}) {
+                    ListQuery q = query(null, prefix, null, desc, null, limit);
+                    assertEquals(brute(records, member, q), pages(records, plates, index, q, null, null),
+                        prefix + " " + desc + " " + limit);
+                }
+            }
+        }
+    }
+
+    private void check(RecordStore records, PlateIndex plates, RecordIndex index, BitSet member) {
+        LocalDateTime from = T.plusMinutes(3_000), to = T.plusMinutes(9_000);
+        String[] prefixes = {null, "A", "AB", "ZZ9", "Q1"};
+        for (String lot : new String[] {null, "busch lot 51", "Nowhere"}) {
+            for (String prefix : prefixes) {
+                for (ListQuery.Status status : ListQuery.Status.values()) {
+                    for (boolean desc : new boolean[] {false, true}) {
+                        for (boolean ranged : new boolean[] {false, true}) {
+                            ListQuery q = new ListQuery(lot, ranged ? from : null, ranged ? to : null, status,
+                                prefix, desc, null, 97);
+                            List<Integer> expected = brute(records, member, q);
+                            assertEquals(expected, pages(records, plates, index, q, ranged ? from : null,
+                                ranged ? to : null), lot + " " + prefix + " " + status + " " + desc + " " + ranged);
+                            List<Integer> scanned = new ArrayList<>();
+                            index.scan(records, plates, q).forEachRemaining((int pos) -> scanned.add(pos));
+                            assertEquals(expected, scanned);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static List<Integer> pages(RecordStore records, PlateIndex plates, RecordIndex index, ListQuery first,
+                                       LocalDateTime from, LocalDateTime to) {
+        List<Integer> out = new ArrayList<>();
+        ListQuery q = first;
+        for (int guard = 0; guard < 10_000; guard++) {
+            RecordIndex.Page page = index.query(records, plates, q);
+            for (int pos : page.getPositions()) out.add(pos);
+            if (page.getNextCursor() == null) return out;
+            q = new ListQuery(first.getLot(), from, to, first.getStatus(), first.getPlatePrefix(),
+                first.isDescending(), page.getNextCursor(), first.getLimit());
+        }
+        throw new AssertionError("paging did not end");
+    }
+
+    private static List<Integer> brute(RecordStore records, BitSet member, ListQuery q) {
+        long lo = q.getFrom() == null ? Long.MIN_VALUE : RecordStore.toKey(q.getFrom());
+        long hi = q.getTo() == null ? Long.MAX_VALUE : RecordStore.toKey(q.getTo());
+        Comparator<Integer> order = Comparator.<Integer>comparingLong(records::entryKey).thenComparingInt(i -> i);
+        return IntStream.range(0, records.size()).boxed()
+            .filter(member::get)
+            .filter(i -> q.getLot() == null || records.lot(i).equalsIgnoreCase(q.getLot()))
+            .filter(i -> records.entryKey(i) >= lo && records.entryKey(i) <= hi)
+            .filter(i -> q.getStatus() == ListQuery.Status.ALL
+                || records.isStillInLot(i) == (q.getStatus() == ListQuery.Status.IN_LOT))
+            .filter(i -> q.getPlatePrefix() == null || records.plate(i).startsWith(q.getPlatePrefix()))
+            .sorted(q.isDescending() ? order.reversed() : order)
+            .collect(Collectors.toList());
+    }
+
+    private static ListQuery query(String lot, String prefix, ListQuery.Status status, boolean desc, String cursor,
+                                   int limit) {
+        return new ListQuery(lot, null, null, status, prefix, desc, cursor, limit);
+    }
+
+    // Few distinct plates, so prefixes match several sessions each
+    private String plate() {
+        char a = (char) ('A' + random.nextInt(3)), b = (char) ('A' + random.nextInt(26));
+        return "" + a + b + random.nextInt(40);
+    }
+}
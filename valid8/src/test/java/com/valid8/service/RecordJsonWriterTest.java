@@ -0,0 +1,72 @@
+package com.valid8.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.valid8.model.RecordStore;
+import org.junit.jupiter.api.Test;
+
+import java.io.StringWriter;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class RecordJsonWriterTest {
+
+    private static final DateTimeFormatter DT_FMT = DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm");
+
+    @Test
+    void datesMatchTheJdkFormatterAcrossCenturies() throws Exception {
+        List<LocalDateTime> times = new ArrayList<>(List.of(
+            LocalDateTime.of(1, 1, 1, 0, 0), LocalDateTime.of(1582, 10, 15, 12, 0),
+            LocalDateTime.of(1600, 2, 29, 23, 59, 59), LocalDateTime.of(1700, 2, 28, 1, 0),
+            LocalDateTime.of(1700, 3, 1, 0, 0), LocalDateTime.of(1899, 12, 31, 23, 59),
+            LocalDateTime.of(1969, 12, 31, 23, 59, 59), LocalDateTime.of(1970, 1, 1, 0, 0),
+            LocalDateTime.of(1970, 1, 1, 0, 0, 1), LocalDateTime.of(2000, 2, 29, 12, 30),
+            LocalDateTime.of(2000, 3, 1, 0, 0), LocalDateTime.of(2024, 2, 29, 23, 59),
+            LocalDateTime.of(2100, 2, 28, 23, 59), LocalDateTime.of(2100, 3, 1, 0, 0),
+            LocalDateTime.of(2400, 2, 29, 6, 0), LocalDateTime.of(9999, 12, 31, 23, 59, 59)));
+        SplittableRandom random = new SplittableRandom(9);
+        LocalDateTime first = LocalDateTime.of(1, 1, 1, 0, 0);
+        long span = ChronoUnit.SECONDS.between(first, LocalDateTime.of(9999, 12, 31, 0, 0));
+        for (int i = 0; i < 20_000; i++) {
+            // Runs on the same day exercise the cached date part, jumps the recomputed one
+            LocalDateTime last = times.get(times.size() - 1);
+            times.add(random.nextInt(3) == 0 && last.getYear() < 9999 ? last.plusSeconds(random.nextInt(7_200))
+                : first.plusSeconds(random.nextLong(span)));
+        }
+
+        RecordStore.Builder builder = new RecordStore.Builder();
+        for (int i = 0; i < times.size(); i++) {
+            LocalDateTime exit = i % 5 == 0 ? null : times.get(i).plusMinutes(i % 1_000);
+            builder.add("P" + i, "Lot 33", times.get(i), exit);
+        }
+        builder.add("NOENTRY", "Lot 33", null, null);
+        RecordStore records = builder.build(Collections.emptyMap());
+        DatasetSnapshot snap = new DatasetSnapshot(1L, records, Collections.emptyMap(), Collections.emptyMap(),
+            Collections.emptyList(), RecordIndex.EMPTY, RecordIndex.EMPTY, PlateIndex.EMPTY, FuzzyPlateIndex.EMPTY,
+            OccupancyIndex.EMPTY, StatsIndex.EMPTY, LotIndex.EMPTY, null);
+
+        ObjectMapper mapper = new ObjectMapper();
+        StringWriter out = new StringWriter();
+        try (JsonGenerator gen = mapper.getFactory().createGenerator(out)) {
+            RecordJsonWriter writer = new RecordJsonWriter(snap, gen, true);
+            for (int pos = 0; pos < records.size(); pos++) writer.writeViolation(pos);
+            assertEquals(records.size(), writer.getRows());
+        }
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(records.size(), lines.length);
+        for (int pos = 0; pos < records.size(); pos++) {
+            JsonNode row = mapper.readTree(lines[pos]);
+            LocalDateTime in = RecordStore.fromKey(records.entryKey(pos));
+            LocalDateTime exit = RecordStore.fromKey(records.exitKey(pos));
+            assertEquals(in == null ? "—" : in.format(DT_FMT), row.get("timeIn").asText(), "row " + pos);
+            assertEquals(exit == null ? "Still In Lot" : exit.format(DT_FMT), row.get("timeOut").asText(), "row " + pos);
+        }
+    }
+}
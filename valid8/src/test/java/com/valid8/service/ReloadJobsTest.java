@@ -0,0 +1,71 @@
+package com.valid8.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+
+class ReloadJobsTest {
+
+    @Test
+    void requestsDuringAReloadShareOneFollowUpJob() throws Exception {
+        Valid8Service service = mock(Valid8Service.class);
+        when(service.getSnapshot()).thenReturn(DatasetSnapshot.EMPTY);
+        List<Long> started = new ArrayList<>();
+        Semaphore release = new Semaphore(0);
+        CountDownLatch running = new CountDownLatch(2);
+        doAnswer(inv -> {
+            synchronized (started) {
+                started.add(((ReloadJob) inv.getArgument(0)).getId());
+            }
+            running.countDown();
+            release.acquire();
+            return null;
+        }).when(service).reload(any(ReloadJob.class));
+        ReloadJobs jobs = new ReloadJobs();
+        ReflectionTestUtils.setField(jobs, "service", service);
+        ReflectionTestUtils.setField(jobs, "history", 20);
+
+        ReloadJob first = jobs.submit();
+        ReloadJob second = jobs.submit();
+        ReloadJob third = jobs.submit();
+        assertNotSame(first, second);
+        assertSame(second, third);
+        assertEquals(2, second.getRequests());
+        assertEquals("waiting", second.getPhase());
+
+        release.release();
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+        assertTrue(waitFor(first));
+        assertEquals(ReloadJob.DONE, first.getState());
+
+        // The follow-up is running now, so a new request queues another
+        ReloadJob fourth = jobs.submit();
+        assertNotSame(second, fourth);
+        release.release(2);
+        assertTrue(waitFor(second));
+        assertTrue(waitFor(fourth));
+        synchronized (started) {
+            assertEquals(List.of(first.getId(), second.getId(), fourth.getId()), started);
+        }
+        assertSame(fourth, jobs.get(fourth.getId()));
+    }
+
+    private static boolean waitFor(ReloadJob job) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!job.isFinished()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,119 @@
+package com.valid8.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+class TimeUtilsTest {
+
+    // The layouts TimeUtils accepts, tried in its order
+    private static final List<DateTimeFormatter> REFERENCE = List.of(
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss"),
+        DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm:ss"),
+        DateTimeFormatter.ofPattern("MM/dd/yyyy HH:mm"),
+        DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm"),
+        DateTimeFormatter.ISO_LOCAL_DATE_TIME
+    );
+
+    private static final String[] TEMPLATES = {
+        "%04d-%02d-%02d %02d:%02d:%02d", "%04d-%02d-%02dT%02d:%02d:%02d",
+        "%04d-%02d-%02d %02d:%02d", "%04d-%02d-%02dT%02d:%02d",
+        "US %02d/%02d/%04d %02d:%02d:%02d", "US %02d/%02d/%04d %02d:%02d"
+    };
+
+    private final SplittableRandom random = new SplittableRandom(5);
+
+    @Test
+    void columnParserMatchesTheFormatters() {
+        for (int column = 0; column < 300; column++) {
+            // Mostly one layout per column, sometimes another one mixed in
+            int layout = random.nextInt(TEMPLATES.length);
+            TimeUtils.ColumnParser parser = TimeUtils.columnParser();
+            for (int row = 0; row < 40; row++) {
+                String raw = value(random.nextInt(8) == 0 ? random.nextInt(TEMPLATES.length) : layout);
+                LocalDateTime expected = reference(raw);
+                assertEquals(expected, parser.parse(raw), raw);
+                assertEquals(expected, TimeUtils.parse(raw), raw);
+            }
+        }
+    }
+
+    @Test
+    void leapDaysAndInvalidDatesAgreeWithTheFormatters() {
+        String[] values = {
+            "2024-02-29 12:00:00", "2000-02-29 00:00", "02/29/2024 23:59", "02/29/2000 00:00:00",
+            "1900-02-29 12:00:00", "2023-02-29T08:00", "02/30/2024 08:00", "2024-02-30 08:00:00",
+            "2024-04-31 08:00", "2024-13-01 08:00", "2024-00-10 08:00", "2024-01-00 08:00",
+            "2024-01-01 24:00", "2024-01-01 23:60", "2024-01-01 23:59:60", "0000-01-01 00:00:00",
+            "01/01/0000 00:00", "0001-01-01 00:00", "9999-12-31 23:59:59", "1969-12-31 23:59:59",
+            "1970-01-01 00:00", "12/31/1969 23:59", "2024-03-01T08:00:00.5", "2024-03-01 8:00",
+            "2024/03/01 08:00", "not a date", "2024-03-01 08:00 ", " 03/01/2024 08:00:00"
+        };
+        TimeUtils.ColumnParser parser = TimeUtils.columnParser();
+        for (String raw : values) {
+            LocalDateTime expected = reference(raw);
+            assertEquals(expected, parser.parse(raw), raw);
+            assertEquals(expected, TimeUtils.parse(raw), raw);
+        }
+        assertEquals(LocalDateTime.of(2024, 2, 29, 12, 0), TimeUtils.parse("2024-02-29 12:00:00"));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 8, 0, 0, 500_000_000), parser.parse("2024-03-01T08:00:00.5"));
+    }
+
+    @Test
+    void blanksAreNullAndDoNotFixTheLayout() {
+        TimeUtils.ColumnParser parser = TimeUtils.columnParser();
+        assertNull(parser.parse(null));
+        assertNull(parser.parse(""));
+        assertNull(parser.parse("   "));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 8, 5), parser.parse("03/01/2024 08:05"));
+        assertEquals(LocalDateTime.of(2024, 3, 1, 8, 5, 9), parser.parse("2024-03-01 08:05:09"));
+        assertNull(TimeUtils.parse(null));
+        assertNull(TimeUtils.parse(" "));
+    }
+
+    private static LocalDateTime reference(String raw) {
+        String trimmed = raw.trim();
+        for (DateTimeFormatter fmt : REFERENCE) {
+            try {
+                return LocalDateTime.parse(trimmed, fmt);
+            } catch (DateTimeParseException ignored) {
+            }
+        }
+        return null;
+    }
+
+    // Fields are mostly in range, with occasional day 29-31 and out-of-range values
+    private String value(int template) {
+        int year = random.nextInt(20) == 0 ? random.nextInt(3) : 1899 + random.nextInt(300);
+        int month = random.nextInt(30) == 0 ? random.nextInt(14) : 1 + random.nextInt(12);
+        int day = random.nextInt(4) == 0 ? 28 + random.nextInt(4) : random.nextInt(30) == 0 ? random.nextInt(33) : 1 + random.nextInt(28);
+        int hour = random.nextInt(40) == 0 ? 24 : random.nextInt(24);
+        int minute = random.nextInt(40) == 0 ? 60 : random.nextInt(60);
+        int second = random.nextInt(40) == 0 ? 60 : random.nextInt(60);
+        String t = TEMPLATES[template];
+        List<Object> args = new ArrayList<>();
+        if (t.startsWith("US ")) {
+            t = t.substring(3);
+            args.add(month);
+            args.add(day);
+            args.add(year);
+        } else {
+            args.add(year);
+            args.add(month);
+            args.add(day);
+        }
+        args.add(hour);
+        args.add(minute);
+        args.add(second);
+        return String.format(t, args.toArray());
+    }
+}